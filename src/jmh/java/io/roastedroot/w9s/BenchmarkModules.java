@@ -0,0 +1,99 @@
+package io.roastedroot.w9s;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Inputs shared by the benchmarks. A module spec is either a path relative to the
+ * samples directory ({@code -Dw9s.samples}, default {@code samples}) or
+ * {@code synthetic:N} for a generated module with N exported functions.
+ */
+final class BenchmarkModules {
+
+    private BenchmarkModules() {}
+
+    static byte[] load(String spec) {
+        if (spec.startsWith("synthetic:")) {
+            return synthetic(Integer.parseInt(spec.substring("synthetic:".length())));
+        }
+        var dir = System.getProperty("w9s.samples", "samples");
+        try {
+            return Files.readAllBytes(Path.of(dir, spec));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Generates a module with {@code functions} functions of type {@code () -> i32}.
+     * Each function is exported under a Rust-mangled name and adds up a handful of
+     * constants, so names demangle and bodies disassemble to a few lines of WAT.
+     */
+    static byte[] synthetic(int functions) {
+        var out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00});
+
+        section(out, 1, new byte[] {0x01, 0x60, 0x00, 0x01, 0x7f});
+
+        var funcs = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(funcs, functions);
+        for (int i = 0; i < functions; i++) {
+            funcs.write(0x00);
+        }
+        section(out, 3, funcs.toByteArray());
+
+        var exports = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(exports, functions);
+        for (int i = 0; i < functions; i++) {
+            var ident = "f" + i;
+            var name = ("_ZN5bench" + ident.length() + ident + "17h0123456789abcdefE").getBytes(StandardCharsets.UTF_8);
+            WasmUtils.writeLEB128(exports, name.length);
+            exports.writeBytes(name);
+            exports.write(0x00); // function export
+            WasmUtils.writeLEB128(exports, i);
+        }
+        section(out, 7, exports.toByteArray());
+
+        var code = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(code, functions);
+        for (int i = 0; i < functions; i++) {
+            var body = new ByteArrayOutputStream();
+            body.write(0x00); // no locals
+            body.write(0x41); // i32.const
+            body.write(i & 0x3f);
+            for (int k = 0; k < 16; k++) {
+                body.write(0x41); // i32.const
+                body.write((i + k) & 0x3f);
+                body.write(0x6a); // i32.add
+            }
+            body.write(0x0b); // end
+            WasmUtils.writeLEB128(code, body.size());
+            code.writeBytes(body.toByteArray());
+        }
+        section(out, 10, code.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static void section(ByteArrayOutputStream out, int id, byte[] payload) {
+        out.write(id);
+        WasmUtils.writeLEB128(out, payload.length);
+        out.writeBytes(payload);
+    }
+
+    /** Text shaped like highlighted WAT: line numbers and a few 24-bit colour runs per line. */
+    static String ansiWat(int lines) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < lines; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(String.format("%4d | ", i + 1))
+                    .append("  \033[38;2;255;121;198mlocal.get\033[0m ")
+                    .append("\033[38;2;189;147;249m").append(i % 7).append("\033[0m ")
+                    .append("\033[38;2;98;114;164m;; slot ").append(i).append("\033[0m");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,61 @@
+package io.roastedroot.w9s;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemangleBenchmark {
+
+    @Param({"1000"})
+    int names;
+
+    private RustcDemangle demangler;
+    private List<String> mangled;
+
+    @Setup
+    public void setUp() {
+        demangler = new RustcDemangle();
+        mangled = new ArrayList<>(names);
+        for (int i = 0; i < names; i++) {
+            var ident = "f" + i;
+            mangled.add("_ZN5bench" + ident.length() + ident + "17h0123456789abcdefE");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        demangler.close();
+    }
+
+    @Benchmark
+    public List<String> demangleEach() {
+        var out = new ArrayList<String>(mangled.size());
+        for (var name : mangled) {
+            out.add(demangler.demangle(name));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public List<String> demangleAll() {
+        return demangler.demangleAll(mangled);
+    }
+}
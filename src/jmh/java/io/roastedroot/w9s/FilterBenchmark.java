@@ -0,0 +1,69 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.wasm.Parser;
+import dev.tamboui.widgets.table.TableState;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Filtering the Exports detail table, which has the same shape as Functions and Code. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FilterBenchmark {
+
+    @Param({"synthetic:150000"})
+    String module;
+
+    private ViewContext ctx;
+    private DetailSearchIndex index;
+    private boolean flip;
+
+    @Setup
+    public void setUp() {
+        var wasm = BenchmarkModules.load(module);
+        var parsed = Parser.parse(wasm);
+        var rows = WasmUtils.buildSectionRows(parsed);
+        var tableState = new TableState();
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i)[0].equals("Exports")) {
+                tableState.select(i);
+            }
+        }
+        ctx = new ViewContext(module, parsed, rows, tableState, null, null, W9sOptions.defaults());
+        index = DetailSearchIndex.build(ctx);
+    }
+
+    @Benchmark
+    public DetailSearchIndex buildIndex() {
+        return DetailSearchIndex.build(ctx);
+    }
+
+    @Benchmark
+    public int[] filterScan() {
+        // Alternate unrelated filters so every call scans all rows
+        flip = !flip;
+        return index.rows(flip ? "f12" : "f23");
+    }
+
+    @Benchmark
+    public int[] filterTyping() {
+        index.rows("x");
+        index.rows("f");
+        index.rows("f1");
+        index.rows("f12");
+        return index.rows("f123");
+    }
+}
@@ -0,0 +1,53 @@
+package io.roastedroot.w9s;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HexBenchmark {
+
+    @Param({"4096", "1048576"})
+    int size;
+
+    private byte[] data;
+    private ByteBuffer buffer;
+    private HexRenderer renderer;
+    private int row;
+
+    @Setup
+    public void setUp() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        buffer = ByteBuffer.wrap(data);
+        renderer = new HexRenderer();
+    }
+
+    @Benchmark
+    public String formatHex() {
+        return WasmUtils.formatHex(data);
+    }
+
+    @Benchmark
+    public String renderWindow() {
+        // A different window each time, so the renderer's cache never hits
+        row = (row + ViewLayout.PAGE_SIZE) % HexRenderer.rowCount(size);
+        return renderer.render(buffer, row, ViewLayout.MAX_VISIBLE_LINES);
+    }
+}
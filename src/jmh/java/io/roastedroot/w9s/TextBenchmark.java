@@ -0,0 +1,60 @@
+package io.roastedroot.w9s;
+
+import dev.tamboui.text.Text;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextBenchmark {
+
+    @Param({"1000", "50000"})
+    int lines;
+
+    private String ansi;
+    private String plain;
+    private StyledText styled;
+    private int offset;
+
+    @Setup
+    public void setUp() {
+        ansi = BenchmarkModules.ansiWat(lines);
+        plain = ansi.replaceAll("\033\\[[0-9;]*m", "");
+        styled = StyledText.parse(ansi);
+    }
+
+    @Benchmark
+    public Text parseAnsiText() {
+        return AnsiTextParser.parseAnsiText(ansi);
+    }
+
+    @Benchmark
+    public StyledText parseStyledText() {
+        return StyledText.parse(ansi);
+    }
+
+    @Benchmark
+    public Text styledViewport() {
+        offset = (offset + ViewLayout.PAGE_SIZE) % lines;
+        return styled.text(offset, ViewLayout.MAX_VISIBLE_LINES, "");
+    }
+
+    @Benchmark
+    public int[] contentSearch() {
+        return new ContentSearchIndex(plain).matches("slot 12");
+    }
+}
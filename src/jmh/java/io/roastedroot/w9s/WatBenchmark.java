@@ -0,0 +1,57 @@
+package io.roastedroot.w9s;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WatBenchmark {
+
+    @Param({"hello-rs.wasm", "synthetic:20000"})
+    String module;
+
+    private byte[] wasm;
+    private String wat;
+
+    @Setup
+    public void setUp() {
+        wasm = BenchmarkModules.load(module);
+        wat = Wasm2Wat.print(wasm);
+    }
+
+    @Benchmark
+    public String print() {
+        return Wasm2Wat.print(ByteBuffer.wrap(wasm));
+    }
+
+    @Benchmark
+    public List<String> extractFunctions() {
+        return WasmUtils.extractFunctions(wat);
+    }
+
+    @Benchmark
+    public List<byte[]> extractFunctionBodies() {
+        return WasmUtils.extractFunctionBodies(wasm);
+    }
+
+    @Benchmark
+    public CodeSectionIndex scanCodeSection() {
+        return CodeSectionIndex.scan(wasm);
+    }
+}
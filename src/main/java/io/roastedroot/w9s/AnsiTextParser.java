@@ -2,68 +2,25 @@ package io.roastedroot.w9s;
 
 import dev.tamboui.style.Color;
 import dev.tamboui.style.Style;
-import dev.tamboui.text.Line;
-import dev.tamboui.text.Span;
 import dev.tamboui.text.Text;
-import java.util.ArrayList;
-import java.util.List;
 
 public final class AnsiTextParser {
 
     private AnsiTextParser() {}
 
+    static final Style MATCH_STYLE = Style.EMPTY.bg(Color.YELLOW).fg(Color.BLACK);
+
     static Text parseAnsiText(String ansiString) {
-        var lines = new ArrayList<Line>();
-        var spans = new ArrayList<Span>();
-        var currentText = new StringBuilder();
-        var currentStyle = Style.EMPTY;
+        return parseAnsiText(ansiString, "");
+    }
 
-        int i = 0;
-        while (i < ansiString.length()) {
-            if (i < ansiString.length() - 1
-                    && ansiString.charAt(i) == '\033'
-                    && ansiString.charAt(i + 1) == '[') {
-                // Flush current text as a span
-                if (!currentText.isEmpty()) {
-                    spans.add(Span.styled(currentText.toString(), currentStyle));
-                    currentText.setLength(0);
-                }
-                // Parse SGR sequence
-                int end = ansiString.indexOf('m', i + 2);
-                if (end < 0) {
-                    // Malformed sequence, output as text
-                    currentText.append(ansiString.charAt(i));
-                    i++;
-                    continue;
-                }
-                var params = ansiString.substring(i + 2, end);
-                currentStyle = applySgr(currentStyle, params);
-                i = end + 1;
-            } else if (ansiString.charAt(i) == '\n') {
-                // Flush span and line
-                if (!currentText.isEmpty()) {
-                    spans.add(Span.styled(currentText.toString(), currentStyle));
-                    currentText.setLength(0);
-                }
-                lines.add(Line.from(List.copyOf(spans)));
-                spans.clear();
-                i++;
-            } else {
-                currentText.append(ansiString.charAt(i));
-                i++;
-            }
-        }
-        // Flush remaining
-        if (!currentText.isEmpty()) {
-            spans.add(Span.styled(currentText.toString(), currentStyle));
-        }
-        if (!spans.isEmpty()) {
-            lines.add(Line.from(List.copyOf(spans)));
-        }
-        if (lines.isEmpty()) {
-            lines.add(Line.empty());
-        }
-        return Text.from(lines);
+    /**
+     * Parses SGR-styled text into lines. Case-insensitive occurrences of
+     * {@code highlight} are restyled with {@link #MATCH_STYLE}, including
+     * occurrences that cross a style change.
+     */
+    static Text parseAnsiText(String ansiString, String highlight) {
+        return StyledText.parse(ansiString).text(0, Integer.MAX_VALUE, highlight);
     }
 
     static Style applySgr(Style style, String params) {
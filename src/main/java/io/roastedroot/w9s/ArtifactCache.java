@@ -0,0 +1,254 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.tools.wasm.WasmToolsModule;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of artifacts derived from a module, such as function names
+ * and per-function WAT, keyed by the SHA-256 of the module bytes and of the
+ * versions of the code that derives them. Each artifact
+ * is a table of strings written once, atomically, and read back memory-mapped,
+ * so only the entries actually viewed are decoded. When the directory grows
+ * past its budget the least recently used files are deleted.
+ *
+ * <p>The cache is best effort: any I/O problem is treated as a miss.
+ */
+final class ArtifactCache {
+
+    static final String NAMES = "names";
+    static final String WAT = "wat";
+
+    private static final int MAGIC = 0x57395343; // "W9SC"
+    private static final int VERSION = 1;
+    // magic, version, count
+    private static final int HEADER_BYTES = 12;
+
+    // Artifacts also depend on the cache format, w9s, the WAT printer and the demangler
+    private static final String SALT = "format " + VERSION + "; w9s " + Main.VERSION + "; "
+            + codeVersion(WasmToolsModule.class) + "; " + codeVersion(RustcDemangleModule.class);
+
+    private final Path dir;
+    private final long maxBytes;
+
+    ArtifactCache(Path dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /** {@code $XDG_CACHE_HOME/w9s}, falling back to {@code ~/.cache/w9s}. */
+    static Path defaultDirectory() {
+        var xdg = System.getenv("XDG_CACHE_HOME");
+        var base = xdg != null && !xdg.isEmpty()
+                ? Path.of(xdg)
+                : Path.of(System.getProperty("user.home"), ".cache");
+        return base.resolve("w9s");
+    }
+
+    /**
+     * Hex SHA-256 of the code versions and the remaining bytes of the buffer; its
+     * position is not moved.
+     */
+    static String key(ByteBuffer wasm) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(SALT.getBytes(StandardCharsets.UTF_8));
+            digest.update(wasm.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The implementation version of the jar holding a class or, for unversioned
+     * builds, the size and time of its class file.
+     */
+    static String codeVersion(Class<?> type) {
+        var version = type.getPackage().getImplementationVersion();
+        if (version != null) {
+            return type.getSimpleName() + " " + version;
+        }
+        var classFile = type.getResource(type.getSimpleName() + ".class");
+        if (classFile == null) {
+            return type.getSimpleName();
+        }
+        try {
+            var connection = classFile.openConnection();
+            return type.getSimpleName() + " " + connection.getContentLengthLong() + "@" + connection.getLastModified();
+        } catch (IOException e) {
+            return type.getSimpleName();
+        }
+    }
+
+    /**
+     * Returns a stored table, or null when there is none or it cannot be read.
+     * Entries are decoded on access and may be null.
+     */
+    List<String> read(String key, String kind) {
+        var path = dir.resolve(key + "." + kind);
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            var table = StringTable.of(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            if (table != null) {
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return table;
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /** Stores a table, replacing any previous one, then evicts down to the budget. */
+    void write(String key, String kind, List<String> values) {
+        var encoded = new byte[values.size()][];
+        long blobBytes = 0;
+        for (int i = 0; i < encoded.length; i++) {
+            var value = values.get(i);
+            if (value != null) {
+                encoded[i] = value.getBytes(StandardCharsets.UTF_8);
+                blobBytes += encoded[i].length;
+            }
+        }
+        long total = HEADER_BYTES + 8L * encoded.length + blobBytes;
+        if (total > Integer.MAX_VALUE || total > maxBytes) {
+            return;
+        }
+
+        var buffer = ByteBuffer.allocate((int) total).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(encoded.length);
+        int offset = 0;
+        for (var bytes : encoded) {
+            buffer.putInt(offset).putInt(bytes != null ? bytes.length : -1);
+            offset += bytes != null ? bytes.length : 0;
+        }
+        for (var bytes : encoded) {
+            if (bytes != null) {
+                buffer.put(bytes);
+            }
+        }
+        buffer.flip();
+
+        Path tmp = null;
+        try {
+            Files.createDirectories(dir);
+            tmp = Files.createTempFile(dir, key + "." + kind, ".tmp");
+            try (var channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(tmp, dir.resolve(key + "." + kind),
+                    StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            tmp = null;
+            evict();
+        } catch (IOException | RuntimeException e) {
+            // A failed write only means the next launch recomputes the artifact
+        } finally {
+            if (tmp != null) {
+                try {
+                    Files.deleteIfExists(tmp);
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    /** Deletes the least recently used entries until the directory fits the budget. */
+    void evict() throws IOException {
+        record Entry(Path path, long size, FileTime lastUsed) {}
+        var entries = new ArrayList<Entry>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (var path : (Iterable<Path>) files::iterator) {
+                if (!Files.isRegularFile(path) || path.getFileName().toString().endsWith(".tmp")) {
+                    continue;
+                }
+                entries.add(new Entry(path, Files.size(path), Files.getLastModifiedTime(path)));
+            }
+        }
+        long total = entries.stream().mapToLong(Entry::size).sum();
+        entries.sort(Comparator.comparing(Entry::lastUsed));
+        for (var entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            Files.deleteIfExists(entry.path());
+            total -= entry.size();
+        }
+    }
+
+    /**
+     * Read-only view of a table in a mapped file: header, (offset, length) pairs,
+     * UTF-8 blob. An entry is decoded on first access and the same string is
+     * returned afterwards, so views that key on identity keep working.
+     */
+    private static final class StringTable extends AbstractList<String> {
+
+        private final ByteBuffer data;
+        private final int count;
+        private final int blobStart;
+        private final AtomicReferenceArray<String> decoded;
+
+        private StringTable(ByteBuffer data, int count) {
+            this.data = data;
+            this.count = count;
+            this.blobStart = HEADER_BYTES + 8 * count;
+            this.decoded = new AtomicReferenceArray<>(count);
+        }
+
+        static StringTable of(ByteBuffer data) {
+            data.order(ByteOrder.LITTLE_ENDIAN);
+            if (data.limit() < HEADER_BYTES
+                    || data.getInt(0) != MAGIC
+                    || data.getInt(4) != VERSION) {
+                return null;
+            }
+            int count = data.getInt(8);
+            if (count < 0 || HEADER_BYTES + 8L * count > data.limit()) {
+                return null;
+            }
+            return new StringTable(data, count);
+        }
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= count) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            var cached = decoded.get(index);
+            if (cached != null) {
+                return cached;
+            }
+            int entry = HEADER_BYTES + 8 * index;
+            int offset = data.getInt(entry);
+            int length = data.getInt(entry + 4);
+            if (length < 0) {
+                return null;
+            }
+            var value = StandardCharsets.UTF_8.decode(data.slice(blobStart + offset, length)).toString();
+            return decoded.compareAndSet(index, null, value) ? value : decoded.get(index);
+        }
+
+        @Override
+        public int size() {
+            return count;
+        }
+    }
+}
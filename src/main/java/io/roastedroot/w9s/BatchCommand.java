@@ -0,0 +1,252 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.tools.wasm.Wat2Wasm;
+import com.dylibso.chicory.wasm.Parser;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+import picocli.CommandLine.Parameters;
+
+/**
+ * Non-interactive analysis of many modules. Each module is read, parsed and
+ * summarised by one worker, and its records are written as soon as they are
+ * produced, so a worker only holds the data of the module it is working on.
+ */
+@Command(
+        name = "batch",
+        mixinStandardHelpOptions = true,
+        description = "Summarise many modules without the UI, writing JSON Lines or CSV to stdout")
+final class BatchCommand implements Callable<Integer> {
+
+    enum Format {
+        JSONL,
+        CSV
+    }
+
+    @Parameters(
+            arity = "1..*",
+            description = "Modules to analyse; directories are searched for .wasm and .wat files")
+    private List<File> inputs;
+
+    @Option(
+            names = "--format",
+            defaultValue = "jsonl",
+            description = "Output format: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private Format format;
+
+    @Option(names = "--wat", description = "Include the WAT of every function")
+    private boolean includeWat;
+
+    @Option(
+            names = "--mmap",
+            description = "Memory-map module files; parsing still copies each module onto the heap")
+    private boolean mmap;
+
+    @Option(
+            names = "--threads",
+            description = "Number of worker threads (default: available processors)")
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    private PrintWriter out;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong processedBytes = new AtomicLong();
+
+    @Override
+    public Integer call() throws Exception {
+        return run(new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))));
+    }
+
+    /** Writes the records of every input to {@code out}; returns the exit code. */
+    int run(PrintWriter out) throws IOException, InterruptedException {
+        var files = collectFiles(inputs);
+        this.out = out;
+        if (format == Format.CSV) {
+            out.println("type,file,index,name,size,detail");
+        }
+
+        long start = System.nanoTime();
+        var pool = new ForkJoinPool(Math.max(1, threads));
+        try {
+            for (var file : files) {
+                pool.execute(() -> analyse(file));
+            }
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            pool.shutdownNow();
+            out.flush();
+        }
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        double mb = processedBytes.get() / (1024.0 * 1024.0);
+        System.err.printf(
+                "Processed %d modules (%d failed), %.1f MiB in %.2fs: %.1f modules/s, %.1f MiB/s%n",
+                processed.get(), failed.get(), mb, seconds, processed.get() / seconds, mb / seconds);
+        return failed.get() == 0 ? 0 : 1;
+    }
+
+    private void analyse(File file) {
+        var path = file.getPath();
+        try {
+            var wasm = read(file);
+            var module = Parser.parse(new ByteBufferInputStream(wasm));
+            var rows = WasmUtils.buildSectionRows(module);
+            var codeIndex = CodeSectionIndex.scan(wasm);
+            var names = FunctionDataProvider.resolveFunctionNames(module);
+            List<String> wats = includeWat ? WasmUtils.extractFunctions(Wasm2Wat.print(wasm)) : List.of();
+
+            writeModule(path, wasm.limit(), rows, codeIndex.bodyCount());
+            for (int i = 0; i < codeIndex.bodyCount(); i++) {
+                var name = i < names.size() ? names.get(i) : null;
+                var wat = i < wats.size() ? wats.get(i) : null;
+                writeFunction(path, i, name, codeIndex.bodyLengths()[i], wat);
+            }
+            processedBytes.addAndGet(wasm.limit());
+        } catch (Exception e) {
+            failed.incrementAndGet();
+            writeError(path, e.getMessage() != null ? e.getMessage() : e.toString());
+        } finally {
+            processed.incrementAndGet();
+        }
+    }
+
+    private ByteBuffer read(File file) throws IOException {
+        if (file.getName().endsWith(".wat")) {
+            return ByteBuffer.wrap(Wat2Wasm.parse(file));
+        }
+        if (mmap) {
+            return WasmUtils.mapFile(file.toPath());
+        }
+        return ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+    }
+
+    static List<File> collectFiles(List<File> inputs) throws IOException {
+        var files = new ArrayList<File>();
+        for (var input : inputs) {
+            if (!input.isDirectory()) {
+                files.add(input);
+                continue;
+            }
+            try (Stream<Path> walk = Files.walk(input.toPath())) {
+                walk.filter(Files::isRegularFile)
+                        .filter(p -> p.toString().endsWith(".wasm") || p.toString().endsWith(".wat"))
+                        .sorted()
+                        .forEach(p -> files.add(p.toFile()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return files;
+    }
+
+    private void writeModule(String path, int size, List<String[]> rows, int functionCount) {
+        if (format == Format.JSONL) {
+            var sb = new StringBuilder("{\"type\":\"module\",\"file\":");
+            appendJson(sb, path).append(",\"size\":").append(size).append(",\"functions\":").append(functionCount);
+            sb.append(",\"sections\":{");
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) sb.append(',');
+                appendJson(sb, rows.get(i)[0]).append(':');
+                appendJson(sb, rows.get(i)[1]);
+            }
+            write(sb.append("}}").toString());
+        } else {
+            var detail = new StringBuilder();
+            for (int i = 0; i < rows.size(); i++) {
+                if (i > 0) detail.append(';');
+                detail.append(rows.get(i)[0]).append('=').append(rows.get(i)[1]);
+            }
+            write(csv("module", path, "", "", String.valueOf(size), detail.toString()));
+        }
+    }
+
+    private void writeFunction(String path, int index, String name, int size, String wat) {
+        if (format == Format.JSONL) {
+            var sb = new StringBuilder("{\"type\":\"function\",\"file\":");
+            appendJson(sb, path).append(",\"index\":").append(index).append(",\"name\":");
+            if (name != null) {
+                appendJson(sb, name);
+            } else {
+                sb.append("null");
+            }
+            sb.append(",\"size\":").append(size);
+            if (wat != null) {
+                sb.append(",\"wat\":");
+                appendJson(sb, wat);
+            }
+            write(sb.append('}').toString());
+        } else {
+            write(csv("function", path, String.valueOf(index), name != null ? name : "",
+                    String.valueOf(size), wat != null ? wat : ""));
+        }
+    }
+
+    private void writeError(String path, String message) {
+        if (format == Format.JSONL) {
+            var sb = new StringBuilder("{\"type\":\"error\",\"file\":");
+            appendJson(sb, path).append(",\"message\":");
+            write(appendJson(sb, message).append('}').toString());
+        } else {
+            write(csv("error", path, "", "", "", message));
+        }
+    }
+
+    private void write(String record) {
+        synchronized (out) {
+            out.println(record);
+        }
+    }
+
+    static StringBuilder appendJson(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"');
+    }
+
+    static String csv(String... fields) {
+        var sb = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) sb.append(',');
+            var f = fields[i];
+            if (f.indexOf(',') >= 0 || f.indexOf('"') >= 0 || f.indexOf('\n') >= 0 || f.indexOf('\r') >= 0) {
+                sb.append('"').append(f.replace("\"", "\"\"")).append('"');
+            } else {
+                sb.append(f);
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,51 @@
+package io.roastedroot.w9s;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/** Streams the remaining bytes of a buffer without copying it or moving its position. */
+final class ByteBufferInputStream extends InputStream {
+
+    private final ByteBuffer buffer;
+    private final int start;
+
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer.duplicate();
+        this.start = this.buffer.position();
+    }
+
+    /** Number of bytes read or skipped so far; may be read from another thread. */
+    int consumed() {
+        return buffer.position() - start;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (len == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int n = Math.min(len, buffer.remaining());
+        buffer.get(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(long n) {
+        int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+        buffer.position(buffer.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,63 @@
+package io.roastedroot.w9s;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Byte offsets of the code section and of each function body inside a raw module.
+ * Offsets are absolute positions in the module bytes, so bodies can be read as
+ * slices of the module buffer without copying them.
+ */
+record CodeSectionIndex(int sectionStart, int sectionEnd, int[] bodyOffsets, int[] bodyLengths) {
+
+    static final CodeSectionIndex EMPTY = new CodeSectionIndex(-1, -1, new int[0], new int[0]);
+
+    static CodeSectionIndex scan(byte[] wasmBytes) {
+        return scan(ByteBuffer.wrap(wasmBytes));
+    }
+
+    static CodeSectionIndex scan(ByteBuffer wasm) {
+        try {
+            int length = wasm.limit();
+            int pos = 8; // skip magic (4 bytes) + version (4 bytes)
+            while (pos < length) {
+                int sectionStart = pos;
+                int sectionId = wasm.get(pos++) & 0xFF;
+                int sectionSize = WasmUtils.readLEB128(wasm, pos);
+                pos += WasmUtils.leb128Size(wasm, pos);
+
+                if (sectionId == 10) { // code section
+                    int sectionEnd = pos + sectionSize;
+                    int count = WasmUtils.readLEB128(wasm, pos);
+                    pos += WasmUtils.leb128Size(wasm, pos);
+                    var offsets = new int[count];
+                    var lengths = new int[count];
+                    for (int i = 0; i < count; i++) {
+                        int bodySize = WasmUtils.readLEB128(wasm, pos);
+                        pos += WasmUtils.leb128Size(wasm, pos);
+                        if (pos + bodySize > length) {
+                            return EMPTY;
+                        }
+                        offsets[i] = pos;
+                        lengths[i] = bodySize;
+                        pos += bodySize;
+                    }
+                    return new CodeSectionIndex(sectionStart, sectionEnd, offsets, lengths);
+                } else {
+                    pos += sectionSize;
+                }
+            }
+        } catch (Exception e) {
+            // Fall through to return an empty index
+        }
+        return EMPTY;
+    }
+
+    int bodyCount() {
+        return bodyOffsets.length;
+    }
+
+    /** Returns a read-only view of one function body, sharing the module buffer. */
+    ByteBuffer body(ByteBuffer wasm, int localFuncIdx) {
+        return wasm.slice(bodyOffsets[localFuncIdx], bodyLengths[localFuncIdx]).asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,125 @@
+package io.roastedroot.w9s;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Line index over a block of text for case-insensitive search. The text is
+ * lowercased once, and each query is answered with a sorted array of matching
+ * line numbers, so stepping between matches is a binary search. A query that
+ * extends the previous one only rechecks the lines that already matched.
+ */
+final class ContentSearchIndex {
+
+    private final char[] lower;
+    // start offset of each line, plus one entry past the end of the text
+    private final int[] lineStarts;
+
+    // results for a chain of queries where each one extends the previous
+    private final List<String> chainQueries = new ArrayList<>();
+    private final List<int[]> chainMatches = new ArrayList<>();
+
+    ContentSearchIndex(String content) {
+        int length = content.length();
+        this.lower = new char[length];
+        int lines = 1;
+        for (int i = 0; i < length; i++) {
+            char c = content.charAt(i);
+            lower[i] = Character.toLowerCase(c);
+            if (c == '\n') lines++;
+        }
+        this.lineStarts = new int[lines + 1];
+        int line = 1;
+        for (int i = 0; i < length; i++) {
+            if (lower[i] == '\n') lineStarts[line++] = i + 1;
+        }
+        lineStarts[lines] = length + 1;
+    }
+
+    int lineCount() {
+        return lineStarts.length - 1;
+    }
+
+    /** Returns the sorted line numbers containing {@code query}; shared, do not modify. */
+    int[] matches(String query) {
+        var q = lowerCase(query);
+        while (!chainQueries.isEmpty() && !q.startsWith(chainQueries.get(chainQueries.size() - 1))) {
+            chainQueries.remove(chainQueries.size() - 1);
+            chainMatches.remove(chainMatches.size() - 1);
+        }
+        if (!chainQueries.isEmpty() && q.equals(chainQueries.get(chainQueries.size() - 1))) {
+            return chainMatches.get(chainMatches.size() - 1);
+        }
+        var needle = q.toCharArray();
+        int[] result;
+        if (chainMatches.isEmpty()) {
+            var found = new int[Math.min(lineCount(), 1024)];
+            int count = 0;
+            for (int line = 0; line < lineCount(); line++) {
+                if (lineContains(line, needle)) {
+                    if (count == found.length) found = Arrays.copyOf(found, found.length * 2);
+                    found[count++] = line;
+                }
+            }
+            result = Arrays.copyOf(found, count);
+        } else {
+            var previous = chainMatches.get(chainMatches.size() - 1);
+            var found = new int[previous.length];
+            int count = 0;
+            for (int line : previous) {
+                if (lineContains(line, needle)) found[count++] = line;
+            }
+            result = Arrays.copyOf(found, count);
+        }
+        chainQueries.add(q);
+        chainMatches.add(result);
+        return result;
+    }
+
+    /** First matching line after {@code line}, wrapping to the first match; -1 if none. */
+    int next(String query, int line) {
+        var m = matches(query);
+        if (m.length == 0) return -1;
+        int pos = insertionPoint(m, line + 1);
+        return pos < m.length ? m[pos] : m[0];
+    }
+
+    /** Last matching line before {@code line}, wrapping to the last match; -1 if none. */
+    int prev(String query, int line) {
+        var m = matches(query);
+        if (m.length == 0) return -1;
+        int pos = insertionPoint(m, line) - 1;
+        return pos >= 0 ? m[pos] : m[m.length - 1];
+    }
+
+    private static int insertionPoint(int[] sorted, int value) {
+        int pos = Arrays.binarySearch(sorted, value);
+        return pos >= 0 ? pos : -pos - 1;
+    }
+
+    private boolean lineContains(int line, char[] needle) {
+        int from = lineStarts[line];
+        int last = lineStarts[line + 1] - 1 - needle.length;
+        if (needle.length == 0) return true;
+        char first = needle[0];
+        outer:
+        for (int i = from; i <= last; i++) {
+            if (lower[i] != first) continue;
+            for (int j = 1; j < needle.length; j++) {
+                if (lower[i + j] != needle[j]) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Lowercases char by char, the same way the indexed text is lowercased. */
+    static String lowerCase(String s) {
+        var chars = s.toCharArray();
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Character.toLowerCase(chars[i]);
+        }
+        return new String(chars);
+    }
+}
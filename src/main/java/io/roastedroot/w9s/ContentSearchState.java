@@ -9,6 +9,8 @@ public final class ContentSearchState {
     private boolean inContentSearch = false;
     private String contentSearchQuery = "";
     private int contentSearchMatchLine = -1;
+    private ContentSearchIndex index;
+    private Object indexKey;
 
     boolean isActive() {
         return inContentSearch;
@@ -58,58 +60,47 @@ public final class ContentSearchState {
         }
         if (key.code() == KeyCode.CHAR && !key.hasCtrl() && !key.hasAlt()) {
             contentSearchQuery += key.character();
+            // Refine while typing so Enter only has to look up the next match
+            index(scrollTarget).matches(contentSearchQuery);
             return EventResult.HANDLED;
         }
         return EventResult.HANDLED;
     }
 
     void searchNext(ScrollTarget target) {
-        var content = target.contentText();
-        var lines = content.split("\n", -1);
-        var query = contentSearchQuery.toLowerCase();
-        int startLine = target.scrollOffset() + 1;
-        for (int i = startLine; i < lines.length; i++) {
-            if (lines[i].toLowerCase().contains(query)) {
-                contentSearchMatchLine = i;
-                target.setScrollOffset(i);
-                return;
-            }
-        }
-        // Wrap around from the beginning
-        for (int i = 0; i < startLine && i < lines.length; i++) {
-            if (lines[i].toLowerCase().contains(query)) {
-                contentSearchMatchLine = i;
-                target.setScrollOffset(i);
-                return;
-            }
-        }
-        contentSearchMatchLine = -1;
+        var line = index(target).next(contentSearchQuery, target.scrollOffset());
+        moveTo(target, line);
     }
 
     void searchPrev(ScrollTarget target) {
-        var content = target.contentText();
-        var lines = content.split("\n", -1);
-        var query = contentSearchQuery.toLowerCase();
-        int startLine = target.scrollOffset() - 1;
-        for (int i = startLine; i >= 0; i--) {
-            if (lines[i].toLowerCase().contains(query)) {
-                contentSearchMatchLine = i;
-                target.setScrollOffset(i);
-                return;
-            }
+        var line = index(target).prev(contentSearchQuery, target.scrollOffset());
+        moveTo(target, line);
+    }
+
+    private void moveTo(ScrollTarget target, int line) {
+        contentSearchMatchLine = line;
+        if (line >= 0) {
+            target.setScrollOffset(line);
         }
-        // Wrap around from the end
-        for (int i = lines.length - 1; i > startLine; i--) {
-            if (lines[i].toLowerCase().contains(query)) {
-                contentSearchMatchLine = i;
-                target.setScrollOffset(i);
-                return;
-            }
+    }
+
+    /** Returns the index for the target's current content, rebuilding it if the content changed. */
+    private ContentSearchIndex index(ScrollTarget target) {
+        var key = target.contentKey();
+        if (index == null || key == null || key != indexKey) {
+            index = new ContentSearchIndex(target.contentText());
+            indexKey = key;
         }
-        contentSearchMatchLine = -1;
+        return index;
     }
 
     interface ScrollTarget {
+        /**
+         * Identifies the content returned by {@link #contentText()}; the search index
+         * is kept for as long as the same key is returned. {@code null} disables reuse.
+         */
+        Object contentKey();
+
         String contentText();
 
         int scrollOffset();
@@ -6,12 +6,17 @@ import dev.tamboui.style.Overflow;
 import dev.tamboui.toolkit.element.Element;
 import dev.tamboui.toolkit.event.EventResult;
 import dev.tamboui.tui.event.KeyEvent;
+import java.nio.ByteBuffer;
 
 public final class DataView implements View {
 
     private final int selectedDataIdx;
     private int scrollOffset = 0;
     private final ContentSearchState search = new ContentSearchState();
+    // Byte pattern search; n/N follow whichever of the two searches ran last
+    private final PatternSearchState patternSearch = new PatternSearchState();
+    private final HexRenderer hexRenderer = new HexRenderer();
+    private ByteBuffer segmentData;
 
     DataView(int dataIdx) {
         this.selectedDataIdx = dataIdx;
@@ -21,17 +26,33 @@ public final class DataView implements View {
     public EventResult handleKey(KeyEvent key, ViewContext ctx) {
         if (key.isQuit()) { ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
         if (search.isActive()) { return search.handleKey(key, scrollTarget(ctx)); }
-        if (key.isCancel() || key.isLeft()) { search.reset(); ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
-        if (key.isChar('/')) { search.startSearch(); return EventResult.HANDLED; }
+        if (patternSearch.isActive()) {
+            var data = segmentData(ctx).array();
+            var result = patternSearch.handleKey(key, pattern -> PatternSearch.search(pattern, data));
+            if (!patternSearch.isActive() && patternSearch.hasMatches()) {
+                search.reset();
+                scrollOffset = HexRenderer.clampRow(patternSearch.next(-1) / HexRenderer.BYTES_PER_ROW, data.length);
+            }
+            return result;
+        }
+        if (key.isCancel() || key.isLeft()) { search.reset(); patternSearch.clear(); ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
+        if (key.isChar('/')) { patternSearch.clear(); search.startSearch(); return EventResult.HANDLED; }
+        if (key.isChar('f')) { patternSearch.start(); return EventResult.HANDLED; }
+        if ((key.isChar('n') || key.isChar('N')) && patternSearch.hasMatches()) {
+            int match = key.isChar('n') ? patternSearch.next(patternSearch.currentMatch()) : patternSearch.previous(patternSearch.currentMatch());
+            scrollOffset = HexRenderer.clampRow(match / HexRenderer.BYTES_PER_ROW, segmentData(ctx).limit());
+            return EventResult.HANDLED;
+        }
         if (key.isChar('n') && !search.query().isEmpty()) { search.searchNext(scrollTarget(ctx)); return EventResult.HANDLED; }
         if (key.isChar('N') && !search.query().isEmpty()) { search.searchPrev(scrollTarget(ctx)); return EventResult.HANDLED; }
         int newOffset = ScrollHandler.handleKey(key, scrollOffset);
-        if (newOffset >= 0) { scrollOffset = newOffset; return EventResult.HANDLED; }
+        if (newOffset >= 0) { scrollOffset = HexRenderer.clampRow(newOffset, segmentData(ctx).limit()); return EventResult.HANDLED; }
         return EventResult.UNHANDLED;
     }
 
     private ContentSearchState.ScrollTarget scrollTarget(ViewContext ctx) {
         return new ContentSearchState.ScrollTarget() {
+            @Override public Object contentKey() { return segmentData(ctx); }
             @Override public String contentText() {
                 var ds = ctx.module().dataSection();
                 if (selectedDataIdx >= ds.dataSegmentCount()) return "";
@@ -48,13 +69,22 @@ public final class DataView implements View {
         int dataCount = ds.dataSegmentCount();
         var dataTitle = "data #" + selectedDataIdx + " (" + (selectedDataIdx + 1) + "/" + dataCount + ")";
         var seg = ds.getDataSegment(selectedDataIdx);
-        var hexContent = renderDataHexView(seg.data());
+        var hexContent = renderDataHexView(segmentData(ctx));
         var dataPanelTitle = "Hex - " + dataTitle;
         if (!search.query().isEmpty() && !search.isActive()) {
             dataPanelTitle += " [/" + search.query() + "]";
         }
+        var patternStatus = patternSearch.isActive() ? null : patternSearch.status();
+        if (patternStatus != null) {
+            dataPanelTitle += " [" + patternStatus + "]";
+        }
         Element dataHelp;
-        if (search.isActive()) {
+        if (patternSearch.isActive()) {
+            dataHelp = row(text(" find: ").cyan().fit(), text(patternSearch.input() + "_").yellow().fit(),
+                    text("  text, x:hex with ??, i32:/i64:/f32:/f64:").dim().fit(),
+                    text("  ESC").cyan().fit(), text(" cancel  ").dim().fit(),
+                    text("Enter").cyan().fit(), text(" find").dim().fit());
+        } else if (search.isActive()) {
             dataHelp = row(text(" /: ").cyan().fit(), text(search.query() + "_").yellow().fit(),
                     text("  ESC").cyan().fit(), text(" cancel  ").dim().fit(),
                     text("Enter").cyan().fit(), text(" find").dim().fit());
@@ -62,6 +92,7 @@ public final class DataView implements View {
             dataHelp = row(text(" \u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
                     text("PgUp/Dn").cyan().fit(), text(" page  ").dim().fit(),
                     text("/").cyan().fit(), text(" search  ").dim().fit(),
+                    text("f").cyan().fit(), text(" find bytes  ").dim().fit(),
                     text("n/N").cyan().fit(), text(" next/prev  ").dim().fit(),
                     text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
         }
@@ -70,9 +101,22 @@ public final class DataView implements View {
         return ViewLayout.layout(ctx, contentPanel, dataHelp);
     }
 
-    private Element renderDataHexView(byte[] data) {
-        if (data.length == 0) return text("No data available").dim();
-        var hex = WasmUtils.formatHex(data);
-        return richText(WasmUtils.scrollContent(hex, scrollOffset)).overflow(Overflow.CLIP).fill();
+    private ByteBuffer segmentData(ViewContext ctx) {
+        if (segmentData == null) {
+            var ds = ctx.module().dataSection();
+            segmentData = selectedDataIdx < ds.dataSegmentCount()
+                    ? ByteBuffer.wrap(ds.getDataSegment(selectedDataIdx).data())
+                    : ByteBuffer.allocate(0);
+        }
+        return segmentData;
+    }
+
+    private Element renderDataHexView(ByteBuffer data) {
+        if (data.limit() == 0) return text("No data available").dim();
+        var hex = hexRenderer.render(data, scrollOffset, ViewLayout.MAX_VISIBLE_LINES);
+        if (!search.query().isEmpty()) {
+            return richText(AnsiTextParser.parseAnsiText(hex, search.query())).overflow(Overflow.CLIP).fill();
+        }
+        return richText(hex).overflow(Overflow.CLIP).fill();
     }
 }
@@ -0,0 +1,224 @@
+package io.roastedroot.w9s;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Filter index for one detail section. Searchable names are lowercased once
+ * into a single char arena, and filter results are kept as arrays of original
+ * row indices. Typing more characters refines the previous result, and deleting
+ * characters goes back to a result computed earlier.
+ */
+final class DetailSearchIndex {
+
+    // separates the name and module of an import so a filter cannot match across them
+    private static final char FIELD_SEPARATOR = '\0';
+
+    private final String section;
+    private final int version;
+    private final int rowCount;
+    private final char[] arena;
+    private final int[] starts;
+
+    // results for a chain of filters where each one extends the previous
+    private final List<String> chainFilters = new ArrayList<>();
+    private final List<int[]> chainRows = new ArrayList<>();
+    private int[] allRows;
+    private String lastFilter;
+    private int[] lastRows;
+
+    private DetailSearchIndex(String section, int version, int rowCount, char[] arena, int[] starts) {
+        this.section = section;
+        this.version = version;
+        this.rowCount = rowCount;
+        this.arena = arena;
+        this.starts = starts;
+    }
+
+    /** Builds the index for the currently selected section. */
+    static DetailSearchIndex build(ViewContext ctx) {
+        var section = ctx.selectedSectionName();
+        int rowCount = SectionRenderers.detailRowCount(ctx);
+        var module = ctx.module();
+        List<String> names = null;
+        int version = 0;
+        switch (section) {
+            case "Functions", "Code" -> {
+                var fd = ctx.functionData();
+                version = fd.namesVersion();
+                names = new ArrayList<>(rowCount);
+                for (int i = 0; i < rowCount; i++) {
+                    names.add(fd.functionName(i));
+                }
+            }
+            case "Exports" -> {
+                var es = module.exportSection();
+                names = new ArrayList<>(rowCount);
+                for (int i = 0; i < rowCount; i++) {
+                    names.add(es.getExport(i).name());
+                }
+            }
+            case "Imports" -> {
+                var is = module.importSection();
+                names = new ArrayList<>(rowCount);
+                for (int i = 0; i < rowCount; i++) {
+                    var imp = is.getImport(i);
+                    names.add(imp.name() + FIELD_SEPARATOR + imp.module());
+                }
+            }
+            default -> {}
+        }
+        return of(section, version, rowCount, names);
+    }
+
+    /**
+     * Builds an index over one name per row; with no names, rows match on
+     * their index only.
+     */
+    static DetailSearchIndex of(String section, int version, int rowCount, List<String> names) {
+        if (names == null) {
+            return new DetailSearchIndex(section, version, rowCount, null, null);
+        }
+
+        int total = 0;
+        for (var name : names) {
+            total += name.length();
+        }
+        var arena = new char[total];
+        var starts = new int[rowCount + 1];
+        int pos = 0;
+        for (int i = 0; i < rowCount; i++) {
+            starts[i] = pos;
+            var lower = names.get(i).toLowerCase();
+            // lowercasing may change the length of some non-ASCII names
+            if (pos + lower.length() > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, pos + lower.length()));
+            }
+            lower.getChars(0, lower.length(), arena, pos);
+            pos += lower.length();
+        }
+        starts[rowCount] = pos;
+        return new DetailSearchIndex(section, version, rowCount, arena, starts);
+    }
+
+    /** Whether this index still describes the selected section and its names. */
+    boolean isCurrent(ViewContext ctx) {
+        if (!section.equals(ctx.selectedSectionName())) {
+            return false;
+        }
+        return switch (section) {
+            case "Functions", "Code" -> version == ctx.functionData().namesVersion();
+            default -> true;
+        };
+    }
+
+    /**
+     * Returns the original indices of the rows matching {@code filter}, in order.
+     * The returned array is shared and must not be modified.
+     */
+    int[] rows(String filter) {
+        if (filter.equals(lastFilter)) {
+            return lastRows;
+        }
+        int[] result;
+        if (filter.isEmpty()) {
+            result = allRows();
+        } else {
+            var lower = filter.toLowerCase();
+            while (!chainFilters.isEmpty() && !lower.startsWith(chainFilters.get(chainFilters.size() - 1))) {
+                chainFilters.remove(chainFilters.size() - 1);
+                chainRows.remove(chainRows.size() - 1);
+            }
+            if (!chainFilters.isEmpty() && lower.equals(chainFilters.get(chainFilters.size() - 1))) {
+                result = chainRows.get(chainRows.size() - 1);
+            } else {
+                var candidates = chainRows.isEmpty() ? allRows() : chainRows.get(chainRows.size() - 1);
+                result = refine(candidates, lower);
+                chainFilters.add(lower);
+                chainRows.add(result);
+            }
+        }
+        lastFilter = filter;
+        lastRows = result;
+        return result;
+    }
+
+    int count(String filter) {
+        return rows(filter).length;
+    }
+
+    /** Maps a filtered row position back to the original index. */
+    int originalIndex(String filter, int filteredIdx) {
+        var rows = rows(filter);
+        return filteredIdx >= 0 && filteredIdx < rows.length ? rows[filteredIdx] : filteredIdx;
+    }
+
+    private int[] allRows() {
+        if (allRows == null) {
+            allRows = new int[rowCount];
+            for (int i = 0; i < rowCount; i++) {
+                allRows[i] = i;
+            }
+        }
+        return allRows;
+    }
+
+    private int[] refine(int[] candidates, String filter) {
+        var needle = filter.toCharArray();
+        var matches = new int[candidates.length];
+        int count = 0;
+        for (int row : candidates) {
+            if (indexStartsWith(row, filter) || (arena != null && nameContains(row, needle))) {
+                matches[count++] = row;
+            }
+        }
+        return Arrays.copyOf(matches, count);
+    }
+
+    private boolean nameContains(int row, char[] needle) {
+        int from = starts[row];
+        int last = starts[row + 1] - needle.length;
+        outer:
+        for (int i = from; i <= last; i++) {
+            for (int j = 0; j < needle.length; j++) {
+                if (arena[i + j] != needle[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Same as {@code String.valueOf(value).startsWith(prefix)}, without allocating. */
+    static boolean indexStartsWith(int value, String prefix) {
+        int len = prefix.length();
+        if (len == 0) {
+            return true;
+        }
+        if (len > 10 || (prefix.charAt(0) == '0' && len > 1)) {
+            return false;
+        }
+        long prefixValue = 0;
+        for (int i = 0; i < len; i++) {
+            char c = prefix.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+            prefixValue = prefixValue * 10 + (c - '0');
+        }
+        int digits = 1;
+        for (int v = value; v >= 10; v /= 10) {
+            digits++;
+        }
+        if (digits < len) {
+            return false;
+        }
+        long v = value;
+        for (int i = len; i < digits; i++) {
+            v /= 10;
+        }
+        return v == prefixValue;
+    }
+}
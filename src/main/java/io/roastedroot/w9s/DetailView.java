@@ -14,12 +14,14 @@ import dev.tamboui.widgets.table.TableState;
 public final class DetailView implements View {
 
     private final TableState detailTableState = new TableState();
+    private final TableWindow detailWindow = new TableWindow(detailTableState);
     private boolean inSearch = false;
     private String searchFilter = "";
     private boolean inGlobalEdit = false;
     private int globalEditIdx = -1;
     private String globalEditValue = "";
     private String globalEditError;
+    private DetailSearchIndex searchIndex;
 
     public DetailView() {
         detailTableState.select(0);
@@ -93,18 +95,18 @@ public final class DetailView implements View {
             return EventResult.HANDLED;
         }
         if (key.isUp()) { detailTableState.selectPrevious(); return EventResult.HANDLED; }
-        if (key.isDown()) { detailTableState.selectNext(SectionRenderers.filteredDetailRowCount(ctx, searchFilter)); return EventResult.HANDLED; }
+        if (key.isDown()) { detailTableState.selectNext(filteredRowCount(ctx)); return EventResult.HANDLED; }
         if (key.isPageUp()) {
             int current = detailTableState.selected() != null ? detailTableState.selected() : 0;
             detailTableState.select(Math.max(0, current - ViewLayout.PAGE_SIZE)); return EventResult.HANDLED;
         }
         if (key.isPageDown()) {
             int current = detailTableState.selected() != null ? detailTableState.selected() : 0;
-            int count = SectionRenderers.filteredDetailRowCount(ctx, searchFilter);
+            int count = filteredRowCount(ctx);
             detailTableState.select(Math.min(count - 1, current + ViewLayout.PAGE_SIZE)); return EventResult.HANDLED;
         }
         if (key.isHome()) { detailTableState.selectFirst(); return EventResult.HANDLED; }
-        if (key.isEnd()) { detailTableState.selectLast(SectionRenderers.filteredDetailRowCount(ctx, searchFilter)); return EventResult.HANDLED; }
+        if (key.isEnd()) { detailTableState.selectLast(filteredRowCount(ctx)); return EventResult.HANDLED; }
 
         if (key.isSelect() || key.isConfirm()) {
             var section = ctx.selectedSectionName();
@@ -216,7 +218,25 @@ public final class DetailView implements View {
 
     private int originalIndex(ViewContext ctx) {
         int selected = detailTableState.selected() != null ? detailTableState.selected() : 0;
-        return SectionRenderers.filteredToOriginalIndex(selected, ctx, searchFilter);
+        if (searchFilter.isEmpty()) return selected;
+        return searchIndex(ctx).originalIndex(searchFilter, selected);
+    }
+
+    private int filteredRowCount(ViewContext ctx) {
+        if (searchFilter.isEmpty()) return SectionRenderers.detailRowCount(ctx);
+        return searchIndex(ctx).count(searchFilter);
+    }
+
+    /** Original indices of the rows matching the filter, or null when unfiltered. */
+    private int[] filteredRows(ViewContext ctx) {
+        return searchFilter.isEmpty() ? null : searchIndex(ctx).rows(searchFilter);
+    }
+
+    private DetailSearchIndex searchIndex(ViewContext ctx) {
+        if (searchIndex == null || !searchIndex.isCurrent(ctx)) {
+            searchIndex = DetailSearchIndex.build(ctx);
+        }
+        return searchIndex;
     }
 
     private void handleRunExport(ViewContext ctx) {
@@ -304,7 +324,7 @@ public final class DetailView implements View {
     }
 
     private Element renderDetailWithGlobalEdit(ViewContext ctx, String selectedName) {
-        var base = SectionRenderers.renderDetail(ctx, selectedName, detailTableState, searchFilter);
+        var base = SectionRenderers.renderDetail(ctx, selectedName, detailWindow, filteredRows(ctx));
         if ("Globals".equals(selectedName)) {
             if (inGlobalEdit) {
                 var gs = ctx.module().globalSection();
@@ -0,0 +1,17 @@
+package io.roastedroot.w9s;
+
+/** How exported functions are executed when run from the UI. */
+enum ExecutionEngine {
+    /** Chicory's interpreter: no start-up cost, slowest execution. */
+    INTERPRETER,
+    /** Module compiled to JVM bytecode once per session, then reused by every instance. */
+    COMPILER;
+
+    ExecutionEngine next() {
+        return values()[(ordinal() + 1) % values().length];
+    }
+
+    String label() {
+        return name().toLowerCase();
+    }
+}
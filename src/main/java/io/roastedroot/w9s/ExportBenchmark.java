@@ -0,0 +1,172 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasi.WasiExitException;
+import java.util.Arrays;
+import java.util.function.IntSupplier;
+
+/**
+ * Repeatedly calls an export with fixed arguments and summarises the latency.
+ * Warm-up calls are run first and discarded so interpreter start-up costs do not
+ * skew the result. Memory size is sampled around every measured call to spot
+ * guest code that grows memory on each invocation.
+ */
+final class ExportBenchmark {
+
+    static final int HISTOGRAM_BINS = 10;
+
+    /**
+     * Latency summary in nanoseconds. {@code histogram} counts calls in
+     * {@link #HISTOGRAM_BINS} log-spaced bins from {@code min} to {@code max};
+     * {@code error} is set when a call failed and the run stopped early, and
+     * {@code exited} when that call was a WASI exit.
+     */
+    record Result(
+            int warmup,
+            int iterations,
+            long min,
+            double mean,
+            long p50,
+            long p99,
+            long max,
+            double opsPerSecond,
+            int[] histogram,
+            int pagesBefore,
+            int pagesAfter,
+            int growingIterations,
+            String error,
+            boolean exited) {}
+
+    private ExportBenchmark() {}
+
+    /**
+     * Runs up to {@code warmup} then {@code iterations} calls. Once
+     * {@code budgetNanos} has elapsed, counting from the first warm-up call, the
+     * warm-up is cut short and at most one more call is measured. {@code afterCall}
+     * runs between calls, outside the timed region.
+     */
+    static Result run(
+            ExportFunction func,
+            long[] args,
+            Memory memory,
+            int warmup,
+            int iterations,
+            long budgetNanos,
+            Runnable afterCall) {
+        IntSupplier pages = () -> memory != null ? memory.pages() : 0;
+        int pagesBefore = pages.getAsInt();
+        long deadline = System.nanoTime() + budgetNanos;
+        int warmed = 0;
+        try {
+            while (warmed < warmup && System.nanoTime() - deadline < 0) {
+                func.apply(args);
+                afterCall.run();
+                warmed++;
+            }
+        } catch (RuntimeException e) {
+            return failed(warmed, pagesBefore, pages.getAsInt(), "Warm-up failed: " + describe(e),
+                    e instanceof WasiExitException);
+        }
+
+        var samples = new long[Math.max(0, iterations)];
+        int done = 0;
+        int growing = 0;
+        String error = null;
+        boolean exited = false;
+        int lastPages = pages.getAsInt();
+        while (done < samples.length) {
+            long start = System.nanoTime();
+            try {
+                func.apply(args);
+            } catch (RuntimeException e) {
+                error = "Iteration " + done + " failed: " + describe(e);
+                exited = e instanceof WasiExitException;
+                break;
+            }
+            long end = System.nanoTime();
+            samples[done++] = end - start;
+            afterCall.run();
+            int now = pages.getAsInt();
+            if (now > lastPages) {
+                growing++;
+            }
+            lastPages = now;
+            if (end - deadline > 0) {
+                break;
+            }
+        }
+        if (done == 0) {
+            return failed(warmed, pagesBefore, lastPages, error != null ? error : "No iterations run", exited);
+        }
+        return summarize(warmed, Arrays.copyOf(samples, done), pagesBefore, lastPages, growing, error, exited);
+    }
+
+    static Result summarize(
+            int warmup, long[] samples, int pagesBefore, int pagesAfter, int growing, String error, boolean exited) {
+        var sorted = samples.clone();
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long s : sorted) {
+            total += s;
+        }
+        double mean = (double) total / sorted.length;
+        return new Result(
+                warmup,
+                sorted.length,
+                sorted[0],
+                mean,
+                percentile(sorted, 50),
+                percentile(sorted, 99),
+                sorted[sorted.length - 1],
+                mean > 0 ? 1e9 / mean : 0,
+                histogram(sorted),
+                pagesBefore,
+                pagesAfter,
+                growing,
+                error,
+                exited);
+    }
+
+    /** Nearest-rank percentile of an ascending array. */
+    static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    static int[] histogram(long[] sorted) {
+        var bins = new int[HISTOGRAM_BINS];
+        double low = Math.log(Math.max(1, sorted[0]));
+        double high = Math.log(Math.max(1, sorted[sorted.length - 1]));
+        for (long s : sorted) {
+            int bin = high > low
+                    ? (int) ((Math.log(Math.max(1, s)) - low) / (high - low) * HISTOGRAM_BINS)
+                    : 0;
+            bins[Math.min(HISTOGRAM_BINS - 1, bin)]++;
+        }
+        return bins;
+    }
+
+    /** Lower bound of a histogram bin, in nanoseconds. */
+    static long binStart(Result result, int bin) {
+        double low = Math.log(Math.max(1, result.min()));
+        double high = Math.log(Math.max(1, result.max()));
+        return Math.round(Math.exp(low + (high - low) * bin / HISTOGRAM_BINS));
+    }
+
+    static String formatNanos(double nanos) {
+        if (nanos < 1_000) return String.format("%.0f ns", nanos);
+        if (nanos < 1_000_000) return String.format("%.2f \u00b5s", nanos / 1e3);
+        if (nanos < 1_000_000_000) return String.format("%.2f ms", nanos / 1e6);
+        return String.format("%.2f s", nanos / 1e9);
+    }
+
+    private static Result failed(int warmup, int pagesBefore, int pagesAfter, String error, boolean exited) {
+        return new Result(
+                warmup, 0, 0, 0, 0, 0, 0, 0, new int[HISTOGRAM_BINS], pagesBefore, pagesAfter, 0, error, exited);
+    }
+
+    private static String describe(RuntimeException e) {
+        return e.getClass().getSimpleName() + (e.getMessage() != null ? ": " + e.getMessage() : "");
+    }
+}
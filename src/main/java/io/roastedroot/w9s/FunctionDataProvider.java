@@ -2,133 +2,450 @@ package io.roastedroot.w9s;
 
 import com.dylibso.chicory.wasm.WasmModule;
 import com.dylibso.chicory.wasm.types.ExternalType;
-import io.roastedroot.lumis4j.core.Formatter;
-import io.roastedroot.lumis4j.core.Highlighter;
-import io.roastedroot.lumis4j.core.Lang;
-import io.roastedroot.lumis4j.core.Lumis;
-import io.roastedroot.lumis4j.core.Theme;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.UnaryOperator;
 
 public final class FunctionDataProvider {
 
+    // functions resolved, with one demangler instance, before their names are published
+    static final int MIN_NAME_SHARD = 2048;
+    // exports highlighted ahead of time once the module is loaded
+    private static final int HOT_EXPORTS = 8;
+
     private final WasmModule module;
-    private final List<byte[]> functionBodies;
+    private final ByteBuffer wasm;
+    private final CodeSectionIndex codeIndex;
+    private final boolean lazyWat;
+    private final Wasm2WatPool watPool;
+    private final FunctionModuleBuilder functionModules;
     private final CompletableFuture<List<String>> functionWatsFuture;
-    private final CompletableFuture<List<String>> functionNamesFuture;
-    private final java.util.Map<Integer, String> highlightedWatCache = new java.util.HashMap<>();
+    private final Map<Integer, CompletableFuture<String>> lazyWats = new ConcurrentHashMap<>();
+    private final AtomicReferenceArray<String> functionNames;
+    private final CompletableFuture<Void> functionNamesReady;
+    private final AtomicInteger namesVersion = new AtomicInteger();
+    private final WeightedLruCache<Integer, StyledText> highlightedWatCache;
+    private final ArtifactCache artifactCache;
+    private final String cacheKey;
+
+    private final HighlightPool highlightPool;
+    private final Map<Integer, PendingHighlight> pendingHighlights = new ConcurrentHashMap<>();
+    private final Set<Integer> failedHighlights = ConcurrentHashMap.newKeySet();
+    private volatile int prehighlightCenter = -1;
+    private int lastHighlightLookup = -1;
 
-    private volatile Lumis lumis;
-    private volatile Highlighter watHighlighter;
-    private final CompletableFuture<Void> highlighterReady;
+    private record PendingHighlight(HighlightPool.Priority priority, CompletableFuture<StyledText> future) {}
 
-    FunctionDataProvider(WasmModule module, byte[] wasmBytes) {
+    FunctionDataProvider(WasmModule module, ByteBuffer wasm, W9sOptions options) {
         this.module = module;
-        this.functionBodies = WasmUtils.extractFunctionBodies(wasmBytes);
-        this.functionNamesFuture = CompletableFuture.supplyAsync(() -> buildFunctionNames(module));
-
-        this.functionWatsFuture =
-                CompletableFuture.supplyAsync(
-                        () -> {
-                            try {
-                                return WasmUtils.extractFunctions(Wasm2Wat.print(wasmBytes));
-                            } catch (Exception e) {
-                                return List.of();
+        this.wasm = wasm;
+        this.codeIndex = CodeSectionIndex.scan(wasm);
+        this.highlightedWatCache = new WeightedLruCache<>(options.highlightCacheBytes(), StyledText::weight);
+        this.watPool = new Wasm2WatPool(options.watWorkers(), options.watQueueDepth());
+        this.functionNames = new AtomicReferenceArray<>(module.functionSection().functionCount());
+        this.artifactCache = options.diskCacheBytes() > 0
+                ? new ArtifactCache(ArtifactCache.defaultDirectory(), options.diskCacheBytes())
+                : null;
+        this.cacheKey = artifactCache != null ? ArtifactCache.key(wasm) : null;
+
+        var cachedNames = artifactCache != null ? artifactCache.read(cacheKey, ArtifactCache.NAMES) : null;
+        if (cachedNames != null && cachedNames.size() == functionNames.length()) {
+            for (int i = 0; i < cachedNames.size(); i++) {
+                functionNames.set(i, cachedNames.get(i));
+            }
+            namesVersion.incrementAndGet();
+            this.functionNamesReady = CompletableFuture.completedFuture(null);
+        } else {
+            this.functionNamesReady = resolveFunctionNames(module, functionNames, namesVersion);
+            if (artifactCache != null) {
+                // Runs only when every shard succeeded, so mangled fallbacks are never stored
+                functionNamesReady.thenRunAsync(
+                        () -> artifactCache.write(cacheKey, ArtifactCache.NAMES, snapshot(functionNames)));
+            }
+        }
+
+        // Cached WAT is served directly, so lazy disassembly is only needed without it
+        var cachedWats = artifactCache != null ? artifactCache.read(cacheKey, ArtifactCache.WAT) : null;
+        if (cachedWats != null && cachedWats.size() == codeIndex.bodyCount()) {
+            this.lazyWat = false;
+            this.functionWatsFuture = CompletableFuture.completedFuture(cachedWats);
+        } else if (options.lazyWat()) {
+            this.lazyWat = true;
+            this.functionWatsFuture = null;
+        } else {
+            this.lazyWat = false;
+            this.functionWatsFuture =
+                    watPool.print(() -> wasm, UnaryOperator.identity())
+                            .thenApply(WasmUtils::extractFunctions)
+                            .exceptionally(e -> List.of());
+            if (artifactCache != null) {
+                functionWatsFuture.thenAcceptAsync(
+                        wats -> {
+                            // A failed print leaves no list, and a partial one is not stored
+                            if (wats.size() == codeIndex.bodyCount() && !wats.contains(null)) {
+                                artifactCache.write(cacheKey, ArtifactCache.WAT, wats);
                             }
                         });
+            }
+        }
 
-        this.highlighterReady =
-                CompletableFuture.runAsync(
-                        () -> {
-                            this.lumis = Lumis.builder().build();
-                            this.watHighlighter =
-                                    lumis.highlighter()
-                                            .withLang(Lang.WAT)
-                                            .withTheme(Theme.DRACULA)
-                                            .withFormatter(Formatter.TERMINAL)
-                                            .build();
-                        });
+        this.functionModules = lazyWat ? new FunctionModuleBuilder(module, wasm, codeIndex) : null;
+        this.highlightPool = new HighlightPool(options.highlightWorkers());
+        // Warm the cache with the exports the module itself calls most
+        CompletableFuture.supplyAsync(() -> mostCalledExports(module, HOT_EXPORTS))
+                .thenAccept(hot -> hot.forEach(this::prehighlight));
+    }
+
+    int functionBodyCount() {
+        return codeIndex.bodyCount();
+    }
+
+    int functionBodySize(int localFuncIdx) {
+        return localFuncIdx < codeIndex.bodyCount() ? codeIndex.bodyLengths()[localFuncIdx] : 0;
+    }
+
+    /** Returns the raw body bytes of a local function as a slice of the module buffer. */
+    ByteBuffer functionBody(int localFuncIdx) {
+        if (localFuncIdx < 0 || localFuncIdx >= codeIndex.bodyCount()) {
+            return ByteBuffer.allocate(0);
+        }
+        return codeIndex.body(wasm, localFuncIdx);
+    }
+
+    /**
+     * Returns the WAT of a local function. The future completes with null, or
+     * exceptionally, when no WAT is available; see {@link #watOrNull}. In lazy mode
+     * the function is disassembled on first request and its neighbours are
+     * prefetched in the background.
+     */
+    CompletableFuture<String> functionWat(int localFuncIdx) {
+        if (!lazyWat) {
+            return functionWatsFuture.thenApply(
+                    wats -> localFuncIdx < wats.size() ? wats.get(localFuncIdx) : null);
+        }
+        if (localFuncIdx < 0 || localFuncIdx >= codeIndex.bodyCount()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        var wat = disassemble(localFuncIdx);
+        if (localFuncIdx + 1 < codeIndex.bodyCount()) {
+            disassemble(localFuncIdx + 1);
+        }
+        if (localFuncIdx > 0) {
+            disassemble(localFuncIdx - 1);
+        }
+        return wat;
+    }
+
+    /** Returns the completed WAT of a future from {@link #functionWat}, or null. */
+    static String watOrNull(CompletableFuture<String> wat) {
+        return wat.isDone() && !wat.isCompletedExceptionally() ? wat.join() : null;
     }
 
-    List<byte[]> functionBodies() {
-        return functionBodies;
+    /**
+     * Cancels lazy disassembly jobs that are still pending, except those for
+     * {@code keepIdx} and its neighbours. Pass -1 to cancel every pending job.
+     */
+    void cancelPendingWat(int keepIdx) {
+        for (var entry : lazyWats.entrySet()) {
+            int idx = entry.getKey();
+            if (keepIdx >= 0 && Math.abs(idx - keepIdx) <= 1) {
+                continue;
+            }
+            if (!entry.getValue().isDone()) {
+                entry.getValue().cancel(true);
+                lazyWats.remove(idx, entry.getValue());
+            }
+        }
     }
 
-    CompletableFuture<List<String>> functionWatsFuture() {
-        return functionWatsFuture;
+    private CompletableFuture<String> disassemble(int localFuncIdx) {
+        return lazyWats.compute(
+                localFuncIdx,
+                (idx, existing) -> {
+                    // A cancelled or failed disassembly is retried rather than kept
+                    if (existing != null && !existing.isCompletedExceptionally()) {
+                        return existing;
+                    }
+                    return watPool.print(
+                            () -> ByteBuffer.wrap(functionModules.build(idx)),
+                            wat -> functionModules.extract(wat, idx));
+                });
     }
 
-    java.util.Map<Integer, String> highlightedWatCache() {
+    WeightedLruCache<Integer, StyledText> highlightedWatCache() {
         return highlightedWatCache;
     }
 
-    Highlighter watHighlighter() {
-        return watHighlighter;
+    /**
+     * Returns the highlighted WAT of a local function if it is ready. Otherwise
+     * schedules it ahead of any speculative work and returns null, and the caller
+     * should show the plain WAT meanwhile.
+     */
+    StyledText highlightedWat(int localFuncIdx, String rawWat) {
+        // One counted lookup per function shown; redraws of the same function only peek
+        var cached = localFuncIdx == lastHighlightLookup
+                ? highlightedWatCache.peek(localFuncIdx)
+                : highlightedWatCache.get(localFuncIdx);
+        lastHighlightLookup = localFuncIdx;
+        if (cached != null || failedHighlights.contains(localFuncIdx)) {
+            return cached;
+        }
+        scheduleHighlight(localFuncIdx, rawWat, HighlightPool.Priority.FOREGROUND);
+        return null;
+    }
+
+    /** Speculatively highlights the neighbours of the function being viewed. */
+    void prehighlightAround(int localFuncIdx) {
+        if (prehighlightCenter == localFuncIdx) {
+            return;
+        }
+        prehighlightCenter = localFuncIdx;
+        prehighlight(localFuncIdx + 1);
+        prehighlight(localFuncIdx - 1);
     }
 
-    CompletableFuture<Void> highlighterReady() {
-        return highlighterReady;
+    private void prehighlight(int localFuncIdx) {
+        if (localFuncIdx < 0 || localFuncIdx >= codeIndex.bodyCount()
+                || highlightedWatCache.contains(localFuncIdx)
+                || pendingHighlights.containsKey(localFuncIdx)
+                || failedHighlights.contains(localFuncIdx)) {
+            return;
+        }
+        var wat = lazyWat ? disassemble(localFuncIdx) : functionWat(localFuncIdx);
+        wat.thenAccept(
+                w -> {
+                    if (w != null) {
+                        scheduleHighlight(localFuncIdx, w, HighlightPool.Priority.SPECULATIVE);
+                    }
+                });
     }
 
-    String functionName(int localFuncIdx) {
-        if (functionNamesFuture.isDone() && !functionNamesFuture.isCompletedExceptionally()) {
-            var names = functionNamesFuture.join();
-            if (localFuncIdx >= 0 && localFuncIdx < names.size()) {
-                var name = names.get(localFuncIdx);
-                if (name != null) {
-                    return name;
+    private void scheduleHighlight(int localFuncIdx, String rawWat, HighlightPool.Priority priority) {
+        var submitted = new PendingHighlight[1];
+        pendingHighlights.compute(
+                localFuncIdx,
+                (idx, existing) -> {
+                    if (existing != null
+                            && !existing.future().isDone()
+                            && existing.priority().compareTo(priority) <= 0) {
+                        return existing;
+                    }
+                    if (existing != null) {
+                        // Superseded by a more urgent job; skip it if it has not started
+                        existing.future().cancel(false);
+                    }
+                    submitted[0] = new PendingHighlight(priority, highlightPool.highlight(rawWat, priority));
+                    return submitted[0];
+                });
+        var pending = submitted[0];
+        if (pending == null) {
+            return;
+        }
+        // Registered outside compute: the job may already be done and run this inline
+        pending.future().whenComplete(
+                (styled, e) -> {
+                    if (styled != null) {
+                        highlightedWatCache.put(localFuncIdx, styled);
+                    } else if (!pending.future().isCancelled()) {
+                        failedHighlights.add(localFuncIdx);
+                    }
+                    pendingHighlights.remove(localFuncIdx, pending);
+                });
+    }
+
+    /** Returns up to {@code limit} exported local functions, most statically called first. */
+    static List<Integer> mostCalledExports(WasmModule module, int limit) {
+        int importedFuncs = module.importSection().count(ExternalType.FUNCTION);
+        var calls = WasmUtils.staticCallCounts(module);
+        var exported = new ArrayList<Integer>();
+        var seen = new boolean[calls.length];
+        var es = module.exportSection();
+        for (int i = 0; i < es.exportCount(); i++) {
+            var exp = es.getExport(i);
+            if (exp.exportType() == ExternalType.FUNCTION) {
+                int localIdx = (int) exp.index() - importedFuncs;
+                if (localIdx >= 0 && localIdx < calls.length && !seen[localIdx]) {
+                    seen[localIdx] = true;
+                    exported.add(localIdx);
                 }
             }
         }
+        exported.sort((a, b) -> Integer.compare(calls[b], calls[a]));
+        return List.copyOf(exported.subList(0, Math.min(limit, exported.size())));
+    }
+
+    /**
+     * Returns the resolved name of a local function, or {@code func #N} until the
+     * shard holding it has been published.
+     */
+    String functionName(int localFuncIdx) {
+        if (localFuncIdx >= 0 && localFuncIdx < functionNames.length()) {
+            var name = functionNames.get(localFuncIdx);
+            if (name != null) {
+                return name;
+            }
+        }
         return "func #" + localFuncIdx;
     }
 
-    void close() {
-        highlighterReady.join();
-        if (lumis != null) {
-            lumis.close();
+    private static List<String> snapshot(AtomicReferenceArray<String> names) {
+        var result = new ArrayList<String>(names.length());
+        for (int i = 0; i < names.length(); i++) {
+            result.add(names.get(i));
         }
+        return result;
+    }
+
+    /** Increases every time a shard of function names is published. */
+    int namesVersion() {
+        return namesVersion.get();
+    }
+
+    CompletableFuture<Void> functionNamesReady() {
+        return functionNamesReady;
+    }
+
+    /** Why some function names are shown mangled, or null when every shard was demangled. */
+    String namesError() {
+        return functionNamesReady.state() == Future.State.FAILED
+                ? functionNamesReady.exceptionNow().getMessage()
+                : null;
     }
 
-    private static List<String> buildFunctionNames(WasmModule module) {
+    void close() {
+        watPool.close();
+        highlightPool.close();
+    }
+
+    /**
+     * Resolves names in shards of {@link #MIN_NAME_SHARD} functions on a pool of at
+     * most one thread per processor. Shards start in index order, so the first
+     * functions of the list get their names first rather than all at the end.
+     */
+    static CompletableFuture<Void> resolveFunctionNames(
+            WasmModule module, AtomicReferenceArray<String> names, AtomicInteger version) {
         int importedFuncs = module.importSection().count(ExternalType.FUNCTION);
-        int localFuncCount = module.functionSection().functionCount();
-        var names = new ArrayList<String>(localFuncCount);
+        int localFuncCount = names.length();
+        if (localFuncCount == 0) {
+            return CompletableFuture.completedFuture(null);
+        }
 
-        // Initialize with name section names (uses absolute indices)
-        var nameSection = module.nameSection();
-        for (int i = 0; i < localFuncCount; i++) {
-            int absIdx = importedFuncs + i;
-            String name = null;
-            if (nameSection != null) {
-                name = nameSection.nameOfFunction(absIdx);
-            }
-            names.add(name);
+        var exportNames = exportNames(module, importedFuncs, localFuncCount);
+        int shardCount = (localFuncCount + MIN_NAME_SHARD - 1) / MIN_NAME_SHARD;
+        int workers = Math.min(Runtime.getRuntime().availableProcessors(), shardCount);
+        var threadCount = new AtomicInteger();
+        var executor =
+                Executors.newFixedThreadPool(
+                        workers,
+                        r -> {
+                            var t = new Thread(r, "w9s-names-" + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        var shards = new ArrayList<CompletableFuture<Void>>(shardCount);
+        for (int start = 0; start < localFuncCount; start += MIN_NAME_SHARD) {
+            int from = start;
+            int to = Math.min(localFuncCount, start + MIN_NAME_SHARD);
+            shards.add(
+                    CompletableFuture.runAsync(
+                            () ->
+                                    resolveShard(
+                                            module, exportNames, importedFuncs, from, to, names,
+                                            version),
+                            executor));
         }
+        // Queued shards still run; the threads exit once the queue is empty
+        executor.shutdown();
+        return CompletableFuture.allOf(shards.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /**
+     * Resolves and demangles every local function name on the calling thread.
+     * Functions without a name are null. Throws IllegalStateException when the
+     * demangler fails.
+     */
+    static List<String> resolveFunctionNames(WasmModule module) {
+        int importedFuncs = module.importSection().count(ExternalType.FUNCTION);
+        int localFuncCount = module.functionSection().functionCount();
+        var names = new AtomicReferenceArray<String>(localFuncCount);
+        resolveShard(
+                module,
+                exportNames(module, importedFuncs, localFuncCount),
+                importedFuncs,
+                0,
+                localFuncCount,
+                names,
+                new AtomicInteger());
+        return snapshot(names);
+    }
 
-        // Fill in from exports where name section didn't have a name
+    // Exports fill in where the name section has no name; the first export wins
+    private static Map<Integer, String> exportNames(
+            WasmModule module, int importedFuncs, int localFuncCount) {
+        var exportNames = new HashMap<Integer, String>();
         var es = module.exportSection();
         for (int i = 0; i < es.exportCount(); i++) {
             var exp = es.getExport(i);
             if (exp.exportType() == ExternalType.FUNCTION) {
                 int localIdx = (int) exp.index() - importedFuncs;
-                if (localIdx >= 0 && localIdx < localFuncCount && names.get(localIdx) == null) {
-                    names.set(localIdx, exp.name());
+                if (localIdx >= 0 && localIdx < localFuncCount) {
+                    exportNames.putIfAbsent(localIdx, exp.name());
                 }
             }
         }
+        return exportNames;
+    }
 
-        // Demangle all names
-        try (var demangler = new RustcDemangle()) {
-            for (int i = 0; i < names.size(); i++) {
-                var name = names.get(i);
-                if (name != null) {
-                    names.set(i, demangler.demangle(name));
-                }
+    /** Resolves and demangles names in [from, to) and publishes them once the shard is done. */
+    private static void resolveShard(
+            WasmModule module,
+            Map<Integer, String> exportNames,
+            int importedFuncs,
+            int from,
+            int to,
+            AtomicReferenceArray<String> names,
+            AtomicInteger version) {
+        var nameSection = module.nameSection();
+        var raw = new ArrayList<String>(to - from);
+        for (int i = from; i < to; i++) {
+            String name = null;
+            if (nameSection != null) {
+                name = nameSection.nameOfFunction(importedFuncs + i);
             }
+            if (name == null) {
+                name = exportNames.get(i);
+            }
+            raw.add(name);
         }
 
-        return names;
+        List<String> resolved = raw;
+        RuntimeException failure = null;
+        if (raw.stream().anyMatch(RustcDemangle::isMangledCandidate)) {
+            try (var demangler = new RustcDemangle()) {
+                resolved = demangler.demangleAll(raw);
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        for (int i = 0; i < resolved.size(); i++) {
+            names.set(from + i, resolved.get(i));
+        }
+        version.incrementAndGet();
+        if (failure != null) {
+            // The mangled names stay on screen, but the shard fails so they are reported and not cached
+            throw new IllegalStateException(
+                    "Demangling failed for functions " + from + "-" + (to - 1) + ": " + failure.getMessage(),
+                    failure);
+        }
     }
 }
@@ -0,0 +1,288 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.OpCode;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Builds modules that disassemble to the WAT of a single function, at a cost
+ * that does not grow with the number of functions. The header and the type,
+ * import, table, memory, tag, global and element sections are copied once;
+ * each module then holds the target's function entry and body, and a name
+ * section trimmed to the target and the functions it references. References
+ * keep their indices: the target takes the first local index its body does not
+ * reference, after empty stubs for the ones it does, and {@link #extract} puts
+ * its own index back in the header. Only a named target's references to itself
+ * are rewritten, while copying the body, so they print with its name.
+ */
+final class FunctionModuleBuilder {
+
+    private static final int FUNCTION_NAMES = 1;
+    private static final int LOCAL_NAMES = 2;
+    private static final int LABEL_NAMES = 3;
+
+    /** A name map of the name section: sorted keys and the byte range of each value. */
+    private record NameMap(int[] keys, int[] starts, int[] ends) {
+        static final NameMap EMPTY = new NameMap(new int[0], new int[0], new int[0]);
+
+        int find(int key) {
+            return Arrays.binarySearch(keys, key);
+        }
+    }
+
+    private final WasmModule module;
+    private final ByteBuffer wasm;
+    private final CodeSectionIndex index;
+    private final int importedFuncs;
+    private final byte[] prefix;
+    // Sections after the function section that bodies refer to
+    private final byte[] context;
+    private final NameMap functionNames;
+    private final NameMap localNames;
+    private final NameMap labelNames;
+    // Name subsections not keyed by function (types, globals, ...), copied as they are
+    private final byte[] otherNames;
+
+    FunctionModuleBuilder(WasmModule module, ByteBuffer wasm, CodeSectionIndex index) {
+        this.module = module;
+        this.wasm = wasm;
+        this.index = index;
+        this.importedFuncs = module.importSection().count(ExternalType.FUNCTION);
+        var out = new ByteArrayOutputStream();
+        WasmUtils.copyRange(out, wasm, 0, 8);
+        var context = new ByteArrayOutputStream();
+        var names = new NameMap[] {NameMap.EMPTY, NameMap.EMPTY, NameMap.EMPTY, NameMap.EMPTY};
+        var other = new ByteArrayOutputStream();
+        int length = wasm.limit();
+        int pos = 8;
+        while (pos < length) {
+            int sectionStart = pos;
+            int sectionId = wasm.get(pos++) & 0xFF;
+            int sectionSize = WasmUtils.readLEB128(wasm, pos);
+            pos += WasmUtils.leb128Size(wasm, pos);
+            int sectionEnd = pos + sectionSize;
+            if (sectionId == 1 || sectionId == 2) { // types and imports
+                WasmUtils.copyRange(out, wasm, sectionStart, sectionEnd - sectionStart);
+            } else if (sectionId == 4 || sectionId == 5 || sectionId == 13 || sectionId == 6 || sectionId == 9) {
+                // tables, memories, tags, globals and elements, in file order
+                WasmUtils.copyRange(context, wasm, sectionStart, sectionEnd - sectionStart);
+            } else if (sectionId == 0 && "name".equals(readName(wasm, pos))) {
+                readNameSection(skipName(wasm, pos), sectionEnd, names, other);
+            }
+            pos = sectionEnd;
+        }
+        this.prefix = out.toByteArray();
+        this.context = context.toByteArray();
+        this.functionNames = names[FUNCTION_NAMES];
+        this.localNames = names[LOCAL_NAMES];
+        this.labelNames = names[LABEL_NAMES];
+        this.otherNames = other.toByteArray();
+    }
+
+    /** Builds the module to disassemble for a local function; see {@link #extract}. */
+    byte[] build(int localFuncIdx) {
+        var referenced = referencedFunctions(localFuncIdx);
+        int target = importedFuncs + localFuncIdx;
+        int printed = printedIndex(target, referenced);
+        int stubs = printed - importedFuncs;
+        int typeIdx = module.functionSection().getFunctionType(localFuncIdx);
+        int self = functionNames.find(target);
+        var body = body(localFuncIdx, target, self >= 0 ? printed : target);
+        var out = new ByteArrayOutputStream(prefix.length + context.length + body.length + 256);
+        out.writeBytes(prefix);
+
+        var functions = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(functions, stubs + 1);
+        for (int i = 0; i <= stubs; i++) {
+            WasmUtils.writeLEB128(functions, typeIdx);
+        }
+        writeSection(out, 3, functions);
+        out.writeBytes(context);
+
+        var code = new ByteArrayOutputStream(body.length + stubs * WasmUtils.EMPTY_FUNCTION_BODY.length + 16);
+        WasmUtils.writeLEB128(code, stubs + 1);
+        for (int i = 0; i < stubs; i++) {
+            code.writeBytes(WasmUtils.EMPTY_FUNCTION_BODY);
+        }
+        WasmUtils.writeLEB128(code, body.length);
+        code.writeBytes(body);
+        writeSection(out, 10, code);
+
+        // The target is named at the index it gets here, and the functions it references at theirs
+        var entries = new TreeMap<Integer, Integer>();
+        for (int func : referenced) {
+            int i = functionNames.find(func);
+            if (func != target && i >= 0) {
+                entries.put(func, i);
+            }
+        }
+        if (self >= 0) {
+            entries.put(printed, self);
+        }
+        var names = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(names, 4);
+        names.writeBytes("name".getBytes(StandardCharsets.UTF_8));
+        if (!entries.isEmpty()) {
+            var map = new ByteArrayOutputStream();
+            WasmUtils.writeLEB128(map, entries.size());
+            for (var e : entries.entrySet()) {
+                WasmUtils.writeLEB128(map, e.getKey());
+                copyValue(map, functionNames, e.getValue());
+            }
+            writeSection(names, FUNCTION_NAMES, map);
+        }
+        writeIndirectEntry(names, LOCAL_NAMES, localNames, target, printed);
+        writeIndirectEntry(names, LABEL_NAMES, labelNames, target, printed);
+        names.writeBytes(otherNames);
+        if (names.size() > 5) { // more than the section name
+            writeSection(out, 0, names);
+        }
+        return out.toByteArray();
+    }
+
+    /** Returns the WAT of a local function from the disassembly of {@link #build}, or null. */
+    String extract(String wat, int localFuncIdx) {
+        int target = importedFuncs + localFuncIdx;
+        int printed = printedIndex(target, referencedFunctions(localFuncIdx));
+        var function = WasmUtils.extractFunction(wat, printed - importedFuncs);
+        if (function == null || printed == target) {
+            return function;
+        }
+        var printedIndex = "(;" + printed + ";)";
+        int at = function.indexOf(printedIndex);
+        if (at < 0) {
+            return function;
+        }
+        return function.substring(0, at) + "(;" + target + ";)" + function.substring(at + printedIndex.length());
+    }
+
+    /**
+     * Index the target gets in its module: its own when the functions before it
+     * are all referenced, otherwise the first local index the body leaves free.
+     */
+    private int printedIndex(int target, int[] referenced) {
+        int printed = importedFuncs;
+        while (printed < target && Arrays.binarySearch(referenced, printed) >= 0) {
+            printed++;
+        }
+        return printed;
+    }
+
+    /** Copies a body, pointing its calls and references to function {@code from} at {@code to}. */
+    private byte[] body(int localFuncIdx, int from, int to) {
+        int start = index.bodyOffsets()[localFuncIdx];
+        int end = start + index.bodyLengths()[localFuncIdx];
+        var out = new ByteArrayOutputStream(end - start + 8);
+        int pos = start;
+        if (from != to) {
+            for (var ins : module.codeSection().getFunctionBody(localFuncIdx).instructions()) {
+                // Chicory addresses are module offsets; each of these opcodes is one byte
+                int at = ins.address();
+                if (isReference(ins.opcode()) && ins.operand(0) == from && at >= pos && at < end) {
+                    WasmUtils.copyRange(out, wasm, pos, at + 1 - pos);
+                    WasmUtils.writeLEB128(out, to);
+                    pos = at + 1 + WasmUtils.leb128Size(wasm, at + 1);
+                }
+            }
+        }
+        WasmUtils.copyRange(out, wasm, pos, end - pos);
+        return out.toByteArray();
+    }
+
+    private static boolean isReference(OpCode op) {
+        return op == OpCode.CALL || op == OpCode.RETURN_CALL || op == OpCode.REF_FUNC;
+    }
+
+    /** Function indices called or referenced by a body, sorted. */
+    private int[] referencedFunctions(int localFuncIdx) {
+        var referenced = new TreeSet<Integer>();
+        for (var ins : module.codeSection().getFunctionBody(localFuncIdx).instructions()) {
+            if (isReference(ins.opcode())) {
+                referenced.add((int) ins.operand(0));
+            }
+        }
+        return referenced.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private void writeIndirectEntry(ByteArrayOutputStream names, int id, NameMap map, int target, int printed) {
+        int i = map.find(target);
+        if (i < 0) {
+            return;
+        }
+        var sub = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(sub, 1);
+        WasmUtils.writeLEB128(sub, printed);
+        copyValue(sub, map, i);
+        writeSection(names, id, sub);
+    }
+
+    private void copyValue(ByteArrayOutputStream out, NameMap map, int i) {
+        WasmUtils.copyRange(out, wasm, map.starts()[i], map.ends()[i] - map.starts()[i]);
+    }
+
+    private void readNameSection(int pos, int end, NameMap[] names, ByteArrayOutputStream other) {
+        while (pos < end) {
+            int start = pos;
+            int id = wasm.get(pos++) & 0xFF;
+            int size = WasmUtils.readLEB128(wasm, pos);
+            pos += WasmUtils.leb128Size(wasm, pos);
+            switch (id) {
+                case FUNCTION_NAMES -> names[id] = readNameMap(pos, false);
+                case LOCAL_NAMES, LABEL_NAMES -> names[id] = readNameMap(pos, true);
+                case 0 -> { } // the module name is not part of any function
+                default -> WasmUtils.copyRange(other, wasm, start, pos + size - start);
+            }
+            pos += size;
+        }
+    }
+
+    /** Reads a name map; an indirect map's values are themselves name maps. */
+    private NameMap readNameMap(int pos, boolean indirect) {
+        int count = WasmUtils.readLEB128(wasm, pos);
+        pos += WasmUtils.leb128Size(wasm, pos);
+        var keys = new int[count];
+        var starts = new int[count];
+        var ends = new int[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = WasmUtils.readLEB128(wasm, pos);
+            pos += WasmUtils.leb128Size(wasm, pos);
+            starts[i] = pos;
+            if (indirect) {
+                int inner = WasmUtils.readLEB128(wasm, pos);
+                pos += WasmUtils.leb128Size(wasm, pos);
+                for (int j = 0; j < inner; j++) {
+                    pos += WasmUtils.leb128Size(wasm, pos);
+                    pos = skipName(wasm, pos);
+                }
+            } else {
+                pos = skipName(wasm, pos);
+            }
+            ends[i] = pos;
+        }
+        return new NameMap(keys, starts, ends);
+    }
+
+    private static String readName(ByteBuffer wasm, int pos) {
+        int len = WasmUtils.readLEB128(wasm, pos);
+        var bytes = new byte[len];
+        wasm.get(pos + WasmUtils.leb128Size(wasm, pos), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int skipName(ByteBuffer wasm, int pos) {
+        int len = WasmUtils.readLEB128(wasm, pos);
+        return pos + WasmUtils.leb128Size(wasm, pos) + len;
+    }
+
+    private static void writeSection(ByteArrayOutputStream out, int id, ByteArrayOutputStream payload) {
+        out.write(id);
+        WasmUtils.writeLEB128(out, payload.size());
+        out.writeBytes(payload.toByteArray());
+    }
+}
@@ -3,9 +3,14 @@ package io.roastedroot.w9s;
 import static dev.tamboui.toolkit.Toolkit.*;
 import dev.tamboui.style.Color;
 import dev.tamboui.style.Overflow;
+import dev.tamboui.style.Style;
+import dev.tamboui.text.Span;
 import dev.tamboui.toolkit.element.Element;
 import dev.tamboui.toolkit.event.EventResult;
 import dev.tamboui.tui.event.KeyEvent;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
 
 public final class FunctionView implements View {
 
@@ -13,6 +18,19 @@ public final class FunctionView implements View {
     private boolean showWatMode = true;
     private int scrollOffset = 0;
     private final ContentSearchState search = new ContentSearchState();
+    private final HexRenderer hexRenderer = new HexRenderer();
+    private ByteBuffer functionBody;
+    // Execution counts per WAT line from the last counted run, rebuilt when the run or WAT changes
+    private long[] heat;
+    private long heatMax;
+    private int[] hotLines;
+    private int hotRank = -1;
+    private String heatWat;
+    private int heatVersion = -1;
+    // Unhighlighted WAT under the heat gutter, parsed once per WAT while highlighting is pending or failed
+    private StyledText plainStyled;
+    private String plainWat;
+    private final StyledText.RenderedLines renderedLines = new StyledText.RenderedLines(ViewLayout.MAX_VISIBLE_LINES);
 
     FunctionView(int funcIdx) {
         this.selectedFunctionIdx = funcIdx;
@@ -32,25 +50,33 @@ public final class FunctionView implements View {
         if (key.isSelect() || key.isConfirm()) {
             showWatMode = !showWatMode; scrollOffset = 0; search.reset(); return EventResult.HANDLED;
         }
+        if (key.isChar('h') && showWatMode) { nextHotLine(ctx); return EventResult.HANDLED; }
         if (key.isChar('/')) { search.startSearch(); return EventResult.HANDLED; }
         if (key.isChar('n') && !search.query().isEmpty()) { search.searchNext(scrollTarget(ctx)); return EventResult.HANDLED; }
         if (key.isChar('N') && !search.query().isEmpty()) { search.searchPrev(scrollTarget(ctx)); return EventResult.HANDLED; }
         int newOffset = ScrollHandler.handleKey(key, scrollOffset);
-        if (newOffset >= 0) { scrollOffset = newOffset; return EventResult.HANDLED; }
+        if (newOffset >= 0) {
+            scrollOffset = showWatMode ? newOffset : HexRenderer.clampRow(newOffset, functionBody(ctx).limit());
+            return EventResult.HANDLED;
+        }
         return EventResult.UNHANDLED;
     }
 
     private ContentSearchState.ScrollTarget scrollTarget(ViewContext ctx) {
         return new ContentSearchState.ScrollTarget() {
+            @Override public Object contentKey() {
+                if (showWatMode) {
+                    return FunctionDataProvider.watOrNull(ctx.functionData().functionWat(selectedFunctionIdx));
+                }
+                return functionBody(ctx);
+            }
             @Override public String contentText() {
                 if (showWatMode) {
-                    if (!ctx.functionData().functionWatsFuture().isDone()) return "";
-                    var wats = ctx.functionData().functionWatsFuture().join();
-                    if (selectedFunctionIdx >= wats.size()) return "";
-                    return WasmUtils.formatWat(wats.get(selectedFunctionIdx));
+                    var wat = FunctionDataProvider.watOrNull(ctx.functionData().functionWat(selectedFunctionIdx));
+                    if (wat == null) return "";
+                    return WasmUtils.formatWat(wat);
                 } else {
-                    if (selectedFunctionIdx >= ctx.functionData().functionBodies().size()) return "";
-                    return WasmUtils.formatHex(ctx.functionData().functionBodies().get(selectedFunctionIdx));
+                    return WasmUtils.formatHex(functionBody(ctx));
                 }
             }
             @Override public int scrollOffset() { return scrollOffset; }
@@ -81,41 +107,115 @@ public final class FunctionView implements View {
                     text("PgUp/Dn").cyan().fit(), text(" page  ").dim().fit(),
                     text("/").cyan().fit(), text(" search  ").dim().fit(),
                     text("n/N").cyan().fit(), text(" next/prev  ").dim().fit(),
+                    text(heat != null ? "h" : "").cyan().fit(), text(heat != null ? " next hot line  " : "").dim().fit(),
                     text("Enter").cyan().fit(), text(" hex/WAT  ").dim().fit(),
                     text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
         }
 
-        var contentPanel = panel(() -> contentView).title(panelTitle).bottomTitle(functionSignature(ctx)).rounded().borderColor(modeBorder).fill(1);
+        var bottomTitle = functionSignature(ctx);
+        if (showWatMode) {
+            bottomTitle += "  \u2502 highlight cache: " + ctx.functionData().highlightedWatCache().stats().summary();
+        }
+        var contentPanel = panel(() -> contentView).title(panelTitle).bottomTitle(bottomTitle).rounded().borderColor(modeBorder).fill(1);
         return ViewLayout.layout(ctx, contentPanel, funcHelp);
     }
 
+    private ByteBuffer functionBody(ViewContext ctx) {
+        if (functionBody == null) {
+            functionBody = ctx.functionData().functionBody(selectedFunctionIdx);
+        }
+        return functionBody;
+    }
+
     private Element renderHexView(ViewContext ctx) {
-        if (selectedFunctionIdx >= ctx.functionData().functionBodies().size()) return text("No hex data available").dim();
-        var hex = WasmUtils.formatHex(ctx.functionData().functionBodies().get(selectedFunctionIdx));
-        return richText(WasmUtils.scrollContent(hex, scrollOffset)).overflow(Overflow.CLIP).fill();
+        var body = functionBody(ctx);
+        if (body.limit() == 0) return text("No hex data available").dim();
+        var hex = hexRenderer.render(body, scrollOffset, ViewLayout.MAX_VISIBLE_LINES);
+        if (!search.query().isEmpty()) {
+            return richText(AnsiTextParser.parseAnsiText(hex, search.query())).overflow(Overflow.CLIP).fill();
+        }
+        return richText(hex).overflow(Overflow.CLIP).fill();
     }
 
     private Element renderWatView(ViewContext ctx) {
-        if (!ctx.functionData().functionWatsFuture().isDone()) return text("Loading WAT...").dim();
-        var wats = ctx.functionData().functionWatsFuture().join();
-        if (selectedFunctionIdx >= wats.size()) return text("No WAT data available").dim();
-        var cached = ctx.functionData().highlightedWatCache().get(selectedFunctionIdx);
-        if (cached != null) {
-            var scrolled = WasmUtils.scrollAnsiContent(cached, scrollOffset);
-            return richText(AnsiTextParser.parseAnsiText(scrolled)).overflow(Overflow.CLIP).fill();
-        }
-        if (ctx.functionData().highlighterReady().isDone() && !ctx.functionData().highlighterReady().isCompletedExceptionally()) {
-            var rawWat = wats.get(selectedFunctionIdx);
-            var result = ctx.functionData().watHighlighter().highlight(rawWat);
-            if (result.success()) {
-                var numbered = WasmUtils.addLineNumbers(result.string());
-                ctx.functionData().highlightedWatCache().put(selectedFunctionIdx, numbered);
-                var scrolled = WasmUtils.scrollAnsiContent(numbered, scrollOffset);
-                return richText(AnsiTextParser.parseAnsiText(scrolled)).overflow(Overflow.CLIP).fill();
+        var watFuture = ctx.functionData().functionWat(selectedFunctionIdx);
+        if (!watFuture.isDone() || watFuture.isCancelled()) return text("Loading WAT...").dim();
+        var rawWat = FunctionDataProvider.watOrNull(watFuture);
+        if (rawWat == null) return text("No WAT data available").dim();
+        var highlighted = ctx.functionData().highlightedWat(selectedFunctionIdx, rawWat);
+        ctx.functionData().prehighlightAround(selectedFunctionIdx);
+        if (updateHeat(ctx, rawWat) != null) {
+            var styled = highlighted != null ? highlighted : plainStyled(rawWat);
+            var visible = styled.text(scrollOffset, ViewLayout.MAX_VISIBLE_LINES, search.query(), this::heatGutter);
+            return richText(visible).overflow(Overflow.CLIP).fill();
+        }
+        if (highlighted != null) {
+            return renderStyled(highlighted);
+        }
+        var wat = WasmUtils.scrollContent(WasmUtils.formatWat(rawWat), scrollOffset);
+        if (!search.query().isEmpty()) {
+            return richText(AnsiTextParser.parseAnsiText(wat, search.query())).overflow(Overflow.CLIP).fill();
+        }
+        return richText(wat).overflow(Overflow.CLIP).fill();
+    }
+
+    private Element renderStyled(StyledText styled) {
+        var visible = styled.text(scrollOffset, ViewLayout.MAX_VISIBLE_LINES, search.query(), renderedLines);
+        return richText(visible).overflow(Overflow.CLIP).fill();
+    }
+
+    private StyledText plainStyled(String rawWat) {
+        if (rawWat != plainWat) {
+            plainStyled = StyledText.parse(WasmUtils.formatWat(rawWat));
+            plainWat = rawWat;
+        }
+        return plainStyled;
+    }
+
+    /** Returns the per-line counts for this function's WAT, or null if there are none. */
+    private long[] updateHeat(ViewContext ctx, String rawWat) {
+        var counts = ctx.instanceManager().instructionCounts();
+        if (counts == null) {
+            heat = null;
+            return null;
+        }
+        if (rawWat == heatWat && counts.version() == heatVersion) {
+            return heat;
+        }
+        heatWat = rawWat;
+        heatVersion = counts.version();
+        hotRank = -1;
+        heat = InstructionCounts.perLine(counts.function(selectedFunctionIdx), rawWat);
+        heatMax = 0;
+        var hot = new ArrayList<Integer>();
+        if (heat != null) {
+            for (int i = 0; i < heat.length; i++) {
+                heatMax = Math.max(heatMax, heat[i]);
+                if (heat[i] > 0) hot.add(i);
             }
+            hot.sort(Comparator.comparingLong((Integer i) -> heat[i]).reversed());
+        }
+        hotLines = hot.stream().mapToInt(Integer::intValue).toArray();
+        return heat;
+    }
+
+    private void nextHotLine(ViewContext ctx) {
+        var rawWat = FunctionDataProvider.watOrNull(ctx.functionData().functionWat(selectedFunctionIdx));
+        if (rawWat == null || updateHeat(ctx, rawWat) == null || hotLines.length == 0) return;
+        hotRank = (hotRank + 1) % hotLines.length;
+        scrollOffset = hotLines[hotRank];
+    }
+
+    private Span heatGutter(int line) {
+        long count = heat != null && line < heat.length ? heat[line] : 0;
+        if (count == 0) {
+            return Span.styled("      ", Style.EMPTY);
         }
-        var wat = WasmUtils.formatWat(wats.get(selectedFunctionIdx));
-        return richText(WasmUtils.scrollContent(wat, scrollOffset)).overflow(Overflow.CLIP).fill();
+        double share = (double) count / heatMax;
+        var color = share >= 0.5 ? Color.RED : share >= 0.1 ? Color.YELLOW : Color.GREEN;
+        // The line reached with h is drawn inverted
+        var style = hotRank >= 0 && hotLines[hotRank] == line ? Style.EMPTY.bg(color).fg(Color.BLACK) : Style.EMPTY.fg(color);
+        return Span.styled(String.format("%5s ", InstructionCounts.format(count)), style);
     }
 
     private String functionSignature(ViewContext ctx) {
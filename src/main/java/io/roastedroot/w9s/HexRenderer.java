@@ -0,0 +1,88 @@
+package io.roastedroot.w9s;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Renders a window of a hex dump without formatting the whole buffer.
+ * Row {@code r} always starts at byte offset {@code r * BYTES_PER_ROW}, so
+ * jumping to any row costs the same regardless of the buffer size.
+ */
+final class HexRenderer {
+
+    static final int BYTES_PER_ROW = 16;
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final StringBuilder sb = new StringBuilder();
+    private ByteBuffer lastData;
+    private int lastFirstRow = -1;
+    private int lastMaxRows = -1;
+    private String lastRendered;
+
+    static int rowCount(int length) {
+        return (length + BYTES_PER_ROW - 1) / BYTES_PER_ROW;
+    }
+
+    static int rowOffset(int row) {
+        return row * BYTES_PER_ROW;
+    }
+
+    /** Clamps a scroll row to the last row of a buffer of the given length. */
+    static int clampRow(int row, int length) {
+        return Math.max(0, Math.min(row, rowCount(length) - 1));
+    }
+
+    /**
+     * Renders at most {@code maxRows} rows starting at {@code firstRow}, in the same
+     * layout as {@link WasmUtils#formatHex(byte[])}. Bytes are read with absolute
+     * indices in {@code [0, data.limit())}. Re-rendering the same window of the
+     * same buffer returns the previous result without touching the data.
+     */
+    String render(ByteBuffer data, int firstRow, int maxRows) {
+        int length = data.limit();
+        int row = clampRow(firstRow, length);
+        if (data == lastData && row == lastFirstRow && maxRows == lastMaxRows) {
+            return lastRendered;
+        }
+        sb.setLength(0);
+        int endRow = Math.min(rowCount(length), row + maxRows);
+        for (int r = row; r < endRow; r++) {
+            if (r > row) sb.append('\n');
+            appendRow(sb, data, rowOffset(r), length);
+        }
+        lastData = data;
+        lastFirstRow = row;
+        lastMaxRows = maxRows;
+        lastRendered = sb.toString();
+        return lastRendered;
+    }
+
+    static void appendRow(StringBuilder sb, ByteBuffer data, int offset, int length) {
+        appendHex(sb, offset, 8);
+        sb.append("  ");
+        int lineLen = Math.min(BYTES_PER_ROW, length - offset);
+        for (int j = 0; j < BYTES_PER_ROW; j++) {
+            if (j < lineLen) {
+                appendHex(sb, data.get(offset + j) & 0xFF, 2);
+                sb.append(' ');
+            } else {
+                sb.append("   ");
+            }
+            if (j == 7) {
+                sb.append(' ');
+            }
+        }
+        sb.append(" |");
+        for (int j = 0; j < lineLen; j++) {
+            int b = data.get(offset + j) & 0xFF;
+            sb.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+        }
+        sb.append('|');
+    }
+
+    private static void appendHex(StringBuilder sb, int value, int digits) {
+        for (int shift = (digits - 1) * 4; shift >= 0; shift -= 4) {
+            sb.append(HEX_DIGITS[(value >>> shift) & 0xF]);
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package io.roastedroot.w9s;
+
+import io.roastedroot.lumis4j.core.Formatter;
+import io.roastedroot.lumis4j.core.Highlighter;
+import io.roastedroot.lumis4j.core.Lang;
+import io.roastedroot.lumis4j.core.Lumis;
+import io.roastedroot.lumis4j.core.Theme;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Syntax-highlights WAT on background threads. Each worker owns its own Lumis
+ * highlighter. Jobs for the function on screen run before speculative ones, and
+ * jobs of the same priority run in submission order.
+ */
+final class HighlightPool implements AutoCloseable {
+
+    enum Priority {
+        FOREGROUND,
+        SPECULATIVE
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong sequence = new AtomicLong();
+    private final List<Lumis> instances = new ArrayList<>();
+    private final ThreadLocal<Highlighter> highlighter = ThreadLocal.withInitial(this::newHighlighter);
+
+    HighlightPool(int workers) {
+        var threadCount = new AtomicInteger();
+        this.executor =
+                new ThreadPoolExecutor(
+                        workers,
+                        workers,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new PriorityBlockingQueue<>(),
+                        r -> {
+                            var t = new Thread(r, "w9s-highlight-" + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        });
+        executor.prestartAllCoreThreads();
+        for (int i = 0; i < workers; i++) {
+            highlight("(module)", Priority.FOREGROUND);
+        }
+    }
+
+    /**
+     * Schedules highlighting of {@code wat}. The result carries line numbers, like the
+     * plain view. Cancelling the returned future skips the job if it has not started.
+     */
+    CompletableFuture<StyledText> highlight(String wat, Priority priority) {
+        return submit(priority, () -> {
+            var highlighted = highlighter.get().highlight(wat);
+            if (!highlighted.success()) {
+                throw new IllegalStateException("Highlighting failed");
+            }
+            return StyledText.parse(WasmUtils.addLineNumbers(highlighted.string()));
+        });
+    }
+
+    /** Runs {@code work} on a worker in priority, then submission, order. */
+    <T> CompletableFuture<T> submit(Priority priority, Supplier<T> work) {
+        var job = new Job<>(work, priority, sequence.getAndIncrement());
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            job.result.completeExceptionally(e);
+        }
+        return job.result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (instances) {
+            for (var lumis : instances) {
+                lumis.close();
+            }
+            instances.clear();
+        }
+    }
+
+    private Highlighter newHighlighter() {
+        var lumis = Lumis.builder().build();
+        synchronized (instances) {
+            instances.add(lumis);
+        }
+        return lumis.highlighter()
+                .withLang(Lang.WAT)
+                .withTheme(Theme.DRACULA)
+                .withFormatter(Formatter.TERMINAL)
+                .build();
+    }
+
+    private static final class Job<T> implements Runnable, Comparable<Job<?>> {
+        private final Supplier<T> work;
+        private final Priority priority;
+        private final long seq;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+
+        Job(Supplier<T> work, Priority priority, long seq) {
+            this.work = work;
+            this.priority = priority;
+            this.seq = seq;
+        }
+
+        @Override
+        public void run() {
+            if (result.isDone()) {
+                return;
+            }
+            try {
+                result.complete(work.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public int compareTo(Job<?> other) {
+            int c = priority.compareTo(other.priority);
+            return c != 0 ? c : Long.compare(seq, other.seq);
+        }
+    }
+}
@@ -1,32 +1,156 @@
 package io.roastedroot.w9s;
 
+import com.dylibso.chicory.compiler.MachineFactoryCompiler;
+import com.dylibso.chicory.runtime.HostFunction;
 import com.dylibso.chicory.runtime.ImportValues;
 import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Machine;
 import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.runtime.WasmFunctionHandle;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasi.WasiPreview1;
 import com.dylibso.chicory.wasm.WasmModule;
 import com.dylibso.chicory.wasm.types.ExternalType;
-import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Function;
 
 public final class InstanceManager {
 
     private final WasmModule module;
     private Instance wasmInstance;
     private WasiPreview1 wasi;
+    // The instance calls WASI through these, so a reset can swap in a fresh context
+    private WasmFunctionHandle[] wasiHandles;
     private String instanceError;
     private boolean instanceNeedsReset;
-    private ByteArrayOutputStream wasiStdoutCapture;
-    private ByteArrayOutputStream wasiStderrCapture;
+    private OutputCapture wasiStdoutCapture;
+    private OutputCapture wasiStderrCapture;
+    private WasiTracer wasiTracer;
+    private final W9sOptions options;
+    private ExecutionEngine engine;
+    // Compiled once and shared by every instance created after a reset
+    private Function<Instance, Machine> compiledMachineFactory;
+    private long compileMillis = -1;
+    private InstanceSnapshot snapshot;
+    private Boolean restorable;
+    private InstanceSnapshot.Restore lastRestore;
+    // Whether new instances report every instruction to the execution listener
+    private boolean listenable;
+    private boolean instanceListenable;
+    private volatile Profiler profiler;
+    private boolean countInstructions;
+    private InstructionCounts instructionCounts;
+    private volatile InstructionCounts counting;
+    private volatile MemoryDiff memoryDiff;
 
-    InstanceManager(WasmModule module) {
+    InstanceManager(WasmModule module, W9sOptions options) {
         this.module = module;
+        this.options = options;
+        this.engine = options.engine();
+    }
+
+    ExecutionEngine engine() {
+        return engine;
+    }
+
+    /** Switches engine; the current instance is discarded before the next run. */
+    void setEngine(ExecutionEngine engine) {
+        if (this.engine != engine) {
+            this.engine = engine;
+            snapshot = null;
+            requestReset();
+        }
+    }
+
+    /**
+     * Makes sure the next instance can be profiled or counted. Instances report
+     * to the execution listener only if built with it, so this may
+     * re-instantiate; afterwards the listener costs two null checks per
+     * instruction when idle.
+     */
+    void enableExecutionListener() {
+        listenable = true;
+        if (!instanceListenable) {
+            snapshot = null;
+            requestReset();
+        }
+    }
+
+    /**
+     * Builds later instances without the execution listener again, unless
+     * instruction counting still needs it, so plain runs and benchmarks measure
+     * the uninstrumented interpreter. A listening instance is reset before the
+     * next run.
+     */
+    void disableExecutionListener() {
+        if (countInstructions) {
+            return;
+        }
+        listenable = false;
+        if (instanceListenable) {
+            snapshot = null;
+            requestReset();
+        }
+    }
+
+    /** Sets the profiler receiving instructions from a profilable instance, or null to stop. */
+    void setProfiler(Profiler profiler) {
+        this.profiler = profiler;
+    }
+
+    boolean isListening() {
+        return instanceListenable && wasmInstance != null;
+    }
+
+    boolean countInstructions() {
+        return countInstructions;
+    }
+
+    /** Turns per-instruction counting of later runs on or off. */
+    void setCountInstructions(boolean on) {
+        countInstructions = on;
+        if (on) {
+            enableExecutionListener();
+        } else {
+            disableExecutionListener();
+        }
+    }
+
+    /** Starts counting for the run about to happen on the calling thread, if counting is on. */
+    void startCounting() {
+        if (!countInstructions || !isListening()) {
+            return;
+        }
+        if (instructionCounts == null) {
+            instructionCounts = new InstructionCounts(module);
+        }
+        instructionCounts.reset();
+        counting = instructionCounts;
+    }
+
+    void stopCounting() {
+        counting = null;
+    }
+
+    /** Counts of the last counted run, or null if no run has been counted. */
+    InstructionCounts instructionCounts() {
+        return instructionCounts;
+    }
+
+    /** Time spent compiling the module to bytecode, or -1 if it has not been compiled. */
+    long compileMillis() {
+        return compileMillis;
     }
 
     boolean ensureInstance() {
+        if (instanceNeedsReset && restoreSnapshot()) {
+            return true;
+        }
         if (instanceNeedsReset) {
+            snapshot = null;
+            lastRestore = null;
+            memoryDiff = null;
             if (wasi != null) {
                 wasi.close();
                 wasi = null;
@@ -56,22 +180,42 @@ public final class InstanceManager {
         try {
             var builder = ImportValues.builder();
             if (moduleNeedsWasi()) {
-                wasiStdoutCapture = new ByteArrayOutputStream();
-                wasiStderrCapture = new ByteArrayOutputStream();
-                var wasiOpts =
-                        WasiOptions.builder()
-                                .withStdout(wasiStdoutCapture)
-                                .withStderr(wasiStderrCapture)
-                                .build();
-                wasi = WasiPreview1.builder().withOptions(wasiOpts).build();
-                builder.addFunction(wasi.toHostFunctions());
+                // Captures outlive instances so a spill file is reused across resets
+                if (wasiStdoutCapture == null) {
+                    wasiStdoutCapture = new OutputCapture(options.outputLimitBytes(), options.spillOutput());
+                    wasiStderrCapture = new OutputCapture(options.outputLimitBytes(), options.spillOutput());
+                }
+                if (wasiTracer == null && options.wasiTraceCalls() > 0) {
+                    wasiTracer = new WasiTracer(options.wasiTraceCalls());
+                }
+                var hostFunctions = forwardingWasiFunctions(newWasi());
+                builder.addFunction(wasiTracer != null ? wasiTracer.wrap(hostFunctions) : hostFunctions);
             }
             var imports = builder.build();
-            wasmInstance =
+            var instanceBuilder =
                     Instance.builder(module)
                             .withImportValues(imports)
-                            .withStart(false)
-                            .build();
+                            .withStart(false);
+            if (engine == ExecutionEngine.COMPILER) {
+                instanceBuilder.withMachineFactory(compiledMachineFactory());
+            } else if (listenable) {
+                instanceBuilder.withUnsafeExecutionListener((instruction, stack) -> {
+                    var p = profiler;
+                    if (p != null) {
+                        p.onExecution(instruction, stack);
+                    }
+                    var c = counting;
+                    if (c != null) {
+                        c.onExecution(instruction, stack);
+                    }
+                });
+            }
+            wasmInstance = instanceBuilder.build();
+            instanceListenable = engine == ExecutionEngine.INTERPRETER && listenable;
+            if (restorable == null) {
+                restorable = InstanceSnapshot.isRestorable(module);
+            }
+            snapshot = restorable ? InstanceSnapshot.take(wasmInstance, module) : null;
             return true;
         } catch (Exception e) {
             instanceError = "Failed to instantiate module: " + e.getMessage();
@@ -79,6 +223,71 @@ public final class InstanceManager {
         }
     }
 
+    /** Resets by restoring the post-instantiation snapshot and starting a fresh WASI context. */
+    private boolean restoreSnapshot() {
+        if (snapshot == null || wasmInstance == null) {
+            return false;
+        }
+        var restored = snapshot.restore(wasmInstance);
+        if (restored == null) {
+            return false;
+        }
+        lastRestore = restored;
+        memoryDiff = null;
+        instanceNeedsReset = false;
+        if (wasi != null) {
+            wasi.close();
+            var functions = newWasi();
+            for (int i = 0; i < functions.length; i++) {
+                wasiHandles[i] = functions[i].handle();
+            }
+        }
+        return true;
+    }
+
+    /** Starts a WASI context writing to the (reset) captures and returns its host functions. */
+    private HostFunction[] newWasi() {
+        wasiStdoutCapture.reset();
+        wasiStderrCapture.reset();
+        var wasiOpts =
+                WasiOptions.builder()
+                        .withStdout(wasiStdoutCapture)
+                        .withStderr(wasiStderrCapture)
+                        .build();
+        wasi = WasiPreview1.builder().withOptions(wasiOpts).build();
+        return wasi.toHostFunctions();
+    }
+
+    private HostFunction[] forwardingWasiFunctions(HostFunction[] functions) {
+        wasiHandles = new WasmFunctionHandle[functions.length];
+        var forwarding = new HostFunction[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            var f = functions[i];
+            int slot = i;
+            wasiHandles[slot] = f.handle();
+            forwarding[i] = new HostFunction(f.module(), f.name(), f.type(),
+                    (instance, args) -> wasiHandles[slot].apply(instance, args));
+        }
+        return forwarding;
+    }
+
+    /** The last reset done from the snapshot, or null if the last reset re-instantiated. */
+    InstanceSnapshot.Restore lastRestore() {
+        return lastRestore;
+    }
+
+    private Function<Instance, Machine> compiledMachineFactory() {
+        if (compiledMachineFactory == null) {
+            if (System.getProperty("org.graalvm.nativeimage.imagecode") != null) {
+                throw new UnsupportedOperationException("the compiler engine is not available in native images");
+            }
+            long start = System.nanoTime();
+            compiledMachineFactory = MachineFactoryCompiler.compile(module);
+            compileMillis = (System.nanoTime() - start) / 1_000_000;
+        }
+        return compiledMachineFactory;
+    }
+
     Instance instance() {
         return wasmInstance;
     }
@@ -95,11 +304,25 @@ public final class InstanceManager {
         instanceNeedsReset = true;
     }
 
-    ByteArrayOutputStream stdoutCapture() {
+    /** What the last run changed in memory, or null once the instance has been reset. */
+    MemoryDiff memoryDiff() {
+        return memoryDiff;
+    }
+
+    void setMemoryDiff(MemoryDiff diff) {
+        this.memoryDiff = diff;
+    }
+
+    /** Tracer of the WASI calls, or null if the module does not use WASI or tracing is off. */
+    WasiTracer wasiTracer() {
+        return wasiTracer;
+    }
+
+    OutputCapture stdoutCapture() {
         return wasiStdoutCapture;
     }
 
-    ByteArrayOutputStream stderrCapture() {
+    OutputCapture stderrCapture() {
         return wasiStderrCapture;
     }
 
@@ -107,6 +330,10 @@ public final class InstanceManager {
         if (wasi != null) {
             wasi.close();
         }
+        if (wasiStdoutCapture != null) {
+            wasiStdoutCapture.close();
+            wasiStderrCapture.close();
+        }
     }
 
     private boolean moduleNeedsWasi() {
@@ -0,0 +1,150 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.Instance;
+import com.dylibso.chicory.runtime.Memory;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.OpCode;
+import com.dylibso.chicory.wasm.types.PassiveDataSegment;
+import com.dylibso.chicory.wasm.types.PassiveElement;
+import com.dylibso.chicory.wasm.types.ValType;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.EnumSet;
+
+/**
+ * Linear memory and globals of an instance as they were right after
+ * instantiation. Restoring compares the instance page by page and writes back
+ * only the pages that changed, which is much cheaper than instantiating again
+ * when a module has large data segments. All-zero pages are not stored.
+ * Tables and segments are not captured, so only modules that cannot change
+ * them are restorable; see {@link #isRestorable}.
+ */
+final class InstanceSnapshot {
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    // Instructions that change state a snapshot does not hold
+    private static final EnumSet<OpCode> UNRESTORABLE = EnumSet.of(
+            OpCode.TABLE_SET, OpCode.TABLE_GROW, OpCode.TABLE_FILL, OpCode.TABLE_COPY, OpCode.TABLE_INIT,
+            OpCode.DATA_DROP, OpCode.ELEM_DROP);
+
+    private final int pages;
+    private final byte[][] pageData;
+    private final int firstGlobal;
+    private final long[] globals;
+
+    private InstanceSnapshot(int pages, byte[][] pageData, int firstGlobal, long[] globals) {
+        this.pages = pages;
+        this.pageData = pageData;
+        this.firstGlobal = firstGlobal;
+        this.globals = globals;
+    }
+
+    /** Result of a restore: how many pages had to be written back. */
+    record Restore(int pagesWritten, int pagesTotal, long millis) {}
+
+    /**
+     * Whether restoring memory and globals is enough to make an instance of
+     * {@code module} equivalent to a fresh one: it has no passive segments and
+     * no instruction that writes a table or drops a segment.
+     */
+    static boolean isRestorable(WasmModule module) {
+        var ds = module.dataSection();
+        for (int i = 0; i < ds.dataSegmentCount(); i++) {
+            if (ds.getDataSegment(i) instanceof PassiveDataSegment) {
+                return false;
+            }
+        }
+        var es = module.elementSection();
+        for (int i = 0; i < es.elementCount(); i++) {
+            if (es.getElement(i) instanceof PassiveElement) {
+                return false;
+            }
+        }
+        var cs = module.codeSection();
+        for (int i = 0; i < cs.functionBodyCount(); i++) {
+            for (var ins : cs.getFunctionBody(i).instructions()) {
+                if (UNRESTORABLE.contains(ins.opcode())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Captures the state of a freshly built instance, or returns null when it
+     * cannot be restored faithfully (v128 globals are not readable as one value).
+     */
+    static InstanceSnapshot take(Instance instance, WasmModule module) {
+        var gs = module.globalSection();
+        int importedGlobals = module.importSection().count(ExternalType.GLOBAL);
+        var globals = new long[gs.globalCount()];
+        for (int i = 0; i < globals.length; i++) {
+            if (gs.getGlobal(i).valueType() == ValType.V128) {
+                return null;
+            }
+            globals[i] = instance.global(importedGlobals + i).getValue();
+        }
+
+        var memory = instance.memory();
+        int pages = memory != null ? memory.pages() : 0;
+        var pageData = new byte[pages][];
+        for (int p = 0; p < pages; p++) {
+            var page = memory.readBytes(p * Memory.PAGE_SIZE, Memory.PAGE_SIZE);
+            pageData[p] = isZero(page) ? null : page;
+        }
+        return new InstanceSnapshot(pages, pageData, importedGlobals, globals);
+    }
+
+    /**
+     * Puts the instance back into the captured state. Returns null, leaving the
+     * instance untouched, if its memory has grown since: memory cannot shrink,
+     * so it has to be instantiated again.
+     */
+    Restore restore(Instance instance) {
+        long start = System.nanoTime();
+        var memory = instance.memory();
+        if ((memory != null ? memory.pages() : 0) != pages) {
+            return null;
+        }
+        int written = 0;
+        for (int p = 0; p < pages; p++) {
+            if (matches(memory, p, pageData[p])) {
+                continue;
+            }
+            if (pageData[p] != null) {
+                memory.write(p * Memory.PAGE_SIZE, pageData[p]);
+            } else {
+                memory.fill((byte) 0, p * Memory.PAGE_SIZE, (p + 1) * Memory.PAGE_SIZE);
+            }
+            written++;
+        }
+        for (int i = 0; i < globals.length; i++) {
+            instance.global(firstGlobal + i).setValue(globals[i]);
+        }
+        return new Restore(written, pages, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /** Compares a page of memory with its captured content eight bytes at a time, without copying it. */
+    private static boolean matches(Memory memory, int page, byte[] expected) {
+        int base = page * Memory.PAGE_SIZE;
+        for (int i = 0; i < Memory.PAGE_SIZE; i += 8) {
+            long want = expected != null ? (long) LONGS.get(expected, i) : 0;
+            if (memory.readLong(base + i) != want) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isZero(byte[] page) {
+        for (int i = 0; i < page.length; i += 8) {
+            if ((long) LONGS.get(page, i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.ExecutionListener;
+import com.dylibso.chicory.runtime.MStack;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.Instruction;
+import java.util.Arrays;
+
+/**
+ * Execution count of every instruction of the module, kept in one flat array
+ * with an offset per function. The listener is not told which function runs,
+ * so each instruction's counter is found through its byte offset in the code
+ * section; the table is built once and reused across runs, and
+ * {@link #reset()} only clears the counters.
+ */
+final class InstructionCounts implements ExecutionListener {
+
+    // Chicory addresses are module offsets, increasing through the code section
+    private final int firstAddress;
+    // slotAt[address - firstAddress] is the counter of the instruction starting there
+    private final int[] slotAt;
+    // firstSlot[f] .. firstSlot[f + 1] are the counters of local function f
+    private final int[] firstSlot;
+    private final long[] counts;
+    private volatile int version;
+
+    InstructionCounts(WasmModule module) {
+        var cs = module.codeSection();
+        int functions = cs.functionBodyCount();
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        int slots = 0;
+        for (int f = 0; f < functions; f++) {
+            for (var instruction : cs.getFunctionBody(f).instructions()) {
+                first = Math.min(first, instruction.address());
+                last = Math.max(last, instruction.address());
+                slots++;
+            }
+        }
+        firstAddress = slots == 0 ? 0 : first;
+        slotAt = new int[slots == 0 ? 0 : last - first + 1];
+        firstSlot = new int[functions + 1];
+        int slot = 0;
+        for (int f = 0; f < functions; f++) {
+            firstSlot[f] = slot;
+            for (var instruction : cs.getFunctionBody(f).instructions()) {
+                slotAt[instruction.address() - firstAddress] = slot++;
+            }
+        }
+        firstSlot[functions] = slot;
+        counts = new long[slot];
+    }
+
+    @Override
+    public void onExecution(Instruction instruction, MStack stack) {
+        int at = instruction.address() - firstAddress;
+        if (at >= 0 && at < slotAt.length) {
+            counts[slotAt[at]]++;
+        }
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        version++;
+    }
+
+    /** Changes on every reset, so views can tell that their derived data is stale. */
+    int version() {
+        return version;
+    }
+
+    /** Counts of a local function's instructions, in body order. */
+    long[] function(int funcIdx) {
+        return Arrays.copyOfRange(counts, firstSlot[funcIdx], firstSlot[funcIdx + 1]);
+    }
+
+    long total() {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    /**
+     * Spreads a function's instruction counts over the lines of its WAT as
+     * printed by {@code wasm-tools print}: the header and {@code (local ...)}
+     * lines come first, then one line per instruction, and the closing
+     * parenthesis stands for the body's final {@code end}. Returns null when
+     * the text does not have that shape, rather than guessing.
+     */
+    static long[] perLine(long[] instructionCounts, String funcWat) {
+        var lines = funcWat.split("\n");
+        if (instructionCounts.length == 0 || lines.length < 2) {
+            return null;
+        }
+        int first = 1;
+        while (first < lines.length && lines[first].trim().startsWith("(local")) {
+            first++;
+        }
+        int last = lines.length - 1;
+        int instructionLines = ")".equals(lines[last].trim()) ? last - first : last - first + 1;
+        if (instructionLines != instructionCounts.length - 1) {
+            return null;
+        }
+        var result = new long[lines.length];
+        for (int i = 0; i < instructionLines; i++) {
+            result[first + i] = instructionCounts[i];
+        }
+        result[last] += instructionCounts[instructionCounts.length - 1];
+        return result;
+    }
+
+    /** Count in at most five characters, e.g. 1234, 5678k, 42M. */
+    static String format(long count) {
+        if (count < 10_000) {
+            return String.valueOf(count);
+        } else if (count < 10_000_000) {
+            return count / 1_000 + "k";
+        } else if (count < 10_000_000_000L) {
+            return count / 1_000_000 + "M";
+        }
+        return count / 1_000_000_000 + "G";
+    }
+}
@@ -0,0 +1,102 @@
+package io.roastedroot.w9s;
+
+import static dev.tamboui.toolkit.Toolkit.*;
+import dev.tamboui.style.Color;
+import dev.tamboui.toolkit.element.Element;
+import dev.tamboui.toolkit.event.EventResult;
+import dev.tamboui.tui.event.KeyEvent;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Shown while the module is parsed in the background. The section table comes
+ * from a header scan, so counts are visible right away; the detail panel shows
+ * parse progress and which sections the parser has read so far.
+ */
+public final class LoadingView implements View {
+
+    private static final int BAR_WIDTH = 30;
+
+    private final ByteBufferInputStream input;
+    private final int totalBytes;
+    private final int[] sectionEnds;
+    private final CompletableFuture<?> loading;
+    private final long startNanos = System.nanoTime();
+
+    LoadingView(ByteBufferInputStream input, int totalBytes, int[] sectionEnds, CompletableFuture<?> loading) {
+        this.input = input;
+        this.totalBytes = totalBytes;
+        this.sectionEnds = sectionEnds;
+        this.loading = loading;
+    }
+
+    @Override
+    public EventResult handleKey(KeyEvent key, ViewContext ctx) {
+        if (key.isQuit() || key.isCancel()) {
+            ctx.navigateTo(new ViewTransition.Quit());
+            return EventResult.HANDLED;
+        }
+        var ts = ctx.sectionTableState();
+        if (key.isUp()) { ts.selectPrevious(); return EventResult.HANDLED; }
+        if (key.isDown()) { ts.selectNext(ctx.sectionRows().size()); return EventResult.HANDLED; }
+        if (key.isHome()) { ts.selectFirst(); return EventResult.HANDLED; }
+        if (key.isEnd()) { ts.selectLast(ctx.sectionRows().size()); return EventResult.HANDLED; }
+        return EventResult.UNHANDLED;
+    }
+
+    @Override
+    public Element render(ViewContext ctx) {
+        var helpContent = row(
+                text(" q/ESC").cyan().fit(),
+                text(" quit  ").dim().fit(),
+                text("\u2191\u2193").cyan().fit(),
+                text(" navigate").dim().fit());
+
+        Element content;
+        if (loading.isCompletedExceptionally()) {
+            var error = loading.handle((r, e) -> e.getCause() != null ? e.getCause() : e).join();
+            content = text("Failed to load module: " + error.getMessage()).fg(Color.RED);
+        } else {
+            int read = Math.min(input.consumed(), totalBytes);
+            double fraction = totalBytes > 0 ? (double) read / totalBytes : 1.0;
+            double seconds = (System.nanoTime() - startNanos) / 1e9;
+            var status = read < totalBytes ? "Reading" : "Parsing";
+            var t = table().header("Section", "Count", "Status").widths(length(12), length(14), fill(1)).columnSpacing(1);
+            var rows = ctx.sectionRows();
+            for (int i = 0; i < rows.size(); i++) {
+                var end = sectionEnds[i];
+                String state;
+                if (end < 0) {
+                    state = "-";
+                } else if (read >= end) {
+                    state = "read, parsing";
+                } else {
+                    state = "loading";
+                }
+                t.row(rows.get(i)[0], rows.get(i)[1], state);
+            }
+            content = column(
+                    text(String.format(" %s %s %3d%%  %s / %s  %.1fs", status, progressBar(fraction),
+                            (int) (fraction * 100), formatBytes(read), formatBytes(totalBytes), seconds)).yellow().length(1),
+                    text("").length(1),
+                    t).fill();
+        }
+
+        var contentPanel = panel(() -> content)
+                .title("Loading " + ctx.filename())
+                .rounded()
+                .borderColor(Color.DARK_GRAY)
+                .fill(1);
+        return ViewLayout.layout(ctx, contentPanel, helpContent, Color.GREEN);
+    }
+
+    static String progressBar(double fraction) {
+        int filled = (int) Math.round(Math.max(0, Math.min(1, fraction)) * BAR_WIDTH);
+        return "[" + "\u2588".repeat(filled) + "\u2591".repeat(BAR_WIDTH - filled) + "]";
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024) return bytes + " B";
+        if (bytes < 1024 * 1024) return String.format("%.1f KiB", bytes / 1024.0);
+        return String.format("%.1f MiB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -1,43 +1,152 @@
 package io.roastedroot.w9s;
 
 import com.dylibso.chicory.tools.wasm.Wat2Wasm;
-import com.dylibso.chicory.wasm.Parser;
-import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.util.concurrent.Callable;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
 @Command(
         name = "w9s",
         mixinStandardHelpOptions = true,
-        version = "w9s 0.1.0",
-        description = "Terminal UI for inspecting WebAssembly modules")
+        version = "w9s " + Main.VERSION,
+        description = "Terminal UI for inspecting WebAssembly modules",
+        subcommands = BatchCommand.class)
 public final class Main implements Callable<Integer> {
 
+    static final String VERSION = "0.1.0";
+
     @Parameters(
             index = "0",
+            arity = "0..1",
             description = "The WebAssembly (.wasm) or WAT (.wat) file to inspect")
     private File wasmFile;
 
+    @Option(
+            names = "--lazy-wat",
+            description = "Disassemble functions on demand instead of the whole module at startup")
+    private boolean lazyWat;
+
+    @Option(
+            names = "--mmap",
+            description = "Memory-map the module file, which the views read in place; parsing still copies it onto the heap")
+    private boolean mmap;
+
+    @Option(
+            names = "--wat-workers",
+            defaultValue = "2",
+            description = "Number of wasm-tools workers used for disassembly (default: ${DEFAULT-VALUE})")
+    private int watWorkers;
+
+    @Option(
+            names = "--wat-queue",
+            defaultValue = "16",
+            description = "Maximum pending disassembly jobs before the oldest is dropped (default: ${DEFAULT-VALUE})")
+    private int watQueueDepth;
+
+    @Option(
+            names = "--highlight-cache-mb",
+            defaultValue = "64",
+            description = "Memory budget for syntax-highlighted WAT kept in memory, in MiB (default: ${DEFAULT-VALUE})")
+    private int highlightCacheMb;
+
+    @Option(
+            names = "--highlight-workers",
+            defaultValue = "2",
+            description = "Number of background syntax highlighters (default: ${DEFAULT-VALUE})")
+    private int highlightWorkers;
+
+    @Option(
+            names = "--cache-mb",
+            defaultValue = "512",
+            description = "Disk budget for cached names and WAT under ~/.cache/w9s, in MiB (default: ${DEFAULT-VALUE})")
+    private int diskCacheMb;
+
+    @Option(
+            names = "--no-cache",
+            description = "Neither read nor write the on-disk cache")
+    private boolean noCache;
+
+    @Option(
+            names = "--bench-warmup",
+            defaultValue = "100",
+            description = "Calls discarded before measuring when benchmarking an export (default: ${DEFAULT-VALUE})")
+    private int benchWarmup;
+
+    @Option(
+            names = "--bench-iterations",
+            defaultValue = "1000",
+            description = "Calls measured when benchmarking an export (default: ${DEFAULT-VALUE})")
+    private int benchIterations;
+
+    @Option(
+            names = "--engine",
+            defaultValue = "interpreter",
+            description = "Engine used to run exports: ${COMPLETION-CANDIDATES} (default: ${DEFAULT-VALUE})")
+    private ExecutionEngine engine;
+
+    @Option(
+            names = "--run-timeout",
+            defaultValue = "0",
+            description = "Seconds after which a running export is interrupted; 0 waits forever (default: ${DEFAULT-VALUE})")
+    private int runTimeoutSeconds;
+
+    @Option(
+            names = "--output-limit-mb",
+            defaultValue = "8",
+            description = "Memory kept per output stream of a run; the middle of longer output is dropped (default: ${DEFAULT-VALUE})")
+    private int outputLimitMb;
+
+    @Option(
+            names = "--spill-output",
+            description = "Also write the complete stdout/stderr of runs to temporary files")
+    private boolean spillOutput;
+
+    @Option(
+            names = "--wasi-trace",
+            defaultValue = "4096",
+            description = "WASI calls kept in the trace timeline of a run; 0 turns tracing off (default: ${DEFAULT-VALUE})")
+    private int wasiTraceCalls;
+
     @Override
     public Integer call() throws Exception {
-        byte[] wasmBytes;
+        if (wasmFile == null) {
+            CommandLine.usage(this, System.err);
+            return 2;
+        }
+        ByteBuffer wasm;
         if (wasmFile.getName().endsWith(".wat")) {
-            wasmBytes = Wat2Wasm.parse(wasmFile);
+            wasm = ByteBuffer.wrap(Wat2Wasm.parse(wasmFile));
+        } else if (mmap) {
+            wasm = WasmUtils.mapFile(wasmFile.toPath());
         } else {
-            wasmBytes = Files.readAllBytes(wasmFile.toPath());
+            wasm = ByteBuffer.wrap(Files.readAllBytes(wasmFile.toPath()));
         }
-        var module = Parser.parse(new ByteArrayInputStream(wasmBytes));
-        var app = new W9sApp(wasmFile.getName(), module, wasmBytes);
+        var options = new W9sOptions(
+                lazyWat,
+                Math.max(1, watWorkers),
+                watQueueDepth,
+                Math.max(0, highlightCacheMb) * 1024L * 1024L,
+                Math.max(1, highlightWorkers),
+                noCache ? 0 : Math.max(0, diskCacheMb) * 1024L * 1024L,
+                Math.max(0, benchWarmup),
+                Math.max(1, benchIterations),
+                engine,
+                Math.max(0, runTimeoutSeconds),
+                Math.max(1, outputLimitMb) * 1024L * 1024L,
+                spillOutput,
+                Math.max(0, wasiTraceCalls));
+        var app = new W9sApp(wasmFile.getName(), wasm, options);
         app.run();
         return 0;
     }
 
     public static void main(String[] args) {
-        int exitCode = new CommandLine(new Main()).execute(args);
+        int exitCode = new CommandLine(new Main()).setCaseInsensitiveEnumValuesAllowed(true).execute(args);
         System.exit(exitCode);
     }
 }
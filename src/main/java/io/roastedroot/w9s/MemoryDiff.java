@@ -0,0 +1,217 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.Memory;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * What a run changed in linear memory. Before and after the run every 4 KiB
+ * block is hashed, pages in parallel and eight bytes at a time, and blocks
+ * whose hash differs are merged into regions. Small memories also keep a copy
+ * taken before the run, so changed bytes are exact; for larger ones a region
+ * covers whole blocks.
+ */
+final class MemoryDiff {
+
+    static final int BLOCK_SIZE = 4096;
+    private static final int BLOCKS_PER_PAGE = Memory.PAGE_SIZE / BLOCK_SIZE;
+    // Memories up to this size are copied before a run for a byte-exact diff
+    static final long MAX_COPY_BYTES = 64L * 1024 * 1024;
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long P1 = 0x9E3779B185EBCA87L;
+    private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long ZERO_BLOCK_HASH = hash(new byte[BLOCK_SIZE], 0);
+
+    /** Changed memory in [start, end), with the number of bytes that actually differ. */
+    record Region(int start, int end, long changedBytes) {}
+
+    /** Block hashes of a memory, and its contents when it is small enough to copy. */
+    record Fingerprint(int pages, long[] blocks, byte[][] pageCopies) {}
+
+    private final List<Region> regions;
+    private final boolean exact;
+    private final int pagesBefore;
+    private final int pagesAfter;
+    private final long millis;
+    // Changed blocks; for an exact diff also a bit per changed byte of each of them
+    private final BitSet changedBlocks;
+    private final Map<Integer, BitSet> changedBytes;
+
+    private MemoryDiff(List<Region> regions, boolean exact, int pagesBefore, int pagesAfter, long millis,
+            BitSet changedBlocks, Map<Integer, BitSet> changedBytes) {
+        this.regions = regions;
+        this.exact = exact;
+        this.pagesBefore = pagesBefore;
+        this.pagesAfter = pagesAfter;
+        this.millis = millis;
+        this.changedBlocks = changedBlocks;
+        this.changedBytes = changedBytes;
+    }
+
+    static Fingerprint fingerprint(Memory memory) {
+        int pages = memory != null ? memory.pages() : 0;
+        var blocks = new long[pages * BLOCKS_PER_PAGE];
+        var copies = (long) pages * Memory.PAGE_SIZE <= MAX_COPY_BYTES ? new byte[pages][] : null;
+        IntStream.range(0, pages).parallel().forEach(p -> {
+            var page = memory.readBytes(p * Memory.PAGE_SIZE, Memory.PAGE_SIZE);
+            for (int b = 0; b < BLOCKS_PER_PAGE; b++) {
+                blocks[p * BLOCKS_PER_PAGE + b] = hash(page, b * BLOCK_SIZE);
+            }
+            if (copies != null) {
+                copies[p] = page;
+            }
+        });
+        return new Fingerprint(pages, blocks, copies);
+    }
+
+    /**
+     * Compares the fingerprint taken before a run with the memory now. Pages
+     * added by memory.grow are compared against zeros, their initial content.
+     */
+    static MemoryDiff compare(Fingerprint before, Memory memory) {
+        long start = System.nanoTime();
+        var after = fingerprint(memory);
+        var changedBlocks = new BitSet(after.blocks().length);
+        for (int i = 0; i < after.blocks().length; i++) {
+            long old = i < before.blocks().length ? before.blocks()[i] : ZERO_BLOCK_HASH;
+            if (old != after.blocks()[i]) {
+                changedBlocks.set(i);
+            }
+        }
+
+        boolean exact = before.pageCopies() != null;
+        var changedBytes = new HashMap<Integer, BitSet>();
+        var regions = new ArrayList<Region>();
+        int i = changedBlocks.nextSetBit(0);
+        while (i >= 0) {
+            int end = changedBlocks.nextClearBit(i);
+            long bytes = 0;
+            for (int block = i; block < end; block++) {
+                if (exact) {
+                    var mask = byteMask(before, block, memory);
+                    changedBytes.put(block, mask);
+                    bytes += mask.cardinality();
+                } else {
+                    bytes += BLOCK_SIZE;
+                }
+            }
+            regions.add(exact ? trim(i, end, bytes, changedBytes) : new Region(i * BLOCK_SIZE, end * BLOCK_SIZE, bytes));
+            i = changedBlocks.nextSetBit(end);
+        }
+        return new MemoryDiff(regions, exact, before.pages(), after.pages(),
+                (System.nanoTime() - start) / 1_000_000, changedBlocks, changedBytes);
+    }
+
+    List<Region> regions() {
+        return regions;
+    }
+
+    /** Whether changed bytes are known exactly, rather than as whole 4 KiB blocks. */
+    boolean exact() {
+        return exact;
+    }
+
+    int pagesBefore() {
+        return pagesBefore;
+    }
+
+    int pagesAfter() {
+        return pagesAfter;
+    }
+
+    /** Time spent hashing after the run and comparing. */
+    long millis() {
+        return millis;
+    }
+
+    long changedBytes() {
+        long total = 0;
+        for (var r : regions) {
+            total += r.changedBytes();
+        }
+        return total;
+    }
+
+    boolean isChanged(int address) {
+        int block = address / BLOCK_SIZE;
+        if (!changedBlocks.get(block)) {
+            return false;
+        }
+        var mask = changedBytes.get(block);
+        return mask == null || mask.get(address % BLOCK_SIZE);
+    }
+
+    /** The first region starting after {@code address}, wrapping around, or null if there is none. */
+    Region next(int address) {
+        for (var r : regions) {
+            if (r.start() > address) {
+                return r;
+            }
+        }
+        return regions.isEmpty() ? null : regions.get(0);
+    }
+
+    /** The last region starting before {@code address}, wrapping around, or null if there is none. */
+    Region previous(int address) {
+        for (int i = regions.size() - 1; i >= 0; i--) {
+            if (regions.get(i).start() < address) {
+                return regions.get(i);
+            }
+        }
+        return regions.isEmpty() ? null : regions.get(regions.size() - 1);
+    }
+
+    private static BitSet byteMask(Fingerprint before, int block, Memory memory) {
+        int page = block / BLOCKS_PER_PAGE;
+        int offset = (block % BLOCKS_PER_PAGE) * BLOCK_SIZE;
+        var now = memory.readBytes(block * BLOCK_SIZE, BLOCK_SIZE);
+        var old = page < before.pages() ? before.pageCopies()[page] : null;
+        var mask = new BitSet(BLOCK_SIZE);
+        for (int j = 0; j < BLOCK_SIZE; j++) {
+            if (now[j] != (old != null ? old[offset + j] : 0)) {
+                mask.set(j);
+            }
+        }
+        return mask;
+    }
+
+    /** Narrows an exact region from whole blocks to its first and last changed byte. */
+    private static Region trim(int firstBlock, int endBlock, long bytes, Map<Integer, BitSet> changedBytes) {
+        var first = changedBytes.get(firstBlock);
+        var last = changedBytes.get(endBlock - 1);
+        int start = firstBlock * BLOCK_SIZE + Math.max(0, first.nextSetBit(0));
+        int end = (endBlock - 1) * BLOCK_SIZE + last.length();
+        return new Region(start, Math.max(start + 1, end), bytes);
+    }
+
+    /** 64-bit hash of one block, four independent lanes of eight-byte words. */
+    static long hash(byte[] data, int offset) {
+        long h0 = P1;
+        long h1 = P2;
+        long h2 = 0;
+        long h3 = -P1;
+        for (int i = offset; i < offset + BLOCK_SIZE; i += 32) {
+            h0 = round(h0, (long) LONGS.get(data, i));
+            h1 = round(h1, (long) LONGS.get(data, i + 8));
+            h2 = round(h2, (long) LONGS.get(data, i + 16));
+            h3 = round(h3, (long) LONGS.get(data, i + 24));
+        }
+        long h = Long.rotateLeft(h0, 1) + Long.rotateLeft(h1, 7) + Long.rotateLeft(h2, 12) + Long.rotateLeft(h3, 18);
+        h ^= h >>> 33;
+        h *= P2;
+        h ^= h >>> 29;
+        return h;
+    }
+
+    private static long round(long acc, long input) {
+        return Long.rotateLeft(acc + input * P2, 31) * P1;
+    }
+}
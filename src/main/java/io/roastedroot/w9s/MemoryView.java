@@ -33,6 +33,9 @@ public final class MemoryView implements View {
     private int memWriteTypedTypeIdx = 0;
     private String memWriteTypedValue = "";
     private String memStatusMessage;
+    // Diff already jumped to, so a new run's changes are shown on first display
+    private MemoryDiff shownDiff;
+    private final PatternSearchState patternSearch = new PatternSearchState();
 
     @Override
     public EventResult handleKey(KeyEvent key, ViewContext ctx) {
@@ -40,6 +43,15 @@ public final class MemoryView implements View {
         Memory mem = ctx.instanceManager().memory();
         int maxAddr = mem.pages() * 65536;
 
+        // Sub-mode: pattern search
+        if (patternSearch.isActive()) {
+            var result = patternSearch.handleKey(key, pattern -> PatternSearch.search(pattern, mem));
+            if (!patternSearch.isActive() && patternSearch.hasMatches()) {
+                memViewAddress = (patternSearch.next(memViewAddress - 1) / 8) * 8;
+                memStatusMessage = null;
+            }
+            return result;
+        }
         // Sub-mode: goto
         if (inMemGoto) {
             if (key.isCancel()) { inMemGoto = false; memGotoInput = ""; return EventResult.HANDLED; }
@@ -116,6 +128,7 @@ public final class MemoryView implements View {
             return EventResult.HANDLED;
         }
         // Main memory view keys
+        if (key.isCancel() && patternSearch.hasMatches()) { patternSearch.clear(); return EventResult.HANDLED; }
         if (key.isCancel() || key.isLeft()) { ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
         if (key.isUp()) { memViewAddress = Math.max(0, memViewAddress - 8); return EventResult.HANDLED; }
         if (key.isDown()) { if (memViewAddress + 8 < maxAddr) memViewAddress += 8; return EventResult.HANDLED; }
@@ -123,6 +136,25 @@ public final class MemoryView implements View {
         if (key.isPageDown()) { memViewAddress = Math.min(maxAddr - 8, memViewAddress + ViewLayout.PAGE_SIZE * 8); if (memViewAddress < 0) memViewAddress = 0; return EventResult.HANDLED; }
         if (key.isHome()) { memViewAddress = 0; return EventResult.HANDLED; }
         if (key.isEnd()) { memViewAddress = Math.max(0, maxAddr - ViewLayout.PAGE_SIZE * 8); return EventResult.HANDLED; }
+        if (key.isChar('f')) { patternSearch.start(); return EventResult.HANDLED; }
+        if ((key.isChar('n') || key.isChar('N')) && patternSearch.hasMatches()) {
+            int from = patternSearch.currentMatch() >= 0 ? patternSearch.currentMatch() : memViewAddress;
+            int match = key.isChar('n') ? patternSearch.next(from) : patternSearch.previous(from);
+            memViewAddress = (match / 8) * 8;
+            memStatusMessage = null;
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('n') || key.isChar('N')) {
+            var diff = ctx.instanceManager().memoryDiff();
+            var region = diff == null ? null : key.isChar('n') ? diff.next(memViewAddress + 7) : diff.previous(memViewAddress);
+            if (region != null) {
+                memViewAddress = (region.start() / 8) * 8;
+                memStatusMessage = String.format("Changed %08x\u2013%08x: %d bytes (region %d of %d)",
+                        region.start(), region.end() - 1, region.changedBytes(),
+                        diff.regions().indexOf(region) + 1, diff.regions().size());
+            }
+            return EventResult.HANDLED;
+        }
         if (key.isChar('g')) { inMemGoto = true; memGotoInput = ""; return EventResult.HANDLED; }
         if (key.isChar('w')) { inMemWriteString = true; memWriteAddrPhase = true; memWriteAddr = ""; memWriteStringInput = ""; memWriteNullTerm = false; return EventResult.HANDLED; }
         if (key.isChar('e')) { inMemWriteTyped = true; memWriteTypedPhase = 0; memWriteTypedAddr = ""; memWriteTypedTypeIdx = 0; memWriteTypedValue = ""; return EventResult.HANDLED; }
@@ -134,9 +166,20 @@ public final class MemoryView implements View {
         Memory mem = ctx.instanceManager().memory();
         int totalBytes = mem.pages() * 65536;
         int bytesPerLine = 8;
+        var diff = ctx.instanceManager().memoryDiff();
+        if (diff != null && diff != shownDiff) {
+            shownDiff = diff;
+            if (!diff.regions().isEmpty()) {
+                var first = diff.regions().get(0);
+                memViewAddress = (first.start() / 8) * 8;
+                memStatusMessage = diff.regions().size() + " changed regions, " + diff.changedBytes()
+                        + " bytes (n/N to step through)";
+            }
+        }
 
         String promptText = null;
-        if (inMemGoto) promptText = String.format("Go to address: %s_", memGotoInput);
+        if (patternSearch.isActive()) promptText = String.format("Find (text, x:hex with ?? wildcards, i32:/i64:/f32:/f64: value): %s_", patternSearch.input());
+        else if (inMemGoto) promptText = String.format("Go to address: %s_", memGotoInput);
         else if (inMemWriteString) {
             if (memWriteAddrPhase) promptText = String.format("Write string at address: %s_", memWriteAddr);
             else promptText = String.format("Write string at %s [%s] (Ctrl+T to toggle): %s_", memWriteAddr, memWriteNullTerm ? "null-terminated" : "raw", memWriteStringInput);
@@ -146,41 +189,57 @@ public final class MemoryView implements View {
             else promptText = String.format("Write %s at %s: %s_", TYPED_VALUE_TYPES[memWriteTypedTypeIdx], memWriteTypedAddr, memWriteTypedValue);
         }
         if (memStatusMessage != null) promptText = (promptText != null ? promptText + "\n" : "") + memStatusMessage;
+        var searchStatus = patternSearch.isActive() ? null : patternSearch.status();
+        if (searchStatus != null) promptText = (promptText != null ? promptText + "\n" : "") + searchStatus;
 
         int visibleLines = ViewLayout.PAGE_SIZE + 5;
         int windowSize = Math.min(visibleLines * bytesPerLine, totalBytes - memViewAddress);
         if (windowSize <= 0) windowSize = 0;
 
-        var sb = new StringBuilder();
-        sb.append(String.format("Address   00 01 02 03 04 05 06 07  ASCII%n"));
+        // Bytes the last run changed are highlighted, in both the hex and ASCII columns
+        var changedStyle = Style.EMPTY.fg(Color.YELLOW).bold();
+        var matchStyle = Style.EMPTY.bg(Color.CYAN).fg(Color.BLACK);
+        int matchStart = patternSearch.currentMatch();
+        int matchEnd = matchStart + patternSearch.patternLength();
+        var memLines = new ArrayList<Line>();
+        memLines.add(Line.from(List.of(Span.styled("Address   00 01 02 03 04 05 06 07  ASCII", Style.EMPTY))));
         if (windowSize > 0) {
             byte[] data = mem.readBytes(memViewAddress, windowSize);
             for (int i = 0; i < data.length; i += bytesPerLine) {
                 int addr = memViewAddress + i;
-                sb.append(String.format("%08x  ", addr));
+                var spans = new ArrayList<Span>();
+                spans.add(Span.styled(String.format("%08x  ", addr), Style.EMPTY));
                 int lineLen = Math.min(bytesPerLine, data.length - i);
+                var ascii = new ArrayList<Span>();
                 for (int j = 0; j < bytesPerLine; j++) {
-                    if (j < lineLen) sb.append(String.format("%02X ", data[i + j] & 0xFF));
-                    else sb.append("   ");
+                    if (j >= lineLen) { spans.add(Span.styled("   ", Style.EMPTY)); continue; }
+                    int b = data[i + j] & 0xFF;
+                    var style = matchStart >= 0 && addr + j >= matchStart && addr + j < matchEnd ? matchStyle
+                            : diff != null && diff.isChanged(addr + j) ? changedStyle : Style.EMPTY;
+                    spans.add(Span.styled(String.format("%02X ", b), style));
+                    ascii.add(Span.styled(String.valueOf(b >= 0x20 && b < 0x7f ? (char) b : '.'), style));
                 }
-                sb.append(' ');
-                for (int j = 0; j < lineLen; j++) { int b = data[i + j] & 0xFF; sb.append(b >= 0x20 && b < 0x7f ? (char) b : '.'); }
-                sb.append('\n');
+                spans.add(Span.styled(" ", Style.EMPTY));
+                spans.addAll(ascii);
+                memLines.add(Line.from(spans));
             }
         }
+        memLines.add(Line.empty());
         var memTitle = String.format("Memory (%d pages, %d bytes)", mem.pages(), totalBytes);
 
         Element helpContent;
-        if (inMemGoto || inMemWriteString || inMemWriteTyped) {
+        if (inMemGoto || inMemWriteString || inMemWriteTyped || patternSearch.isActive()) {
             helpContent = row(text(" Enter").cyan().fit(), text(" confirm  ").dim().fit(), text("ESC").cyan().fit(), text(" cancel").dim().fit());
         } else {
+            var matches = patternSearch.hasMatches();
+            var changes = matches || diff != null && !diff.regions().isEmpty();
             helpContent = row(text(" g").cyan().fit(), text(" goto  ").dim().fit(), text("w").cyan().fit(), text(" write-string  ").dim().fit(),
                     text("e").cyan().fit(), text(" write-value  ").dim().fit(), text("\u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
+                    text("f").cyan().fit(), text(" find  ").dim().fit(),
+                    text(changes ? "n/N" : "").cyan().fit(), text(matches ? " next/prev match  " : changes ? " next/prev change  " : "").dim().fit(),
                     text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
         }
 
-        var memLines = new ArrayList<Line>();
-        for (var line : sb.toString().split("\n", -1)) memLines.add(Line.from(List.of(Span.styled(line, Style.EMPTY))));
         var memText = Text.from(memLines);
         Element panelContent;
         if (promptText != null) {
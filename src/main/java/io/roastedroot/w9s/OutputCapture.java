@@ -0,0 +1,227 @@
+package io.roastedroot.w9s;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Bounded capture of a WASI output stream. The first half of the budget keeps
+ * the head of the stream and the second half is a ring buffer holding its
+ * tail; anything in between is counted as dropped. Both buffers grow as output
+ * arrives, up to their share of the budget. Optionally the whole stream is also
+ * written to a temporary file, deleted on {@link #close} or
+ * {@link #deleteSpillFile}. Writes may come from the thread running the export
+ * while the UI takes snapshots.
+ */
+final class OutputCapture extends OutputStream {
+
+    /** Copy of the captured bytes; {@code version} changes on every write or reset. */
+    record Snapshot(byte[] head, byte[] tail, long dropped, long total, long version) {}
+
+    /**
+     * Output written since an earlier delta: the bytes appended to the head, the
+     * tail bytes past {@code tailFrom}, and the ring position where the retained
+     * tail now starts. A delta asked for with an outdated {@code resets} count
+     * starts over from the beginning.
+     */
+    record Delta(
+            long resets,
+            int headLength,
+            byte[] head,
+            long tailStart,
+            long tailWritten,
+            byte[] tail,
+            long dropped,
+            long version) {}
+
+    private final int headCapacity;
+    private final int tailCapacity;
+    private final boolean spill;
+    private byte[] head = new byte[0];
+    private byte[] tail = new byte[0];
+    private int headLength;
+    private long tailWritten;
+    private long total;
+    private long version;
+    private long resets;
+    private Path spillFile;
+    private FileChannel spillChannel;
+    private boolean spillDisabled;
+
+    OutputCapture(long budgetBytes, boolean spill) {
+        int budget = (int) Math.max(2, Math.min(Integer.MAX_VALUE - 8, budgetBytes));
+        this.headCapacity = budget / 2;
+        this.tailCapacity = budget - headCapacity;
+        this.spill = spill;
+    }
+
+    @Override
+    public void write(int b) {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public synchronized void write(byte[] b, int off, int len) {
+        total += len;
+        version++;
+        writeSpill(b, off, len);
+        int toHead = Math.min(len, headCapacity - headLength);
+        head = grow(head, headLength + toHead, headCapacity);
+        System.arraycopy(b, off, head, headLength, toHead);
+        headLength += toHead;
+        off += toHead;
+        len -= toHead;
+        if (len == 0) {
+            return;
+        }
+        // Only the last tailCapacity bytes can survive in the ring
+        if (len > tailCapacity) {
+            tailWritten += len - tailCapacity;
+            off += len - tailCapacity;
+            len = tailCapacity;
+        }
+        // The ring is filled in order until it first wraps, so it only grows before that
+        tail = grow(tail, (int) Math.min(tailWritten + len, tailCapacity), tailCapacity);
+        int pos = (int) (tailWritten % tailCapacity);
+        int first = Math.min(len, tailCapacity - pos);
+        System.arraycopy(b, off, tail, pos, first);
+        System.arraycopy(b, off + first, tail, 0, len - first);
+        tailWritten += len;
+    }
+
+    /** Forgets the captured output; the spill file, if any, is truncated. */
+    synchronized void reset() {
+        headLength = 0;
+        tailWritten = 0;
+        total = 0;
+        version++;
+        resets++;
+        if (spillChannel != null) {
+            try {
+                spillChannel.truncate(0);
+            } catch (IOException e) {
+                spillDisabled = true;
+                closeSpill();
+            }
+        }
+    }
+
+    /** Total number of bytes written since the last reset, including dropped ones. */
+    synchronized long size() {
+        return total;
+    }
+
+    synchronized long version() {
+        return version;
+    }
+
+    /** Temporary file holding the complete stream, or null if spilling is off or failed. */
+    synchronized Path spillFile() {
+        return spillChannel != null ? spillFile : null;
+    }
+
+    synchronized Snapshot snapshot() {
+        var tailCopy = readTail(tailStart(), tailWritten);
+        return new Snapshot(
+                Arrays.copyOf(head, headLength), tailCopy, total - headLength - tailCopy.length, total, version);
+    }
+
+    /**
+     * Output written after the head held {@code headFrom} bytes and the ring
+     * {@code tailFrom}, both taken from a delta of the same {@code resets} count.
+     */
+    synchronized Delta since(long resets, int headFrom, long tailFrom) {
+        if (resets != this.resets) {
+            headFrom = 0;
+            tailFrom = 0;
+        }
+        long tailStart = tailStart();
+        var tailBytes = readTail(Math.max(tailFrom, tailStart), tailWritten);
+        return new Delta(
+                this.resets,
+                headLength,
+                Arrays.copyOfRange(head, headFrom, headLength),
+                tailStart,
+                tailWritten,
+                tailBytes,
+                total - headLength - (tailWritten - tailStart),
+                version);
+    }
+
+    /** Closes and deletes the spill file; later writes start a new one. */
+    synchronized void deleteSpillFile() {
+        closeSpill();
+        if (spillFile != null) {
+            try {
+                Files.deleteIfExists(spillFile);
+            } catch (IOException e) {
+                // left for deleteOnExit
+            }
+            spillFile = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        spillDisabled = true;
+        deleteSpillFile();
+    }
+
+    private long tailStart() {
+        return Math.max(0, tailWritten - tailCapacity);
+    }
+
+    /** Copies ring positions [from, to), which must still be held. */
+    private byte[] readTail(long from, long to) {
+        var out = new byte[(int) (to - from)];
+        int start = (int) (from % tailCapacity);
+        int first = Math.min(out.length, tailCapacity - start);
+        System.arraycopy(tail, start, out, 0, first);
+        System.arraycopy(tail, 0, out, first, out.length - first);
+        return out;
+    }
+
+    private static byte[] grow(byte[] buffer, int needed, int capacity) {
+        if (needed <= buffer.length) {
+            return buffer;
+        }
+        return Arrays.copyOf(buffer, (int) Math.min(capacity, Math.max(needed, buffer.length * 2L)));
+    }
+
+    private void writeSpill(byte[] b, int off, int len) {
+        if (!spill || spillDisabled) {
+            return;
+        }
+        try {
+            if (spillChannel == null) {
+                spillFile = Files.createTempFile("w9s-output-", ".log");
+                spillFile.toFile().deleteOnExit();
+                spillChannel = FileChannel.open(spillFile, StandardOpenOption.WRITE);
+            }
+            var buffer = ByteBuffer.wrap(b, off, len);
+            while (buffer.hasRemaining()) {
+                spillChannel.write(buffer);
+            }
+        } catch (IOException e) {
+            // Keep capturing in memory; the file is reported as unavailable
+            spillDisabled = true;
+            closeSpill();
+        }
+    }
+
+    private void closeSpill() {
+        if (spillChannel != null) {
+            try {
+                spillChannel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            spillChannel = null;
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package io.roastedroot.w9s;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Captured output indexed by line, so a view can fetch just the lines it shows.
+ * When the capture dropped bytes, a marker line sits between head and tail.
+ * A live index follows a capture with {@link #update}, which reads and indexes
+ * only the bytes written since the previous update.
+ */
+final class OutputText {
+
+    static final OutputText EMPTY = new OutputText();
+
+    private final Segment head = new Segment();
+    private final Segment tail = new Segment();
+    private OutputCapture source;
+    private long resets;
+    private long tailStart;
+    private long tailWritten;
+    private long dropped;
+    private long version = -1;
+
+    OutputText() {}
+
+    static OutputText of(OutputCapture.Snapshot snapshot) {
+        var text = new OutputText();
+        text.head.append(snapshot.head());
+        text.tail.append(snapshot.tail());
+        text.dropped = snapshot.dropped();
+        text.version = snapshot.version();
+        return text;
+    }
+
+    /** Catches up with {@code capture}; must not be called on {@link #EMPTY} or a snapshot. */
+    void update(OutputCapture capture) {
+        if (capture == source && capture.version() == version) {
+            return;
+        }
+        if (capture != source) {
+            source = capture;
+            resets = -1;
+        }
+        var delta = capture.since(resets, head.length(), tailWritten);
+        if (delta.resets() != resets) {
+            resets = delta.resets();
+            head.clear();
+            tail.clear();
+            tailStart = 0;
+        }
+        head.append(delta.head());
+        if (delta.tailStart() > tailStart) {
+            tail.dropFront((int) Math.min(delta.tailStart() - tailStart, tail.length()));
+            tailStart = delta.tailStart();
+        }
+        tail.append(delta.tail());
+        tailWritten = delta.tailWritten();
+        dropped = delta.dropped();
+        version = delta.version();
+    }
+
+    boolean isEmpty() {
+        return head.isEmpty() && tail.isEmpty();
+    }
+
+    /** Number of lines; empty output has none, and a trailing newline ends in an empty line. */
+    int lineCount() {
+        return headLines() + (dropped > 0 ? 1 : 0) + tail.lineCount() - (joined() ? 1 : 0);
+    }
+
+    String line(int index) {
+        int headLines = headLines();
+        if (index < headLines) {
+            var line = head.line(index);
+            return joined() && index == headLines - 1 ? line + tail.line(0) : line;
+        }
+        if (dropped > 0 && index == headLines) {
+            return "\u2026 " + dropped + " bytes dropped \u2026";
+        }
+        return tail.line(index - headLines - (dropped > 0 ? 1 : 0) + (joined() ? 1 : 0));
+    }
+
+    /** Index of the dropped-bytes marker line, or -1. */
+    int markerLine() {
+        return dropped > 0 ? headLines() : -1;
+    }
+
+    long dropped() {
+        return dropped;
+    }
+
+    // The empty line after a final newline of the head belongs to what follows it
+    private int headLines() {
+        boolean followed = dropped > 0 || !tail.isEmpty();
+        return head.lineCount() - (followed && head.endsWithNewline() ? 1 : 0);
+    }
+
+    // With nothing dropped the tail continues the last line of the head
+    private boolean joined() {
+        return dropped == 0 && !head.isEmpty() && !head.endsWithNewline() && !tail.isEmpty();
+    }
+
+    /**
+     * Bytes with the offsets of their line starts; appended at the end and,
+     * for the tail, dropped from the front. Storage is compacted once the
+     * dropped prefix reaches half of it, so both stay amortized linear.
+     */
+    private static final class Segment {
+        private byte[] bytes = new byte[0];
+        private int start;
+        private int end;
+        private int[] lines = new int[0];
+        private int firstLine;
+        private int lineEnd;
+
+        int length() {
+            return end - start;
+        }
+
+        boolean isEmpty() {
+            return start == end;
+        }
+
+        boolean endsWithNewline() {
+            return end > start && bytes[end - 1] == '\n';
+        }
+
+        int lineCount() {
+            return lineEnd - firstLine;
+        }
+
+        String line(int index) {
+            int from = lines[firstLine + index];
+            int to = firstLine + index + 1 < lineEnd ? lines[firstLine + index + 1] - 1 : end;
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        void append(byte[] more) {
+            if (more.length == 0) {
+                return;
+            }
+            reserve(more.length);
+            if (isEmpty()) {
+                addLine(end);
+            }
+            for (byte b : more) {
+                bytes[end++] = b;
+                if (b == '\n') {
+                    addLine(end);
+                }
+            }
+        }
+
+        void dropFront(int n) {
+            if (n <= 0) {
+                return;
+            }
+            if (n >= length()) {
+                clear();
+                return;
+            }
+            start += n;
+            while (firstLine < lineEnd && lines[firstLine] < start) {
+                firstLine++;
+            }
+            // The first line started before the cut, so its slot is free for the partial line
+            if (firstLine == lineEnd || lines[firstLine] != start) {
+                lines[--firstLine] = start;
+            }
+        }
+
+        void clear() {
+            start = 0;
+            end = 0;
+            firstLine = 0;
+            lineEnd = 0;
+        }
+
+        private void reserve(int n) {
+            if (end + n <= bytes.length) {
+                return;
+            }
+            if (start > 0 && start >= bytes.length / 2) {
+                System.arraycopy(bytes, start, bytes, 0, length());
+                for (int i = firstLine; i < lineEnd; i++) {
+                    lines[i - firstLine] = lines[i] - start;
+                }
+                lineEnd -= firstLine;
+                firstLine = 0;
+                end -= start;
+                start = 0;
+            }
+            if (end + n > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(end + n, bytes.length * 2));
+            }
+        }
+
+        private void addLine(int offset) {
+            if (lineEnd == lines.length) {
+                if (firstLine > 0 && firstLine >= lines.length / 2) {
+                    System.arraycopy(lines, firstLine, lines, 0, lineCount());
+                    lineEnd -= firstLine;
+                    firstLine = 0;
+                } else {
+                    lines = Arrays.copyOf(lines, Math.max(16, lines.length * 2));
+                }
+            }
+            lines[lineEnd++] = offset;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.Memory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.stream.IntStream;
+
+/**
+ * Byte pattern search over linear memory or a data segment. The input is
+ * split into 1 MiB chunks searched in parallel with Boyer-Moore-Horspool;
+ * neighbouring chunks overlap by the pattern length so matches across a
+ * boundary are found once.
+ */
+final class PatternSearch {
+
+    static final int MAX_MATCHES = 10_000;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    private PatternSearch() {}
+
+    /** Bytes to find; positions with {@code wildcard} set match any byte. */
+    record Pattern(byte[] bytes, boolean[] wildcard, String query) {
+        int length() {
+            return bytes.length;
+        }
+    }
+
+    /** Match offsets in ascending order; {@code truncated} once {@link #MAX_MATCHES} have been found. */
+    record Result(Pattern pattern, int[] matches, boolean truncated, long millis) {}
+
+    /** Bytes of one chunk: {@code length} bytes of {@code data} from {@code offset} stand for the input at {@code base}. */
+    private record Chunk(byte[] data, int offset, int length, int base) {}
+
+    @FunctionalInterface
+    private interface ChunkReader {
+        Chunk read(int base, int length);
+    }
+
+    /**
+     * Parses a search query. {@code x:} starts hex bytes, with {@code ??}
+     * for any byte, e.g. {@code x:7f 45 ?? 46}; {@code i32:}, {@code i64:},
+     * {@code f32:} and {@code f64:} start a little-endian typed value; anything
+     * else is searched as UTF-8 text.
+     */
+    static Pattern parse(String query) {
+        if (query.isEmpty()) {
+            throw new IllegalArgumentException("Empty pattern");
+        }
+        int colon = query.indexOf(':');
+        var prefix = colon > 0 ? query.substring(0, colon).toLowerCase(Locale.ROOT) : "";
+        var rest = colon > 0 ? query.substring(colon + 1).trim() : query;
+        return switch (prefix) {
+            case "x" -> parseHex(query, rest);
+            case "i32", "i64", "f32", "f64" -> {
+                byte[] bytes;
+                try {
+                    bytes = ParamUtils.encodeTypedValue(prefix, rest);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid " + prefix + " value: " + rest);
+                }
+                yield new Pattern(bytes, new boolean[bytes.length], query);
+            }
+            default -> {
+                var bytes = query.getBytes(StandardCharsets.UTF_8);
+                yield new Pattern(bytes, new boolean[bytes.length], query);
+            }
+        };
+    }
+
+    private static Pattern parseHex(String query, String hex) {
+        var digits = hex.replaceAll("\\s+", "");
+        if (digits.isEmpty() || digits.length() % 2 != 0) {
+            throw new IllegalArgumentException("Hex patterns need two digits per byte");
+        }
+        var bytes = new byte[digits.length() / 2];
+        var wildcard = new boolean[bytes.length];
+        boolean anyExact = false;
+        for (int i = 0; i < bytes.length; i++) {
+            var pair = digits.substring(2 * i, 2 * i + 2);
+            if ("??".equals(pair)) {
+                wildcard[i] = true;
+                continue;
+            }
+            try {
+                bytes[i] = (byte) Integer.parseInt(pair, 16);
+                anyExact = true;
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid hex byte: " + pair);
+            }
+        }
+        if (!anyExact) {
+            throw new IllegalArgumentException("Pattern needs at least one exact byte");
+        }
+        return new Pattern(bytes, wildcard, query);
+    }
+
+    static Result search(Pattern pattern, byte[] data) {
+        return search(pattern, data.length, (base, length) -> new Chunk(data, base, length, base));
+    }
+
+    static Result search(Pattern pattern, Memory memory) {
+        long size = memory != null ? (long) memory.pages() * Memory.PAGE_SIZE : 0;
+        return search(pattern, (int) Math.min(Integer.MAX_VALUE, size),
+                (base, length) -> new Chunk(memory.readBytes(base, length), 0, length, base));
+    }
+
+    private static Result search(Pattern pattern, int size, ChunkReader reader) {
+        long start = System.nanoTime();
+        int m = pattern.length();
+        var shift = shiftTable(pattern);
+        int chunks = (size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        var perChunk = IntStream.range(0, chunks).parallel().mapToObj(c -> {
+            int base = c * CHUNK_SIZE;
+            // Read far enough to see every match that starts in this chunk
+            int length = (int) Math.min((long) size - base, (long) CHUNK_SIZE + m - 1);
+            return find(pattern, shift, reader.read(base, length), base + CHUNK_SIZE);
+        }).toList();
+
+        int total = perChunk.stream().mapToInt(List::size).sum();
+        var matches = new int[Math.min(MAX_MATCHES, total)];
+        int n = 0;
+        for (var list : perChunk) {
+            for (int i = 0; i < list.size() && n < matches.length; i++) {
+                matches[n++] = list.get(i);
+            }
+        }
+        return new Result(pattern, matches, total >= MAX_MATCHES, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Horspool shift per byte value: the distance from its last occurrence
+     * before the final position to the end of the pattern. A wildcard
+     * matches every byte, so no shift may skip past the last one.
+     */
+    static int[] shiftTable(Pattern pattern) {
+        int m = pattern.length();
+        int fallback = m;
+        for (int i = 0; i < m - 1; i++) {
+            if (pattern.wildcard()[i]) {
+                fallback = m - 1 - i;
+            }
+        }
+        var shift = new int[256];
+        Arrays.fill(shift, fallback);
+        for (int i = 0; i < m - 1; i++) {
+            if (!pattern.wildcard()[i]) {
+                int b = pattern.bytes()[i] & 0xFF;
+                shift[b] = Math.min(shift[b], m - 1 - i);
+            }
+        }
+        return shift;
+    }
+
+    /** Offsets of the matches in {@code chunk} that start before {@code limit}, at most {@link #MAX_MATCHES}. */
+    private static List<Integer> find(Pattern pattern, int[] shift, Chunk chunk, int limit) {
+        var found = new ArrayList<Integer>();
+        var bytes = pattern.bytes();
+        var wildcard = pattern.wildcard();
+        var data = chunk.data();
+        int m = bytes.length;
+        int end = chunk.offset() + chunk.length() - m;
+        int last = Math.min(end, chunk.offset() + (limit - chunk.base()) - 1);
+        int pos = chunk.offset();
+        while (pos <= last && found.size() < MAX_MATCHES) {
+            int j = m - 1;
+            while (j >= 0 && (wildcard[j] || data[pos + j] == bytes[j])) {
+                j--;
+            }
+            if (j < 0) {
+                found.add(chunk.base() + pos - chunk.offset());
+            }
+            pos += shift[data[pos + m - 1] & 0xFF];
+        }
+        return found;
+    }
+}
@@ -0,0 +1,125 @@
+package io.roastedroot.w9s;
+
+import dev.tamboui.toolkit.event.EventResult;
+import dev.tamboui.tui.event.KeyCode;
+import dev.tamboui.tui.event.KeyEvent;
+import java.util.Arrays;
+import java.util.function.Function;
+
+/** Prompt and match cursor of a byte pattern search, shared by the memory and data views. */
+final class PatternSearchState {
+
+    private boolean inPrompt = false;
+    private String input = "";
+    private PatternSearch.Result result;
+    private int current = -1;
+    private String error;
+
+    boolean isActive() {
+        return inPrompt;
+    }
+
+    String input() {
+        return input;
+    }
+
+    boolean hasMatches() {
+        return result != null && result.matches().length > 0;
+    }
+
+    void start() {
+        inPrompt = true;
+        input = "";
+        error = null;
+    }
+
+    void clear() {
+        inPrompt = false;
+        input = "";
+        result = null;
+        current = -1;
+        error = null;
+    }
+
+    /**
+     * Handles a key while the prompt is open. Enter parses the input and runs
+     * {@code search}; a query that does not parse is reported in {@link #status()}.
+     */
+    EventResult handleKey(KeyEvent key, Function<PatternSearch.Pattern, PatternSearch.Result> search) {
+        if (key.isCancel()) {
+            inPrompt = false;
+            input = "";
+            return EventResult.HANDLED;
+        }
+        if (key.isConfirm()) {
+            inPrompt = false;
+            if (!input.isEmpty()) {
+                try {
+                    result = search.apply(PatternSearch.parse(input));
+                    current = -1;
+                    error = null;
+                } catch (IllegalArgumentException e) {
+                    result = null;
+                    error = e.getMessage();
+                }
+            }
+            return EventResult.HANDLED;
+        }
+        if (key.isDeleteBackward() && !input.isEmpty()) {
+            input = input.substring(0, input.length() - 1);
+            return EventResult.HANDLED;
+        }
+        if (key.code() == KeyCode.CHAR && !key.hasCtrl() && !key.hasAlt()) {
+            input += key.character();
+        }
+        return EventResult.HANDLED;
+    }
+
+    /** Moves to the first match after {@code offset}, wrapping around; returns it or -1. */
+    int next(int offset) {
+        if (!hasMatches()) return -1;
+        var matches = result.matches();
+        int i = Arrays.binarySearch(matches, offset + 1);
+        current = i >= 0 ? i : -i - 1;
+        if (current == matches.length) current = 0;
+        return matches[current];
+    }
+
+    /** Moves to the last match before {@code offset}, wrapping around; returns it or -1. */
+    int previous(int offset) {
+        if (!hasMatches()) return -1;
+        var matches = result.matches();
+        int i = Arrays.binarySearch(matches, offset);
+        current = (i >= 0 ? i : -i - 1) - 1;
+        if (current < 0) current = matches.length - 1;
+        return matches[current];
+    }
+
+    /** Offset of the match the cursor is on, or -1. */
+    int currentMatch() {
+        return hasMatches() && current >= 0 ? result.matches()[current] : -1;
+    }
+
+    int patternLength() {
+        return result != null ? result.pattern().length() : 0;
+    }
+
+    /** One line describing the last search, or null if there is none. */
+    String status() {
+        if (error != null) {
+            return error;
+        }
+        if (result == null) {
+            return null;
+        }
+        var matches = result.matches();
+        if (matches.length == 0) {
+            return "No match for " + result.pattern().query() + " (" + result.millis() + "ms)";
+        }
+        var count = matches.length + (result.truncated() ? "+" : "");
+        if (current < 0) {
+            return count + " matches for " + result.pattern().query() + " (" + result.millis() + "ms)";
+        }
+        return String.format("Match %d of %s for %s at %08x", current + 1, count, result.pattern().query(), matches[current]);
+    }
+}
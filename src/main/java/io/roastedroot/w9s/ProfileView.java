@@ -0,0 +1,166 @@
+package io.roastedroot.w9s;
+
+import static dev.tamboui.toolkit.Toolkit.*;
+import dev.tamboui.style.Color;
+import dev.tamboui.toolkit.element.Element;
+import dev.tamboui.toolkit.event.EventResult;
+import dev.tamboui.tui.event.KeyEvent;
+import dev.tamboui.widgets.table.TableState;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** Hot-function table of a profiled run, sortable by column. */
+public final class ProfileView implements View {
+
+    private static final int EDGES_SHOWN = 3;
+
+    enum Sort {
+        EXCLUSIVE("Excl", Comparator.comparingLong(Profiler.Row::exclusiveNanos).reversed()),
+        INCLUSIVE("Incl", Comparator.comparingLong(Profiler.Row::inclusiveNanos).reversed()),
+        CALLS("Calls", Comparator.comparingLong(Profiler.Row::calls).reversed()),
+        INDEX("#", Comparator.comparingInt(Profiler.Row::funcIdx));
+
+        final String label;
+        final Comparator<Profiler.Row> comparator;
+
+        Sort(String label, Comparator<Profiler.Row> comparator) {
+            this.label = label;
+            this.comparator = comparator;
+        }
+
+        Sort next() {
+            var values = values();
+            return values[(ordinal() + 1) % values.length];
+        }
+    }
+
+    private final RunOutputView runView;
+    private final String exportName;
+    private final Profiler.Profile profile;
+    private final List<Profiler.Row> rows;
+    private final TableState tableState = new TableState();
+    private Sort sort = Sort.EXCLUSIVE;
+
+    ProfileView(RunOutputView runView, String exportName, Profiler.Profile profile) {
+        this.runView = runView;
+        this.exportName = exportName;
+        this.profile = profile;
+        this.rows = new ArrayList<>(profile.rows());
+        rows.sort(sort.comparator);
+        tableState.select(0);
+    }
+
+    @Override
+    public EventResult handleKey(KeyEvent key, ViewContext ctx) {
+        if (key.isQuit()) { ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
+        if (key.isCancel() || key.isLeft()) {
+            ctx.setPendingRunOutputView(runView);
+            ctx.navigateTo(new ViewTransition.ToRunOutputView(exportName));
+            return EventResult.HANDLED;
+        }
+        if (key.isSelect() || key.isConfirm()) {
+            var selected = selectedRow();
+            if (selected != null) {
+                ctx.navigateTo(new ViewTransition.ToFunctionView(selected.funcIdx()));
+            }
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('s')) {
+            var selected = selectedRow();
+            sort = sort.next();
+            rows.sort(sort.comparator);
+            tableState.select(selected != null ? rows.indexOf(selected) : 0);
+            return EventResult.HANDLED;
+        }
+        if (key.isUp()) { tableState.selectPrevious(); return EventResult.HANDLED; }
+        if (key.isDown()) { tableState.selectNext(rows.size()); return EventResult.HANDLED; }
+        if (key.isPageUp()) {
+            tableState.select(Math.max(0, selectedIndex() - ViewLayout.PAGE_SIZE)); return EventResult.HANDLED;
+        }
+        if (key.isPageDown()) {
+            tableState.select(Math.min(rows.size() - 1, selectedIndex() + ViewLayout.PAGE_SIZE)); return EventResult.HANDLED;
+        }
+        if (key.isHome()) { tableState.selectFirst(); return EventResult.HANDLED; }
+        if (key.isEnd()) { tableState.selectLast(rows.size()); return EventResult.HANDLED; }
+        return EventResult.UNHANDLED;
+    }
+
+    private int selectedIndex() {
+        return tableState.selected() != null ? tableState.selected() : 0;
+    }
+
+    private Profiler.Row selectedRow() {
+        int idx = selectedIndex();
+        return idx < rows.size() ? rows.get(idx) : null;
+    }
+
+    @Override
+    public Element render(ViewContext ctx) {
+        var functionData = ctx.functionData();
+        var t = table()
+                .header(header(Sort.INDEX), "Function", header(Sort.CALLS), header(Sort.INCLUSIVE),
+                        header(Sort.EXCLUSIVE), "Excl%")
+                .widths(length(7), fill(1), length(10), length(11), length(11), length(6))
+                .columnSpacing(1);
+        SectionRenderers.applyDetailHighlight(t, tableState);
+        long total = Math.max(1, profile.totalNanos());
+        for (var r : rows) {
+            t.row(String.valueOf(r.funcIdx()),
+                    functionData.functionName(r.funcIdx()),
+                    String.valueOf(r.calls()),
+                    ExportBenchmark.formatNanos(r.inclusiveNanos()),
+                    ExportBenchmark.formatNanos(r.exclusiveNanos()),
+                    String.format("%.1f", 100.0 * r.exclusiveNanos() / total));
+        }
+
+        var selected = selectedRow();
+        Element content = t;
+        if (selected != null) {
+            content = column(t,
+                    text("callers: " + edges(selected.funcIdx(), true, functionData)).dim().fit(),
+                    text("callees: " + edges(selected.funcIdx(), false, functionData)).dim().fit()).fill();
+        }
+
+        var helpContent = row(
+                text(" Enter").cyan().fit(), text(" function  ").dim().fit(),
+                text("s").cyan().fit(), text(" sort (" + sort.label + ")  ").dim().fit(),
+                text("\u2191\u2193").cyan().fit(), text(" navigate  ").dim().fit(),
+                text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
+
+        var contentPanel = panel(content)
+                .title("Profile: " + exportName)
+                .bottomTitle(rows.size() + " functions, " + ExportBenchmark.formatNanos(profile.totalNanos()))
+                .rounded().borderColor(Color.GREEN).fill(1);
+        return ViewLayout.layout(ctx, contentPanel, helpContent);
+    }
+
+    private String header(Sort column) {
+        return column == sort ? column.label + " \u25bc" : column.label;
+    }
+
+    /** The busiest call edges into ({@code callers}) or out of the function, as text. */
+    private String edges(int funcIdx, boolean callers, FunctionDataProvider functionData) {
+        var matching = new ArrayList<Profiler.Edge>();
+        for (var e : profile.edges()) {
+            if ((callers ? e.callee() : e.caller()) == funcIdx) {
+                matching.add(e);
+            }
+        }
+        if (matching.isEmpty()) {
+            return "none";
+        }
+        matching.sort(Comparator.comparingLong(Profiler.Edge::count).reversed());
+        var sb = new StringBuilder();
+        for (int i = 0; i < Math.min(EDGES_SHOWN, matching.size()); i++) {
+            var e = matching.get(i);
+            int other = callers ? e.caller() : e.callee();
+            if (i > 0) sb.append(", ");
+            sb.append(other < 0 ? "host" : functionData.functionName(other)).append(" \u00d7").append(e.count());
+        }
+        if (matching.size() > EDGES_SHOWN) {
+            sb.append(", +").append(matching.size() - EDGES_SHOWN).append(" more");
+        }
+        return sb.toString();
+    }
+}
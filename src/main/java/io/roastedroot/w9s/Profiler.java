@@ -0,0 +1,158 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.ExecutionListener;
+import com.dylibso.chicory.runtime.MStack;
+import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.Instruction;
+import com.dylibso.chicory.wasm.types.OpCode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Function-level profiler driven by the interpreter's execution listener.
+ * Every instruction is mapped back to the local function that owns it, so
+ * function entries (the first instruction of a body right after a call) and
+ * returns (a {@code return} or the final {@code end}, or else execution
+ * continuing in a function further down the stack) can be told apart without
+ * help from the interpreter. A tail call closes the calling frame before the
+ * callee is entered. Time is read only on entries and returns.
+ * Profiled runs happen on one thread, so counters are plain arrays.
+ */
+final class Profiler implements ExecutionListener {
+
+    /** Totals for one function; times are in nanoseconds. */
+    record Row(int funcIdx, long calls, long inclusiveNanos, long exclusiveNanos) {}
+
+    /** How often {@code caller} called {@code callee}; -1 as caller means the host. */
+    record Edge(int caller, int callee, long count) {}
+
+    record Profile(List<Row> rows, List<Edge> edges, long totalNanos) {}
+
+    private static final int ENTRY = 1 << 31;
+    private static final int EXIT = 1 << 30;
+
+    // Owning function of every instruction, flagged on the first and last one of a body
+    private final Map<Instruction, Integer> owners = new IdentityHashMap<>();
+    private final long[] calls;
+    private final long[] inclusive;
+    private final long[] exclusive;
+    private final int[] active;
+    private final Map<Long, long[]> edges = new HashMap<>();
+
+    private int[] stack = new int[64];
+    private long[] enteredAt = new long[64];
+    private long[] childNanos = new long[64];
+    private int depth;
+    private boolean afterCall;
+    // Function that just made a tail call, credited as the callee's caller
+    private int tailCaller = -1;
+    private long startNanos = -1;
+    private long endNanos;
+
+    Profiler(WasmModule module) {
+        var cs = module.codeSection();
+        int count = cs.functionBodyCount();
+        for (int f = 0; f < count; f++) {
+            var instructions = cs.getFunctionBody(f).instructions();
+            for (int i = 0; i < instructions.size(); i++) {
+                int flags = (i == 0 ? ENTRY : 0) | (i == instructions.size() - 1 ? EXIT : 0);
+                owners.put(instructions.get(i), f | flags);
+            }
+        }
+        calls = new long[count];
+        inclusive = new long[count];
+        exclusive = new long[count];
+        active = new int[count];
+    }
+
+    @Override
+    public void onExecution(Instruction instruction, MStack stack) {
+        var owner = owners.get(instruction);
+        if (owner == null) {
+            return;
+        }
+        int func = owner & ~(ENTRY | EXIT);
+        boolean entry = (owner & ENTRY) != 0 && (afterCall || depth == 0);
+        var opcode = instruction.opcode();
+        boolean tail = opcode == OpCode.RETURN_CALL || opcode == OpCode.RETURN_CALL_INDIRECT;
+        afterCall = opcode == OpCode.CALL || opcode == OpCode.CALL_INDIRECT || tail;
+
+        if (entry) {
+            long now = System.nanoTime();
+            if (startNanos < 0) {
+                startNanos = now;
+            }
+            push(func, now);
+        } else {
+            tailCaller = -1;
+            if (depth > 0 && this.stack[depth - 1] != func) {
+                // Returned into a caller: close every frame above it
+                long now = System.nanoTime();
+                while (depth > 0 && this.stack[depth - 1] != func) {
+                    pop(now);
+                }
+            }
+        }
+        if (((owner & EXIT) != 0 || opcode == OpCode.RETURN || tail) && depth > 0 && this.stack[depth - 1] == func) {
+            pop(System.nanoTime());
+            if (tail) {
+                tailCaller = func;
+            }
+        }
+    }
+
+    /** Closes the frames still open, e.g. after a trap or cancellation, and returns the totals. */
+    Profile finish() {
+        long now = System.nanoTime();
+        while (depth > 0) {
+            pop(now);
+        }
+        var rows = new ArrayList<Row>();
+        for (int f = 0; f < calls.length; f++) {
+            if (calls[f] > 0) {
+                rows.add(new Row(f, calls[f], inclusive[f], exclusive[f]));
+            }
+        }
+        var edgeList = new ArrayList<Edge>(edges.size());
+        for (var e : edges.entrySet()) {
+            edgeList.add(new Edge((int) (e.getKey() >> 32), (int) (long) e.getKey(), e.getValue()[0]));
+        }
+        return new Profile(rows, edgeList, startNanos < 0 ? 0 : Math.max(endNanos, now) - startNanos);
+    }
+
+    private void push(int func, long now) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            enteredAt = Arrays.copyOf(enteredAt, depth * 2);
+            childNanos = Arrays.copyOf(childNanos, depth * 2);
+        }
+        int caller = tailCaller >= 0 ? tailCaller : depth > 0 ? stack[depth - 1] : -1;
+        tailCaller = -1;
+        edges.computeIfAbsent(((long) caller << 32) | (func & 0xFFFFFFFFL), k -> new long[1])[0]++;
+        calls[func]++;
+        active[func]++;
+        stack[depth] = func;
+        enteredAt[depth] = now;
+        childNanos[depth] = 0;
+        depth++;
+    }
+
+    private void pop(long now) {
+        depth--;
+        int func = stack[depth];
+        long elapsed = now - enteredAt[depth];
+        exclusive[func] += elapsed - childNanos[depth];
+        // Recursive frames are already covered by the outermost one
+        if (--active[func] == 0) {
+            inclusive[func] += elapsed;
+        }
+        if (depth > 0) {
+            childNanos[depth - 1] += elapsed;
+        }
+        endNanos = now;
+    }
+}
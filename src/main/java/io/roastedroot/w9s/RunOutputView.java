@@ -14,24 +14,46 @@ import dev.tamboui.text.Text;
 import dev.tamboui.toolkit.element.Element;
 import dev.tamboui.toolkit.event.EventResult;
 import dev.tamboui.tui.event.KeyEvent;
-import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.List;
 
 public final class RunOutputView implements View {
 
+    // Warm-up and measurement together stop after this long even when no timeout is set
+    private static final long BENCH_BUDGET_NANOS = 10_000_000_000L;
+    private static final int HISTOGRAM_WIDTH = 30;
+    private static final String INSTRUMENTED = "  (instrumented: instruction counting is on)";
+    private static final int PROFILE_SUMMARY_ROWS = 5;
+    private static final int MEMORY_REGIONS_SHOWN = 8;
+
     private final String exportName;
     private final List<ValType> paramTypes;
     private final List<ValType> returnTypes;
     private final String[] paramValues;
     private long[] results;
-    private String stdout = "";
-    private String stderr = "";
+    private OutputText stdout = OutputText.EMPTY;
+    private OutputText stderr = OutputText.EMPTY;
+    // Indexes of the live captures, extended with what each repaint finds new
+    private final OutputText liveStdout = new OutputText();
+    private final OutputText liveStderr = new OutputText();
     private String execError;
     private int exitCode = -1;
     private long durationMs;
+    // Whether the last run went through the execution listener, which slows it down
+    private boolean instrumented;
+    private ExportBenchmark.Result bench;
+    private Profiler.Profile profile;
     private int scrollOffset = 0;
 
+    // Exports run on their own thread; the fields above are written by it and
+    // read once running is false
+    private volatile boolean running;
+    private volatile String cancelReason;
+    // Read by the timeout thread, so a timeout of an earlier run cannot cancel a later one
+    private volatile Thread runThread;
+    private long runStartNanos;
+
     RunOutputView(String exportName, List<ValType> paramTypes, List<ValType> returnTypes, String[] paramValues) {
         this.exportName = exportName;
         this.paramTypes = paramTypes;
@@ -52,13 +74,65 @@ public final class RunOutputView implements View {
         ctx.setPendingRunOutputView(view);
     }
 
+    static void benchAndTransition(ViewContext ctx, String exportName, List<ValType> paramTypes,
+            List<ValType> returnTypes, String[] paramValues, long[] args) {
+        var view = new RunOutputView(exportName, paramTypes, returnTypes, paramValues);
+        view.bench(ctx, args);
+        ctx.navigateTo(new ViewTransition.ToRunOutputView(exportName));
+        ctx.setPendingRunOutputView(view);
+    }
+
     void execute(ViewContext ctx, long[] args) {
-        execError = null; results = null; exitCode = -1; stdout = ""; stderr = "";
+        resetCaptures(ctx);
+        ctx.instanceManager().setMemoryDiff(null);
+        start(ctx, () -> {
+            var memory = ctx.instanceManager().instance().memory();
+            var before = MemoryDiff.fingerprint(memory);
+            call(ctx, args);
+            if (cancelReason == null) {
+                ctx.instanceManager().setMemoryDiff(MemoryDiff.compare(before, memory));
+            }
+        });
+    }
+
+    /** Runs the export once with the profiler attached; the instance must be profilable. */
+    void profile(ViewContext ctx, long[] args) {
+        resetCaptures(ctx);
+        start(ctx, () -> {
+            var profiler = new Profiler(ctx.module());
+            ctx.instanceManager().setProfiler(profiler);
+            try {
+                call(ctx, args);
+            } finally {
+                ctx.instanceManager().setProfiler(null);
+                ctx.instanceManager().disableExecutionListener();
+                profile = profiler.finish();
+            }
+        });
+    }
+
+    /** Leaving the view drops the full-output files it pointed to; the next run writes new ones. */
+    private static void deleteSpillFiles(ViewContext ctx) {
+        var stdoutCapture = ctx.instanceManager().stdoutCapture();
+        var stderrCapture = ctx.instanceManager().stderrCapture();
+        if (stdoutCapture != null) stdoutCapture.deleteSpillFile();
+        if (stderrCapture != null) stderrCapture.deleteSpillFile();
+    }
+
+    private static void resetCaptures(ViewContext ctx) {
         var stdoutCapture = ctx.instanceManager().stdoutCapture();
         var stderrCapture = ctx.instanceManager().stderrCapture();
         if (stdoutCapture != null) stdoutCapture.reset();
         if (stderrCapture != null) stderrCapture.reset();
-        long startTime = System.currentTimeMillis();
+        var tracer = ctx.instanceManager().wasiTracer();
+        if (tracer != null) tracer.reset();
+    }
+
+    private void call(ViewContext ctx, long[] args) {
+        var stdoutCapture = ctx.instanceManager().stdoutCapture();
+        var stderrCapture = ctx.instanceManager().stderrCapture();
+        ctx.instanceManager().startCounting();
+        long startTime = System.nanoTime();
         try {
             ExportFunction func = ctx.instanceManager().instance().export(exportName);
             results = func.apply(args);
@@ -69,35 +143,166 @@ public final class RunOutputView implements View {
             execError = "Trap: " + e.getMessage();
         } catch (Exception e) {
             execError = "Error: " + e.getMessage();
+        } finally {
+            ctx.instanceManager().stopCounting();
         }
-        durationMs = System.currentTimeMillis() - startTime;
-        if (stdoutCapture != null && stdoutCapture.size() > 0) {
-            stdout = stdoutCapture.toString(StandardCharsets.UTF_8);
+        durationMs = (System.nanoTime() - startTime) / 1_000_000;
+        if (stdoutCapture != null) {
+            stdout = OutputText.of(stdoutCapture.snapshot());
         }
-        if (stderrCapture != null && stderrCapture.size() > 0) {
-            stderr = stderrCapture.toString(StandardCharsets.UTF_8);
+        if (stderrCapture != null) {
+            stderr = OutputText.of(stderrCapture.snapshot());
         }
+    }
+
+    void bench(ViewContext ctx, long[] args) {
+        var stdoutCapture = ctx.instanceManager().stdoutCapture();
+        var stderrCapture = ctx.instanceManager().stderrCapture();
+        Runnable discardOutput = () -> {
+            if (stdoutCapture != null) stdoutCapture.reset();
+            if (stderrCapture != null) stderrCapture.reset();
+        };
+        discardOutput.run();
+        var tracer = ctx.instanceManager().wasiTracer();
+        if (tracer != null) tracer.reset();
+        start(ctx, () -> {
+            try {
+                var instance = ctx.instanceManager().instance();
+                ExportFunction func = instance.export(exportName);
+                bench = ExportBenchmark.run(func, args, instance.memory(), ctx.options().benchWarmup(),
+                        ctx.options().benchIterations(), BENCH_BUDGET_NANOS, discardOutput);
+                if (bench.exited()) {
+                    ctx.instanceManager().requestReset();
+                }
+            } catch (Exception e) {
+                execError = "Error: " + e.getMessage();
+            }
+        });
+    }
+
+    /**
+     * Runs {@code body} on a virtual thread, so the UI keeps repainting and can
+     * cancel it. Cancelling interrupts the thread, which Chicory checks while
+     * executing; the instance is then reset because the call stopped midway.
+     */
+    private void start(ViewContext ctx, Runnable body) {
+        execError = null; results = null; exitCode = -1; bench = null; profile = null;
+        stdout = OutputText.EMPTY; stderr = OutputText.EMPTY;
+        cancelReason = null;
         scrollOffset = 0;
+        instrumented = ctx.instanceManager().isListening();
+        running = true;
+        runStartNanos = System.nanoTime();
+        runThread = Thread.ofVirtual().name("w9s-run-" + exportName).start(() -> {
+            try {
+                body.run();
+            } finally {
+                if (cancelReason != null) {
+                    ctx.instanceManager().requestReset();
+                }
+                running = false;
+            }
+        });
+        int timeout = ctx.options().runTimeoutSeconds();
+        if (timeout > 0) {
+            var thread = runThread;
+            Thread.ofVirtual().name("w9s-run-timeout").start(() -> {
+                try {
+                    if (!thread.join(Duration.ofSeconds(timeout))) {
+                        cancel(thread, "Timed out after " + timeout + "s");
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+    }
+
+    private void cancel(Thread thread, String reason) {
+        if (running && thread == runThread) {
+            cancelReason = reason;
+            thread.interrupt();
+        }
+    }
+
+    private long[] parseArgs() {
+        long[] args = new long[0];
+        if (paramValues != null && paramValues.length > 0) {
+            args = new long[paramValues.length];
+            for (int i = 0; i < paramValues.length; i++) {
+                try { args[i] = ParamUtils.parseParam(paramTypes.get(i), paramValues[i]); }
+                catch (Exception e) { return null; }
+            }
+        }
+        return args;
     }
 
     @Override
     public EventResult handleKey(KeyEvent key, ViewContext ctx) {
+        if (running) {
+            // The instance is busy: only cancelling, quitting and scrolling are allowed
+            if (key.isQuit()) { cancel(runThread, "Cancelled"); ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
+            if (key.isChar('c') || key.isCancel()) { cancel(runThread, "Cancelled"); return EventResult.HANDLED; }
+            int offset = ScrollHandler.handleKey(key, scrollOffset);
+            if (offset >= 0) { scrollOffset = offset; }
+            return EventResult.HANDLED;
+        }
         if (key.isQuit()) { ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
-        if (key.isCancel() || key.isLeft()) { ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
-        if (key.isChar('r')) {
+        if (key.isCancel() || key.isLeft()) { deleteSpillFiles(ctx); ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
+        if (key.isChar('r') || key.isChar('b')) {
             if (ctx.instanceManager().ensureInstance()) {
-                long[] args = new long[0];
-                if (paramValues != null && paramValues.length > 0) {
-                    args = new long[paramValues.length];
-                    for (int i = 0; i < paramValues.length; i++) {
-                        try { args[i] = ParamUtils.parseParam(paramTypes.get(i), paramValues[i]); }
-                        catch (Exception e) { return EventResult.HANDLED; }
-                    }
+                long[] args = parseArgs();
+                if (args == null) return EventResult.HANDLED;
+                if (key.isChar('b')) {
+                    bench(ctx, args);
+                } else {
+                    execute(ctx, args);
                 }
-                execute(ctx, args);
             }
             return EventResult.HANDLED;
         }
+        if (key.isChar('p')) {
+            var im = ctx.instanceManager();
+            if (im.engine() != ExecutionEngine.INTERPRETER) {
+                execError = "Profiling needs the interpreter engine (press e to switch)";
+                return EventResult.HANDLED;
+            }
+            im.enableExecutionListener();
+            if (im.ensureInstance() && im.isListening()) {
+                long[] args = parseArgs();
+                if (args != null) profile(ctx, args);
+            }
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('h')) {
+            var im = ctx.instanceManager();
+            if (!im.countInstructions() && im.engine() != ExecutionEngine.INTERPRETER) {
+                execError = "Instruction counts need the interpreter engine (press e to switch)";
+                return EventResult.HANDLED;
+            }
+            im.setCountInstructions(!im.countInstructions());
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('m') && ctx.instanceManager().memoryDiff() != null
+                && !ctx.instanceManager().memoryDiff().regions().isEmpty()) {
+            ctx.navigateTo(new ViewTransition.ToMemoryView());
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('w') && ctx.instanceManager().wasiTracer() != null) {
+            ctx.setPendingWasiTraceView(new WasiTraceView(this, exportName, ctx.instanceManager().wasiTracer()));
+            ctx.navigateTo(new ViewTransition.ToWasiTraceView());
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('P') && profile != null && !profile.rows().isEmpty()) {
+            ctx.setPendingProfileView(new ProfileView(this, exportName, profile));
+            ctx.navigateTo(new ViewTransition.ToProfileView());
+            return EventResult.HANDLED;
+        }
+        if (key.isChar('e')) {
+            var im = ctx.instanceManager();
+            im.setEngine(im.engine().next());
+            return EventResult.HANDLED;
+        }
         if (key.isChar('R')) { ctx.instanceManager().requestReset(); ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
         int newOffset = ScrollHandler.handleKey(key, scrollOffset);
         if (newOffset >= 0) { scrollOffset = newOffset; return EventResult.HANDLED; }
@@ -106,9 +311,14 @@ public final class RunOutputView implements View {
 
     @Override
     public Element render(ViewContext ctx) {
-        boolean hasError = execError != null;
-        boolean hasWasiExit = exitCode >= 0;
-        var borderColor = (hasError || (hasWasiExit && exitCode != 0)) ? Color.RED : Color.GREEN;
+        boolean isRunning = running;
+        var cancelled = isRunning ? null : cancelReason;
+        boolean hasError = !isRunning
+                && (cancelled != null || execError != null || (bench != null && bench.error() != null));
+        boolean hasWasiExit = !isRunning && exitCode >= 0;
+        var borderColor = isRunning
+                ? Color.YELLOW
+                : (hasError || (hasWasiExit && exitCode != 0)) ? Color.RED : Color.GREEN;
 
         var lines = new ArrayList<Line>();
 
@@ -125,7 +335,7 @@ public final class RunOutputView implements View {
         }
 
         // Return Values section
-        if (results != null && results.length > 0) {
+        if (!isRunning && results != null && results.length > 0) {
             lines.add(Line.from(List.of(
                     Span.styled("━━ Return Values ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
             for (int i = 0; i < results.length; i++) {
@@ -138,9 +348,17 @@ public final class RunOutputView implements View {
         // Status section
         lines.add(Line.from(List.of(
                 Span.styled("━━ Status ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
-        if (hasError) {
+        if (isRunning) {
+            var elapsed = String.format("  Running\u2026 %.1fs", (System.nanoTime() - runStartNanos) / 1e9);
+            int timeout = ctx.options().runTimeoutSeconds();
+            lines.add(Line.from(List.of(
+                    Span.styled(elapsed, Style.EMPTY.fg(Color.YELLOW).bold()),
+                    Span.styled(timeout > 0 ? " of " + timeout + "s allowed" : "", Style.EMPTY.dim()),
+                    Span.styled("  (c to cancel)", Style.EMPTY.dim()))));
+        } else if (hasError) {
+            var message = cancelled != null ? cancelled : execError != null ? execError : bench.error();
             lines.add(Line.from(List.of(
-                    Span.styled("  " + execError, Style.EMPTY.fg(Color.RED)))));
+                    Span.styled("  " + message, Style.EMPTY.fg(Color.RED)))));
         } else if (hasWasiExit) {
             var exitStyle = exitCode == 0 ? Style.EMPTY.fg(Color.GREEN) : Style.EMPTY.fg(Color.YELLOW);
             lines.add(Line.from(List.of(
@@ -149,39 +367,82 @@ public final class RunOutputView implements View {
             lines.add(Line.from(List.of(
                     Span.styled("  Completed", Style.EMPTY.fg(Color.GREEN)))));
         }
-        lines.add(Line.from(List.of(
-                Span.styled("  Duration: " + durationMs + "ms", Style.EMPTY.dim()))));
-
-        // stdout section
-        if (!stdout.isEmpty()) {
-            lines.add(Line.empty());
-            lines.add(Line.from(List.of(
-                    Span.styled("━━ stdout ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
-            for (var line : stdout.split("\n", -1)) {
-                lines.add(Line.from(List.of(Span.styled(line, Style.EMPTY))));
+        var im = ctx.instanceManager();
+        var engineLine = "  Engine: " + im.engine().label();
+        if (im.engine() == ExecutionEngine.COMPILER && im.compileMillis() >= 0) {
+            engineLine += " (module compiled in " + im.compileMillis() + "ms, not included below)";
+        }
+        lines.add(Line.from(List.of(Span.styled(engineLine, Style.EMPTY.dim()))));
+        if (im.countInstructions()) {
+            var counts = im.instructionCounts();
+            var countLine = "  Instruction counts: on";
+            if (!isRunning && counts != null) {
+                countLine += ", " + InstructionCounts.format(counts.total()) + " executed (heat shown in the WAT view)";
             }
+            lines.add(Line.from(List.of(Span.styled(countLine, Style.EMPTY.dim()))));
         }
-
-        // stderr section
-        if (!stderr.isEmpty()) {
-            lines.add(Line.empty());
+        var tracer = im.wasiTracer();
+        if (tracer != null && tracer.callCount() > 0) {
+            lines.add(Line.from(List.of(Span.styled(
+                    "  WASI calls: " + tracer.callCount() + " (w for the trace)", Style.EMPTY.dim()))));
+        }
+        var diff = isRunning ? null : im.memoryDiff();
+        if (diff != null) {
+            addMemoryDiffLines(lines, diff);
+        }
+        var restore = im.lastRestore();
+        if (restore != null) {
+            lines.add(Line.from(List.of(Span.styled(
+                    "  Last reset: " + restore.pagesWritten() + " of " + restore.pagesTotal()
+                            + " pages restored from snapshot in " + restore.millis() + "ms",
+                    Style.EMPTY.dim()))));
+        }
+        if (!isRunning && bench != null) {
+            addBenchLines(lines, bench, instrumented);
+        } else if (!isRunning) {
             lines.add(Line.from(List.of(
-                    Span.styled("━━ stderr ━━", Style.EMPTY.fg(Color.RED).bold()))));
-            for (var line : stderr.split("\n", -1)) {
-                lines.add(Line.from(List.of(Span.styled(line, Style.EMPTY.fg(Color.RED)))));
-            }
+                    Span.styled("  Duration: " + durationMs + "ms", Style.EMPTY.dim()),
+                    Span.styled(instrumented ? INSTRUMENTED : "", Style.EMPTY.fg(Color.YELLOW)))));
         }
+        if (!isRunning && profile != null) {
+            addProfileLines(lines, profile, ctx.functionData());
+        }
+
+        // While running, output is read straight from the WASI capture
+        var stdoutText = isRunning ? refresh(im.stdoutCapture(), liveStdout) : stdout;
+        var stderrText = isRunning ? refresh(im.stderrCapture(), liveStderr) : stderr;
+        var stdoutHeader = streamHeader("stdout", stdoutText, im.stdoutCapture(), Color.CYAN);
+        var stderrHeader = streamHeader("stderr", stderrText, im.stderrCapture(), Color.RED);
 
-        // Apply scrolling
-        int start = Math.min(scrollOffset, Math.max(0, lines.size() - 1));
-        var displayLines = lines.subList(start, lines.size());
+        // Only the visible window of the output is turned into lines
+        int total = lines.size() + stdoutHeader.size() + stdoutText.lineCount()
+                + stderrHeader.size() + stderrText.lineCount();
+        int start = Math.min(scrollOffset, Math.max(0, total - 1));
+        int end = Math.min(total, start + ViewLayout.MAX_VISIBLE_LINES);
+        var displayLines = new ArrayList<Line>(end - start);
+        int pos = window(displayLines, lines, 0, start, end);
+        pos = window(displayLines, stdoutHeader, pos, start, end);
+        pos = window(displayLines, stdoutText, Style.EMPTY, pos, start, end);
+        pos = window(displayLines, stderrHeader, pos, start, end);
+        window(displayLines, stderrText, Style.EMPTY.fg(Color.RED), pos, start, end);
         var styledText = Text.from(displayLines);
 
         var bottomTitle = paramTypes + " \u2192 " + returnTypes;
-        var helpContent = row(text(" r").cyan().fit(), text(" re-run  ").dim().fit(),
-                text("R").cyan().fit(), text(" reset  ").dim().fit(),
-                text("\u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
-                text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
+        var helpContent = isRunning
+                ? row(text(" c/ESC").cyan().fit(), text(" cancel  ").dim().fit(),
+                        text("\u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
+                        text("q").cyan().fit(), text(" quit").dim().fit())
+                : row(text(" r").cyan().fit(), text(" re-run  ").dim().fit(),
+                        text("b").cyan().fit(), text(" bench  ").dim().fit(),
+                        text("p").cyan().fit(), text(" profile  ").dim().fit(),
+                        text("P").cyan().fit(), text(" hot functions  ").dim().fit(),
+                        text("h").cyan().fit(), text(" counts  ").dim().fit(),
+                        text("w").cyan().fit(), text(" WASI trace  ").dim().fit(),
+                        text("m").cyan().fit(), text(" memory changes  ").dim().fit(),
+                        text("e").cyan().fit(), text(" engine  ").dim().fit(),
+                        text("R").cyan().fit(), text(" reset  ").dim().fit(),
+                        text("\u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
+                        text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
 
         var contentPanel = panel(richText(styledText).overflow(Overflow.CLIP).fill())
                 .title("Run: " + exportName)
@@ -190,6 +451,142 @@ public final class RunOutputView implements View {
         return ViewLayout.layout(ctx, contentPanel, helpContent);
     }
 
+    private static OutputText refresh(OutputCapture capture, OutputText live) {
+        if (capture == null) {
+            return OutputText.EMPTY;
+        }
+        live.update(capture);
+        return live;
+    }
+
+    private static List<Line> streamHeader(String name, OutputText text, OutputCapture capture, Color color) {
+        if (text.isEmpty()) {
+            return List.of();
+        }
+        var spans = new ArrayList<Span>();
+        spans.add(Span.styled("━━ " + name + " ━━", Style.EMPTY.fg(color).bold()));
+        if (text.dropped() > 0) {
+            spans.add(Span.styled("  " + text.dropped() + " bytes dropped", Style.EMPTY.fg(Color.YELLOW)));
+        }
+        var spill = capture != null ? capture.spillFile() : null;
+        if (spill != null) {
+            spans.add(Span.styled("  full output: " + spill, Style.EMPTY.dim()));
+        }
+        return List.of(Line.empty(), Line.from(spans));
+    }
+
+    /** Adds the lines of {@code block} that fall in [start, end); returns the position after it. */
+    private static int window(List<Line> out, List<Line> block, int pos, int start, int end) {
+        for (int i = Math.max(0, start - pos); i < block.size() && pos + i < end; i++) {
+            out.add(block.get(i));
+        }
+        return pos + block.size();
+    }
+
+    private static int window(List<Line> out, OutputText text, Style style, int pos, int start, int end) {
+        for (int i = Math.max(0, start - pos); i < text.lineCount() && pos + i < end; i++) {
+            var lineStyle = i == text.markerLine() ? Style.EMPTY.fg(Color.YELLOW).dim() : style;
+            out.add(Line.from(List.of(Span.styled(text.line(i), lineStyle))));
+        }
+        return pos + text.lineCount();
+    }
+
+    private static void addBenchLines(List<Line> lines, ExportBenchmark.Result b, boolean instrumented) {
+        if (b.iterations() == 0) {
+            return;
+        }
+        lines.add(Line.empty());
+        lines.add(Line.from(List.of(
+                Span.styled("━━ Benchmark ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
+        lines.add(Line.from(List.of(
+                Span.styled("  " + b.iterations() + " calls measured after " + b.warmup() + " warm-up calls",
+                        Style.EMPTY.dim()),
+                Span.styled(instrumented ? INSTRUMENTED : "", Style.EMPTY.fg(Color.YELLOW)))));
+        lines.add(Line.from(List.of(
+                Span.styled("  min ", Style.EMPTY.dim()), Span.styled(ExportBenchmark.formatNanos(b.min()), Style.EMPTY),
+                Span.styled("  mean ", Style.EMPTY.dim()), Span.styled(ExportBenchmark.formatNanos(b.mean()), Style.EMPTY),
+                Span.styled("  p50 ", Style.EMPTY.dim()), Span.styled(ExportBenchmark.formatNanos(b.p50()), Style.EMPTY.fg(Color.GREEN).bold()),
+                Span.styled("  p99 ", Style.EMPTY.dim()), Span.styled(ExportBenchmark.formatNanos(b.p99()), Style.EMPTY),
+                Span.styled("  max ", Style.EMPTY.dim()), Span.styled(ExportBenchmark.formatNanos(b.max()), Style.EMPTY))));
+        lines.add(Line.from(List.of(
+                Span.styled("  Throughput: ", Style.EMPTY.dim()),
+                Span.styled(String.format("%,.0f ops/s", b.opsPerSecond()), Style.EMPTY.fg(Color.GREEN).bold()))));
+        var memoryStyle = b.growingIterations() > 0 ? Style.EMPTY.fg(Color.YELLOW) : Style.EMPTY;
+        lines.add(Line.from(List.of(
+                Span.styled("  Memory: ", Style.EMPTY.dim()),
+                Span.styled(b.pagesBefore() + " \u2192 " + b.pagesAfter() + " pages", memoryStyle),
+                Span.styled(b.growingIterations() > 0
+                        ? "  (grew during " + b.growingIterations() + " measured calls)"
+                        : "  (no growth while measuring)", memoryStyle.dim()))));
+
+        lines.add(Line.empty());
+        lines.add(Line.from(List.of(
+                Span.styled("━━ Latency histogram ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
+        int peak = 0;
+        for (int count : b.histogram()) {
+            peak = Math.max(peak, count);
+        }
+        for (int i = 0; i < b.histogram().length; i++) {
+            int count = b.histogram()[i];
+            int width = peak > 0 ? (int) Math.ceil((double) count * HISTOGRAM_WIDTH / peak) : 0;
+            lines.add(Line.from(List.of(
+                    Span.styled(String.format("  \u2265 %10s ", ExportBenchmark.formatNanos(ExportBenchmark.binStart(b, i))),
+                            Style.EMPTY.dim()),
+                    Span.styled("\u2588".repeat(width), Style.EMPTY.fg(Color.GREEN)),
+                    Span.styled(" " + count, Style.EMPTY.dim()))));
+        }
+    }
+
+    private static void addMemoryDiffLines(List<Line> lines, MemoryDiff diff) {
+        var regions = diff.regions();
+        var summary = regions.isEmpty()
+                ? "  Memory: unchanged"
+                : "  Memory: " + diff.changedBytes() + " bytes changed in " + regions.size() + " regions"
+                        + (diff.exact() ? "" : ", counted in whole 4 KiB blocks") + " (m to browse)";
+        if (diff.pagesAfter() != diff.pagesBefore()) {
+            summary += ", grew " + diff.pagesBefore() + " \u2192 " + diff.pagesAfter() + " pages";
+        }
+        lines.add(Line.from(List.of(Span.styled(summary + "; compared in " + diff.millis() + "ms",
+                regions.isEmpty() ? Style.EMPTY.dim() : Style.EMPTY.fg(Color.YELLOW)))));
+        for (var r : regions.subList(0, Math.min(MEMORY_REGIONS_SHOWN, regions.size()))) {
+            lines.add(Line.from(List.of(
+                    Span.styled(String.format("    %08x\u2013%08x", r.start(), r.end() - 1), Style.EMPTY),
+                    Span.styled("  " + r.changedBytes() + " bytes", Style.EMPTY.dim()))));
+        }
+        if (regions.size() > MEMORY_REGIONS_SHOWN) {
+            lines.add(Line.from(List.of(Span.styled(
+                    "    \u2026 " + (regions.size() - MEMORY_REGIONS_SHOWN) + " more", Style.EMPTY.dim()))));
+        }
+    }
+
+    private static void addProfileLines(List<Line> lines, Profiler.Profile p, FunctionDataProvider functionData) {
+        lines.add(Line.empty());
+        lines.add(Line.from(List.of(
+                Span.styled("━━ Profile ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
+        long calls = 0;
+        for (var r : p.rows()) {
+            calls += r.calls();
+        }
+        lines.add(Line.from(List.of(
+                Span.styled("  " + calls + " calls into " + p.rows().size() + " functions in "
+                        + ExportBenchmark.formatNanos(p.totalNanos())
+                        + " (interpreter with profiling, slower than a plain run)", Style.EMPTY.dim()))));
+        var hottest = new ArrayList<>(p.rows());
+        hottest.sort(ProfileView.Sort.EXCLUSIVE.comparator);
+        for (var r : hottest.subList(0, Math.min(PROFILE_SUMMARY_ROWS, hottest.size()))) {
+            lines.add(Line.from(List.of(
+                    Span.styled(String.format("  %10s ", ExportBenchmark.formatNanos(r.exclusiveNanos())),
+                            Style.EMPTY.fg(Color.GREEN)),
+                    Span.styled(functionData.functionName(r.funcIdx()), Style.EMPTY),
+                    Span.styled("  \u00d7" + r.calls(), Style.EMPTY.dim()))));
+        }
+        if (!p.rows().isEmpty()) {
+            lines.add(Line.from(List.of(
+                    Span.styled("  P", Style.EMPTY.fg(Color.CYAN)),
+                    Span.styled(" opens the full table", Style.EMPTY.dim()))));
+        }
+    }
+
     private List<Span> formatReturnValueSpans(int index, ValType type, long value) {
         var label = "  result " + index + " (" + type + "): ";
         if (ValType.I32.equals(type)) {
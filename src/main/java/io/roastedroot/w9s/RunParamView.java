@@ -42,7 +42,7 @@ public final class RunParamView implements View {
     public EventResult handleKey(KeyEvent key, ViewContext ctx) {
         if (key.isQuit()) { ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
         if (key.isCancel()) { ctx.navigateTo(new ViewTransition.ToDetailView()); return EventResult.HANDLED; }
-        if (key.isConfirm()) {
+        if (key.isConfirm() || (key.isChar('b') && key.hasCtrl())) {
             long[] args = new long[paramTypes.size()];
             for (int i = 0; i < paramTypes.size(); i++) {
                 try {
@@ -53,7 +53,11 @@ public final class RunParamView implements View {
                 }
             }
             paramError = null;
-            RunOutputView.executeAndTransition(ctx, exportName, paramTypes, returnTypes, paramValues, args);
+            if (key.isConfirm()) {
+                RunOutputView.executeAndTransition(ctx, exportName, paramTypes, returnTypes, paramValues, args);
+            } else {
+                RunOutputView.benchAndTransition(ctx, exportName, paramTypes, returnTypes, paramValues, args);
+            }
             return EventResult.HANDLED;
         }
         if (key.isUp()) { if (focusIdx > 0) focusIdx--; return EventResult.HANDLED; }
@@ -97,6 +101,7 @@ public final class RunParamView implements View {
         var styledText = Text.from(lines);
         var helpContent = row(text(" \u2191\u2193").cyan().fit(), text(" navigate  ").dim().fit(),
                 text("Enter").cyan().fit(), text(" execute  ").dim().fit(),
+                text("Ctrl+B").cyan().fit(), text(" bench  ").dim().fit(),
                 text("ESC").cyan().fit(), text(" cancel").dim().fit());
 
         var contentPanel = panel(richText(styledText).overflow(Overflow.CLIP).fill()).title("Run: " + exportName).rounded().borderColor(Color.CYAN).fill(1);
@@ -7,7 +7,12 @@ import com.dylibso.chicory.runtime.Memory;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasi.WasiPreview1;
 import com.dylibso.chicory.wasm.WasmModule;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 
 public final class RustcDemangle implements AutoCloseable {
 
@@ -19,6 +24,7 @@ public final class RustcDemangle implements AutoCloseable {
     private final ExportFunction dealloc;
     private final ExportFunction rustcDemangleLen;
     private final ExportFunction rustcDemangle;
+    private final ExportFunction rustcDemangleBatch;
 
     public RustcDemangle() {
         var wasiOpts = WasiOptions.builder().inheritSystem().build();
@@ -35,6 +41,100 @@ public final class RustcDemangle implements AutoCloseable {
         this.dealloc = instance.export("dealloc");
         this.rustcDemangleLen = instance.export("rustc_demangle_len");
         this.rustcDemangle = instance.export("rustc_demangle");
+        // A binary built before the batch export existed demangles one name per call
+        this.rustcDemangleBatch =
+                hasExport("rustc_demangle_batch") ? instance.export("rustc_demangle_batch") : null;
+    }
+
+    private static boolean hasExport(String name) {
+        var es = MODULE.exportSection();
+        for (int i = 0; i < es.exportCount(); i++) {
+            if (es.getExport(i).name().equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns true if a name may be a mangled Rust symbol (legacy {@code _ZN} or
+     * v0 {@code _R}, optionally with the extra leading underscore used on macOS).
+     */
+    static boolean isMangledCandidate(String name) {
+        return name != null
+                && (name.startsWith("_ZN")
+                        || name.startsWith("_R")
+                        || name.startsWith("__ZN")
+                        || name.startsWith("__R"));
+    }
+
+    /**
+     * Demangle many names with a single guest call. Names that cannot be Rust
+     * symbols, including nulls, are returned unchanged without being sent to the
+     * guest. The result has the same size and order as the input.
+     */
+    public List<String> demangleAll(List<String> names) {
+        var result = new ArrayList<String>(names);
+        if (rustcDemangleBatch == null) {
+            for (int i = 0; i < names.size(); i++) {
+                if (isMangledCandidate(names.get(i))) {
+                    result.set(i, demangle(names.get(i)));
+                }
+            }
+            return result;
+        }
+        var candidates = new int[names.size()];
+        int count = 0;
+        var packed = new ByteArrayOutputStream();
+        for (int i = 0; i < names.size(); i++) {
+            var name = names.get(i);
+            if (!isMangledCandidate(name)) {
+                continue;
+            }
+            var bytes = name.getBytes(StandardCharsets.UTF_8);
+            writeIntLE(packed, bytes.length);
+            packed.write(bytes, 0, bytes.length);
+            candidates[count++] = i;
+        }
+        if (count == 0) {
+            return result;
+        }
+
+        var input = packed.toByteArray();
+        int inputPtr = (int) alloc.apply(input.length)[0];
+        int outLenPtr = (int) alloc.apply(4)[0];
+        try {
+            memory.write(inputPtr, input);
+            int outPtr = (int) rustcDemangleBatch.apply(inputPtr, input.length, outLenPtr)[0];
+            int outLen = memory.readInt(outLenPtr);
+            byte[] out;
+            try {
+                out = memory.readBytes(outPtr, outLen);
+            } finally {
+                dealloc.apply(outPtr, outLen);
+            }
+
+            var buf = ByteBuffer.wrap(out).order(ByteOrder.LITTLE_ENDIAN);
+            for (int k = 0; k < count && buf.remaining() >= 4; k++) {
+                int len = buf.getInt();
+                if (len == -1) {
+                    continue; // not a Rust symbol, keep the original
+                }
+                result.set(candidates[k], new String(out, buf.position(), len, StandardCharsets.UTF_8));
+                buf.position(buf.position() + len);
+            }
+            return result;
+        } finally {
+            dealloc.apply(outLenPtr, 4);
+            dealloc.apply(inputPtr, input.length);
+        }
+    }
+
+    private static void writeIntLE(ByteArrayOutputStream out, int value) {
+        out.write(value);
+        out.write(value >>> 8);
+        out.write(value >>> 16);
+        out.write(value >>> 24);
     }
 
     /**
@@ -43,7 +43,7 @@ public final class SectionNavView implements View {
                 text(" detail").dim().fit());
         var selectedName = ctx.selectedSectionName();
 
-        var contentPanel = panel(() -> SectionRenderers.renderDetail(ctx, selectedName, null, ""))
+        var contentPanel = panel(() -> SectionRenderers.renderDetail(ctx, selectedName, null, null))
                 .title(selectedName)
                 .rounded()
                 .borderColor(Color.DARK_GRAY)
@@ -14,19 +14,19 @@ final class SectionRenderers {
 
     private SectionRenderers() {}
 
-    static Element renderDetail(ViewContext ctx, String sectionName, TableState detailTableState, String searchFilter) {
+    static Element renderDetail(ViewContext ctx, String sectionName, TableWindow window, int[] rows) {
         return switch (sectionName) {
-            case "Types" -> renderTypes(ctx, detailTableState, searchFilter);
-            case "Imports" -> renderImports(ctx, detailTableState, searchFilter);
-            case "Functions" -> renderFunctions(ctx, detailTableState, searchFilter);
-            case "Tables" -> renderTables(ctx, detailTableState, searchFilter);
-            case "Memories" -> renderMemories(ctx, detailTableState, searchFilter);
-            case "Globals" -> renderGlobals(ctx, detailTableState, searchFilter);
-            case "Exports" -> renderExports(ctx, detailTableState, searchFilter);
+            case "Types" -> renderTypes(ctx, window, rows);
+            case "Imports" -> renderImports(ctx, window, rows);
+            case "Functions" -> renderFunctions(ctx, window, rows);
+            case "Tables" -> renderTables(ctx, window, rows);
+            case "Memories" -> renderMemories(ctx, window, rows);
+            case "Globals" -> renderGlobals(ctx, window, rows);
+            case "Exports" -> renderExports(ctx, window, rows);
             case "Start" -> renderStart(ctx);
-            case "Elements" -> renderElements(ctx, detailTableState, searchFilter);
-            case "Code" -> renderCode(ctx, detailTableState, searchFilter);
-            case "Data" -> renderData(ctx, detailTableState, searchFilter);
+            case "Elements" -> renderElements(ctx, window, rows);
+            case "Code" -> renderCode(ctx, window, rows);
+            case "Data" -> renderData(ctx, window, rows);
             default -> text("Select a section").dim();
         };
     }
@@ -38,26 +38,29 @@ final class SectionRenderers {
                 .highlightStyle(Style.EMPTY.bg(Color.MAGENTA).fg(Color.BLACK));
     }
 
-    static boolean matchesFilter(int index, ViewContext ctx, String searchFilter) {
-        if (searchFilter.isEmpty()) return true;
-        var filter = searchFilter.toLowerCase();
-        if (String.valueOf(index).startsWith(filter)) return true;
-        var section = ctx.selectedSectionName();
-        var module = ctx.module();
-        return switch (section) {
-            case "Functions", "Code" -> ctx.functionData().functionName(index).toLowerCase().contains(filter);
-            case "Exports" -> {
-                var es = module.exportSection();
-                yield index < es.exportCount() && es.getExport(index).name().toLowerCase().contains(filter);
-            }
-            case "Imports" -> {
-                var is = module.importSection();
-                yield index < is.importCount()
-                        && (is.getImport(index).name().toLowerCase().contains(filter)
-                                || is.getImport(index).module().toLowerCase().contains(filter));
-            }
-            default -> false;
-        };
+    /** Highlights the selection and moves the window over the table's {@code rowCount} rows. */
+    private static void applyWindow(TableElement t, TableWindow window, int rowCount) {
+        if (window == null) return;
+        window.update(rowCount);
+        applyDetailHighlight(t, window.state());
+    }
+
+    /** First row to build; without a window, the table shows its first rows. */
+    private static int first(TableWindow window) {
+        return window != null ? window.first() : 0;
+    }
+
+    private static int end(TableWindow window, int rowCount) {
+        return window != null ? window.end() : Math.min(rowCount, ViewLayout.MAX_VISIBLE_LINES);
+    }
+
+    /** Number of rows of the table; {@code null} rows means every row of the section. */
+    private static int rowCount(int[] rows, int total) {
+        return rows != null ? rows.length : total;
+    }
+
+    private static int row(int[] rows, int k) {
+        return rows != null ? rows[k] : k;
     }
 
     static int detailRowCount(ViewContext ctx) {
@@ -77,62 +80,41 @@ final class SectionRenderers {
         };
     }
 
-    static int filteredDetailRowCount(ViewContext ctx, String searchFilter) {
-        int total = detailRowCount(ctx);
-        if (searchFilter.isEmpty()) return total;
-        int count = 0;
-        for (int i = 0; i < total; i++) {
-            if (matchesFilter(i, ctx, searchFilter)) count++;
-        }
-        return count;
-    }
-
-    /** Maps a filtered row position back to the original module index. */
-    static int filteredToOriginalIndex(int filteredIdx, ViewContext ctx, String searchFilter) {
-        if (searchFilter.isEmpty()) return filteredIdx;
-        int total = detailRowCount(ctx);
-        int count = 0;
-        for (int i = 0; i < total; i++) {
-            if (matchesFilter(i, ctx, searchFilter)) {
-                if (count == filteredIdx) return i;
-                count++;
-            }
-        }
-        return filteredIdx;
-    }
-
-    private static Element renderTypes(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderTypes(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Params", "Returns").widths(length(5), fill(1), fill(1)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var ts = ctx.module().typeSection();
-        for (int i = 0; i < ts.typeCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, ts.typeCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var ft = ts.getType(i);
             t.row(String.valueOf(i), ft.params().toString(), ft.returns().toString());
         }
         return t;
     }
 
-    private static Element renderImports(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderImports(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Module", "Name", "Kind").widths(length(5), fill(1), fill(1), length(10)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var is = ctx.module().importSection();
-        for (int i = 0; i < is.importCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, is.importCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var imp = is.getImport(i);
             t.row(String.valueOf(i), imp.module(), imp.name(), imp.importType().name().toLowerCase());
         }
         return t;
     }
 
-    private static Element renderFunctions(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderFunctions(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Name", "Signature").widths(length(5), fill(1), fill(1)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var module = ctx.module();
         var fs = module.functionSection();
         var ts = module.typeSection();
-        for (int i = 0; i < fs.functionCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, fs.functionCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var typeIdx = fs.getFunctionType(i);
             var ft = ts.getType(typeIdx);
             t.row(String.valueOf(i), ctx.functionData().functionName(i), ft.params() + " -> " + ft.returns());
@@ -140,12 +122,13 @@ final class SectionRenderers {
         return t;
     }
 
-    private static Element renderTables(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderTables(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Type", "Min", "Max").widths(length(5), fill(1), length(10), length(10)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var ts = ctx.module().tableSection();
-        for (int i = 0; i < ts.tableCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, ts.tableCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var tbl = ts.getTable(i);
             t.row(String.valueOf(i), tbl.elementType().toString(), String.valueOf(tbl.limits().min()),
                     tbl.limits().max() < TableLimits.LIMIT_MAX ? String.valueOf(tbl.limits().max()) : "unbounded");
@@ -153,12 +136,13 @@ final class SectionRenderers {
         return t;
     }
 
-    private static Element renderMemories(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderMemories(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Min (pages)", "Max (pages)").widths(length(5), fill(1), fill(1)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         ctx.module().memorySection().ifPresent(ms -> {
-            for (int i = 0; i < ms.memoryCount(); i++) {
-                if (!matchesFilter(i, ctx, searchFilter)) continue;
+            int n = rowCount(rows, ms.memoryCount());
+            applyWindow(t, window, n);
+            for (int k = first(window), end = end(window, n); k < end; k++) {
+                int i = row(rows, k);
                 var mem = ms.getMemory(i);
                 t.row(String.valueOf(i), String.valueOf(mem.limits().initialPages()),
                         mem.limits().maximumPages() < MemoryLimits.MAX_PAGES ? String.valueOf(mem.limits().maximumPages()) : "unbounded");
@@ -167,17 +151,18 @@ final class SectionRenderers {
         return t;
     }
 
-    private static Element renderGlobals(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderGlobals(ViewContext ctx, TableWindow window, int[] rows) {
         var module = ctx.module();
         boolean hasInstance = ctx.instanceManager().instance() != null;
         int importedGlobals = module.importSection().count(ExternalType.GLOBAL);
         var t = hasInstance
                 ? table().header("#", "Type", "Mutable", "Value").widths(length(5), fill(1), length(10), fill(1)).columnSpacing(1)
                 : table().header("#", "Type", "Mutable").widths(length(5), fill(1), length(10)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var gs = module.globalSection();
-        for (int i = 0; i < gs.globalCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, gs.globalCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var g = gs.getGlobal(i);
             if (hasInstance) {
                 var gi = ctx.instanceManager().instance().global(importedGlobals + i);
@@ -190,12 +175,13 @@ final class SectionRenderers {
         return t;
     }
 
-    private static Element renderExports(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderExports(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Name", "Kind", "Index").widths(length(5), fill(1), length(10), length(8)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var es = ctx.module().exportSection();
-        for (int i = 0; i < es.exportCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, es.exportCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var exp = es.getExport(i);
             t.row(String.valueOf(i), exp.name(), exp.exportType().name().toLowerCase(), String.valueOf(exp.index()));
         }
@@ -220,37 +206,38 @@ final class SectionRenderers {
                 .orElse(text("No start section").dim());
     }
 
-    private static Element renderElements(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderElements(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Type", "Init Count").widths(length(5), fill(1), length(12)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var es = ctx.module().elementSection();
-        for (int i = 0; i < es.elementCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, es.elementCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var el = es.getElement(i);
             t.row(String.valueOf(i), el.type().toString(), String.valueOf(el.elementCount()));
         }
         return t;
     }
 
-    private static Element renderCode(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderCode(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Name", "Size").widths(length(5), fill(1), length(8)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var cs = ctx.module().codeSection();
-        var bodies = ctx.functionData().functionBodies();
-        for (int i = 0; i < cs.functionBodyCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
-            var bytes = i < bodies.size() ? bodies.get(i) : new byte[0];
-            t.row(String.valueOf(i), ctx.functionData().functionName(i), String.valueOf(bytes.length));
+        int n = rowCount(rows, cs.functionBodyCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
+            t.row(String.valueOf(i), ctx.functionData().functionName(i), String.valueOf(ctx.functionData().functionBodySize(i)));
         }
         return t;
     }
 
-    private static Element renderData(ViewContext ctx, TableState detailTableState, String searchFilter) {
+    private static Element renderData(ViewContext ctx, TableWindow window, int[] rows) {
         var t = table().header("#", "Kind", "Size (bytes)").widths(length(5), fill(1), length(14)).columnSpacing(1);
-        applyDetailHighlight(t, detailTableState);
         var ds = ctx.module().dataSection();
-        for (int i = 0; i < ds.dataSegmentCount(); i++) {
-            if (!matchesFilter(i, ctx, searchFilter)) continue;
+        int n = rowCount(rows, ds.dataSegmentCount());
+        applyWindow(t, window, n);
+        for (int k = first(window), end = end(window, n); k < end; k++) {
+            int i = row(rows, k);
             var seg = ds.getDataSegment(i);
             var kind = seg.getClass().getSimpleName().replace("DataSegment", "");
             t.row(String.valueOf(i), kind.toLowerCase(), String.valueOf(seg.data().length));
@@ -0,0 +1,273 @@
+package io.roastedroot.w9s;
+
+import dev.tamboui.style.Style;
+import dev.tamboui.text.Line;
+import dev.tamboui.text.Span;
+import dev.tamboui.text.Text;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+/**
+ * ANSI-styled text parsed once into lines of style runs. Styles come from a
+ * shared SGR cache, so identical escape sequences map to the same
+ * {@link Style} instance. Rendering a window only slices the line array; the
+ * tamboui {@link Line} for each row is built when it is shown and kept by the
+ * view in {@link RenderedLines}, so a cached text never grows past its weight.
+ */
+final class StyledText {
+
+    // approximate heap cost of a line and of a run, on top of the characters
+    private static final int LINE_OVERHEAD = 64;
+    private static final int RUN_OVERHEAD = 8;
+
+    // Escape sequences seen with their base style; starts over once it holds this many
+    private static final int MAX_SGR_STYLES = 4096;
+    private static final Map<SgrKey, Style> SGR_CACHE = new ConcurrentHashMap<>();
+
+    private final String[] lines;
+    private final int[][] runEnds;
+    private final Style[][] runStyles;
+    private final long weight;
+
+    private record SgrKey(Style base, String params) {}
+
+    private StyledText(String[] lines, int[][] runEnds, Style[][] runStyles) {
+        this.lines = lines;
+        this.runEnds = runEnds;
+        this.runStyles = runStyles;
+        long w = 0;
+        for (int i = 0; i < lines.length; i++) {
+            w += LINE_OVERHEAD + 2L * lines[i].length() + (long) RUN_OVERHEAD * runEnds[i].length;
+        }
+        this.weight = w;
+    }
+
+    static StyledText parse(String ansiString) {
+        var lines = new ArrayList<String>();
+        var allEnds = new ArrayList<int[]>();
+        var allStyles = new ArrayList<Style[]>();
+        var lineText = new StringBuilder();
+        var ends = new IntList();
+        var styles = new ArrayList<Style>();
+        var currentStyle = Style.EMPTY;
+
+        int i = 0;
+        while (i < ansiString.length()) {
+            char c = ansiString.charAt(i);
+            if (c == '\033' && i < ansiString.length() - 1 && ansiString.charAt(i + 1) == '[') {
+                int end = ansiString.indexOf('m', i + 2);
+                if (end < 0) {
+                    // Malformed sequence, output as text
+                    lineText.append(c);
+                    i++;
+                    continue;
+                }
+                closeRun(lineText, ends, styles, currentStyle);
+                currentStyle = sgr(currentStyle, ansiString.substring(i + 2, end));
+                i = end + 1;
+            } else if (c == '\n') {
+                closeRun(lineText, ends, styles, currentStyle);
+                lines.add(lineText.toString());
+                allEnds.add(ends.toArray());
+                allStyles.add(styles.toArray(new Style[0]));
+                lineText.setLength(0);
+                ends.clear();
+                styles.clear();
+                i++;
+            } else {
+                lineText.append(c);
+                i++;
+            }
+        }
+        closeRun(lineText, ends, styles, currentStyle);
+        if (!lineText.isEmpty()) {
+            lines.add(lineText.toString());
+            allEnds.add(ends.toArray());
+            allStyles.add(styles.toArray(new Style[0]));
+        }
+        return new StyledText(
+                lines.toArray(new String[0]),
+                allEnds.toArray(new int[0][]),
+                allStyles.toArray(new Style[0][]));
+    }
+
+    private static Style sgr(Style base, String params) {
+        if (SGR_CACHE.size() >= MAX_SGR_STYLES) {
+            SGR_CACHE.clear();
+        }
+        return SGR_CACHE.computeIfAbsent(new SgrKey(base, params), k -> AnsiTextParser.applySgr(k.base(), k.params()));
+    }
+
+    private static void closeRun(StringBuilder lineText, IntList ends, List<Style> styles, Style style) {
+        int start = ends.size() == 0 ? 0 : ends.get(ends.size() - 1);
+        if (lineText.length() > start) {
+            ends.add(lineText.length());
+            styles.add(style);
+        }
+    }
+
+    int lineCount() {
+        return lines.length;
+    }
+
+    /** Approximate heap size in bytes, used as the cache weight. */
+    long weight() {
+        return weight;
+    }
+
+    /**
+     * Returns at most {@code maxLines} lines starting at {@code firstLine}, which is
+     * clamped to the last line. Case-insensitive occurrences of {@code highlight}
+     * are restyled with {@link AnsiTextParser#MATCH_STYLE}.
+     */
+    Text text(int firstLine, int maxLines, String highlight) {
+        return text(firstLine, maxLines, highlight, null, null);
+    }
+
+    /**
+     * Like {@link #text(int, int, String)}, reusing the lines without a match
+     * that {@code rendered} kept from earlier windows of this text.
+     */
+    Text text(int firstLine, int maxLines, String highlight, RenderedLines rendered) {
+        return text(firstLine, maxLines, highlight, rendered, null);
+    }
+
+    /**
+     * Like {@link #text(int, int, String)}, with the span returned by
+     * {@code gutter} for each line index put in front of the line.
+     */
+    Text text(int firstLine, int maxLines, String highlight, IntFunction<Span> gutter) {
+        return text(firstLine, maxLines, highlight, null, gutter);
+    }
+
+    private Text text(int firstLine, int maxLines, String highlight, RenderedLines rendered, IntFunction<Span> gutter) {
+        if (lines.length == 0) {
+            return Text.from(List.of(Line.empty()));
+        }
+        int start = Math.max(0, Math.min(firstLine, lines.length - 1));
+        int end = (int) Math.min(lines.length, (long) start + maxLines);
+        var needle = ContentSearchIndex.lowerCase(highlight);
+        var out = new ArrayList<Line>(end - start);
+        for (int i = start; i < end; i++) {
+            if (gutter == null) {
+                out.add(line(i, needle, rendered));
+            } else {
+                var spans = new ArrayList<Span>();
+                spans.add(gutter.apply(i));
+                spans.addAll(buildSpans(i, needle));
+                out.add(Line.from(spans));
+            }
+        }
+        return Text.from(out);
+    }
+
+    private Line line(int idx, String needle, RenderedLines rendered) {
+        if (needle.isEmpty() || !ContentSearchIndex.lowerCase(lines[idx]).contains(needle)) {
+            return rendered != null ? rendered.get(this, idx) : buildLine(idx, "");
+        }
+        return buildLine(idx, needle);
+    }
+
+    private Line buildLine(int idx, String needle) {
+        return Line.from(List.copyOf(buildSpans(idx, needle)));
+    }
+
+    private List<Span> buildSpans(int idx, String needle) {
+        var text = lines[idx];
+        var ends = runEnds[idx];
+        var styles = runStyles[idx];
+        var spans = new ArrayList<Span>(ends.length);
+        if (needle.isEmpty()) {
+            int start = 0;
+            for (int r = 0; r < ends.length; r++) {
+                spans.add(Span.styled(text.substring(start, ends[r]), styles[r]));
+                start = ends[r];
+            }
+            return spans;
+        }
+        // Split runs at the boundaries of each match
+        var lower = ContentSearchIndex.lowerCase(text);
+        int matchStart = lower.indexOf(needle);
+        int pos = 0;
+        int r = 0;
+        while (pos < text.length() && r < ends.length) {
+            if (matchStart >= 0 && pos >= matchStart + needle.length()) {
+                matchStart = lower.indexOf(needle, matchStart + needle.length());
+                continue;
+            }
+            boolean inMatch = matchStart >= 0 && pos >= matchStart;
+            int end = ends[r];
+            if (inMatch) {
+                end = Math.min(end, matchStart + needle.length());
+            } else if (matchStart >= 0) {
+                end = Math.min(end, matchStart);
+            }
+            spans.add(Span.styled(text.substring(pos, end), inMatch ? AnsiTextParser.MATCH_STYLE : styles[r]));
+            pos = end;
+            if (pos == ends[r]) {
+                r++;
+            }
+        }
+        return spans;
+    }
+
+    /**
+     * Built lines of one text, held by its view. Line {@code i} lives in slot
+     * {@code i % capacity}, so a capacity of one window keeps the lines a
+     * scroll shares with the previous window and never holds more.
+     */
+    static final class RenderedLines {
+        private final Line[] lines;
+        private final int[] indices;
+        private StyledText source;
+
+        RenderedLines(int capacity) {
+            this.lines = new Line[capacity];
+            this.indices = new int[capacity];
+        }
+
+        Line get(StyledText text, int idx) {
+            if (text != source) {
+                source = text;
+                Arrays.fill(lines, null);
+                Arrays.fill(indices, -1);
+            }
+            int slot = idx % lines.length;
+            if (indices[slot] != idx) {
+                lines[slot] = text.buildLine(idx, "");
+                indices[slot] = idx;
+            }
+            return lines[slot];
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int v) {
+            if (size == values.length) values = Arrays.copyOf(values, size * 2);
+            values[size++] = v;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package io.roastedroot.w9s;
+
+import dev.tamboui.widgets.table.TableState;
+
+/**
+ * The rows of a long table that are actually built: at most
+ * {@link ViewLayout#MAX_VISIBLE_LINES} of them, around the row selected in the
+ * view's {@link TableState}. The window only moves when the selection leaves
+ * it, and then so that the selection lands at the edge it was moving towards,
+ * as it would in a table holding every row.
+ */
+final class TableWindow {
+
+    private final TableState selection;
+    // Selection within the window, with the window's own scroll offset
+    private TableState state = new TableState();
+    private int first;
+    private int end;
+
+    TableWindow(TableState selection) {
+        this.selection = selection;
+    }
+
+    /** Moves the window over a table of {@code rowCount} rows. */
+    void update(int rowCount) {
+        int size = Math.min(rowCount, ViewLayout.MAX_VISIBLE_LINES);
+        int selected = selection.selected() != null ? Math.min(selection.selected(), rowCount - 1) : 0;
+        int moved = first;
+        if (selected < first) {
+            moved = selected;
+        } else if (selected >= first + size) {
+            moved = selected - size + 1;
+        }
+        moved = Math.max(0, Math.min(moved, rowCount - size));
+        if (moved != first) {
+            first = moved;
+            state = new TableState();
+        }
+        end = first + size;
+        state.select(Math.max(0, selected - first));
+    }
+
+    /** First row of the window, by position in the table. */
+    int first() {
+        return first;
+    }
+
+    /** Row after the last row of the window. */
+    int end() {
+        return end;
+    }
+
+    /** State for the table of the window's rows. */
+    TableState state() {
+        return state;
+    }
+}
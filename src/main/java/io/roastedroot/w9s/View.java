@@ -5,12 +5,15 @@ import dev.tamboui.toolkit.event.EventResult;
 import dev.tamboui.tui.event.KeyEvent;
 
 public sealed interface View
-        permits SectionNavView,
+        permits LoadingView,
+                SectionNavView,
                 DetailView,
                 FunctionView,
                 DataView,
                 RunParamView,
                 RunOutputView,
+                ProfileView,
+                WasiTraceView,
                 MemoryView {
 
     EventResult handleKey(KeyEvent key, ViewContext ctx);
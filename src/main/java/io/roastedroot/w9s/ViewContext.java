@@ -12,8 +12,11 @@ public final class ViewContext {
     private final TableState sectionTableState;
     private final InstanceManager instanceManager;
     private final FunctionDataProvider functionData;
+    private final W9sOptions options;
     private ViewTransition pendingTransition;
     private RunOutputView pendingRunOutputView;
+    private ProfileView pendingProfileView;
+    private WasiTraceView pendingWasiTraceView;
 
     ViewContext(
             String filename,
@@ -21,13 +24,15 @@ public final class ViewContext {
             List<String[]> sectionRows,
             TableState sectionTableState,
             InstanceManager instanceManager,
-            FunctionDataProvider functionData) {
+            FunctionDataProvider functionData,
+            W9sOptions options) {
         this.filename = filename;
         this.module = module;
         this.sectionRows = sectionRows;
         this.sectionTableState = sectionTableState;
         this.instanceManager = instanceManager;
         this.functionData = functionData;
+        this.options = options;
     }
 
     public String filename() {
@@ -54,6 +59,10 @@ public final class ViewContext {
         return functionData;
     }
 
+    public W9sOptions options() {
+        return options;
+    }
+
     public void navigateTo(ViewTransition transition) {
         this.pendingTransition = transition;
     }
@@ -74,6 +83,26 @@ public final class ViewContext {
         return v;
     }
 
+    void setPendingProfileView(ProfileView view) {
+        this.pendingProfileView = view;
+    }
+
+    ProfileView consumePendingProfileView() {
+        var v = pendingProfileView;
+        pendingProfileView = null;
+        return v;
+    }
+
+    void setPendingWasiTraceView(WasiTraceView view) {
+        this.pendingWasiTraceView = view;
+    }
+
+    WasiTraceView consumePendingWasiTraceView() {
+        var v = pendingWasiTraceView;
+        pendingWasiTraceView = null;
+        return v;
+    }
+
     public int sectionIndex(String name) {
         for (int i = 0; i < sectionRows.size(); i++) {
             if (name.equals(sectionRows.get(i)[0])) {
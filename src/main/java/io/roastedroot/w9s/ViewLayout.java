@@ -9,16 +9,20 @@ import dev.tamboui.toolkit.elements.TableElement;
 final class ViewLayout {
 
     static final int PAGE_SIZE = 20;
+    /** Upper bound on the rows a content panel can show; extra rows are clipped. */
+    static final int MAX_VISIBLE_LINES = 120;
 
     private ViewLayout() {}
 
     static Element buildTitleBar(ViewContext ctx) {
+        var namesError = ctx.functionData() != null ? ctx.functionData().namesError() : null;
         return row(
                 text(" \u24CC").fg(Color.RED).bold().fit(),
                 text("\u2468").fg(Color.YELLOW).bold().fit(),
                 text("\u24C8").fg(Color.GREEN).bold().fit(),
                 text("  ").fit(),
-                text(ctx.filename()).cyan().fit())
+                text(ctx.filename()).cyan().fit(),
+                text(namesError != null ? "  \u26A0 " + namesError : "").fg(Color.YELLOW).fit())
                 .length(1);
     }
 
@@ -17,5 +17,9 @@ public sealed interface ViewTransition {
 
     record ToMemoryView() implements ViewTransition {}
 
+    record ToProfileView() implements ViewTransition {}
+
+    record ToWasiTraceView() implements ViewTransition {}
+
     record Quit() implements ViewTransition {}
 }
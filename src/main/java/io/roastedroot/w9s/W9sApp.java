@@ -1,6 +1,6 @@
 package io.roastedroot.w9s;
 
-import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.Parser;
 import com.dylibso.chicory.wasm.types.ExternalType;
 import com.dylibso.chicory.wasm.types.FunctionImport;
 import com.dylibso.chicory.wasm.types.ValType;
@@ -10,25 +10,44 @@ import dev.tamboui.toolkit.event.EventResult;
 import dev.tamboui.tui.TuiConfig;
 import dev.tamboui.tui.event.KeyEvent;
 import dev.tamboui.widgets.table.TableState;
+import java.nio.ByteBuffer;
 import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public final class W9sApp {
 
-    private final ViewContext ctx;
+    private ViewContext ctx;
     private View activeView;
     private DetailView detailView;
+    private final CompletableFuture<ViewContext> loading;
 
-    public W9sApp(String filename, WasmModule module, byte[] wasmBytes) {
-        var sectionRows = WasmUtils.buildSectionRows(module);
+    /**
+     * Opens the UI straight away on the section headers of {@code wasm} and parses
+     * the module in the background; the full views become available once parsing
+     * completes.
+     */
+    public W9sApp(String filename, ByteBuffer wasm, W9sOptions options) {
+        var scanned = WasmUtils.scanSectionRows(wasm);
         var tableState = new TableState();
         tableState.select(0);
-        var instanceManager = new InstanceManager(module);
-        var functionData = new FunctionDataProvider(module, wasmBytes);
-        this.ctx = new ViewContext(filename, module, sectionRows, tableState,
-                instanceManager, functionData);
+        this.ctx = new ViewContext(filename, null, scanned.rows(), tableState, null, null, options);
+        // Chicory parses from a stream into a heap copy, even when wasm is a mapped file
+        var input = new ByteBufferInputStream(wasm);
+        this.loading =
+                CompletableFuture.supplyAsync(() -> Parser.parse(input))
+                        .thenApply(
+                                module ->
+                                        new ViewContext(
+                                                filename,
+                                                module,
+                                                WasmUtils.buildSectionRows(module),
+                                                tableState,
+                                                new InstanceManager(module, options),
+                                                new FunctionDataProvider(module, wasm, options),
+                                                options));
         this.detailView = new DetailView();
-        this.activeView = new SectionNavView();
+        this.activeView = new LoadingView(input, wasm.limit(), scanned.ends(), loading);
     }
 
     public void run() throws Exception {
@@ -44,8 +63,12 @@ public final class W9sApp {
                             });
             runner.run(this::render);
         } finally {
-            ctx.instanceManager().close();
-            ctx.functionData().close();
+            // Quitting while still loading: keep the parse result from starting any work
+            if (!loading.cancel(true) && !loading.isCompletedExceptionally()) {
+                var loaded = loading.join();
+                loaded.instanceManager().close();
+                loaded.functionData().close();
+            }
         }
     }
 
@@ -59,10 +82,17 @@ public final class W9sApp {
     }
 
     private Element render() {
+        if (activeView instanceof LoadingView && loading.isDone() && !loading.isCompletedExceptionally()) {
+            ctx = loading.join();
+            activeView = new SectionNavView();
+        }
         return activeView.render(ctx);
     }
 
     private void processTransition(ViewTransition transition, ToolkitRunner runner) {
+        if (activeView instanceof FunctionView && !(transition instanceof ViewTransition.ToFunctionView)) {
+            ctx.functionData().cancelPendingWat(-1);
+        }
         switch (transition) {
             case ViewTransition.Quit q -> runner.quit();
             case ViewTransition.ToSectionNav n -> activeView = new SectionNavView();
@@ -72,7 +102,10 @@ public final class W9sApp {
                 detailView.detailTableState().select(at.detailIdx());
                 activeView = detailView;
             }
-            case ViewTransition.ToFunctionView f -> activeView = new FunctionView(f.funcIdx());
+            case ViewTransition.ToFunctionView f -> {
+                ctx.functionData().cancelPendingWat(f.funcIdx());
+                activeView = new FunctionView(f.funcIdx());
+            }
             case ViewTransition.ToDataView d -> activeView = new DataView(d.dataIdx());
             case ViewTransition.ToRunParamView r -> handleRunExport(r.exportName());
             case ViewTransition.ToRunOutputView r -> {
@@ -82,6 +115,18 @@ public final class W9sApp {
                 }
             }
             case ViewTransition.ToMemoryView m -> activeView = new MemoryView();
+            case ViewTransition.ToProfileView p -> {
+                var pending = ctx.consumePendingProfileView();
+                if (pending != null) {
+                    activeView = pending;
+                }
+            }
+            case ViewTransition.ToWasiTraceView w -> {
+                var pending = ctx.consumePendingWasiTraceView();
+                if (pending != null) {
+                    activeView = pending;
+                }
+            }
         }
     }
 
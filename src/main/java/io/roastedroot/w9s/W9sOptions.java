@@ -0,0 +1,22 @@
+package io.roastedroot.w9s;
+
+/** Settings chosen on the command line that tune how w9s loads and processes a module. */
+record W9sOptions(
+        boolean lazyWat,
+        int watWorkers,
+        int watQueueDepth,
+        long highlightCacheBytes,
+        int highlightWorkers,
+        long diskCacheBytes,
+        int benchWarmup,
+        int benchIterations,
+        ExecutionEngine engine,
+        int runTimeoutSeconds,
+        long outputLimitBytes,
+        boolean spillOutput,
+        int wasiTraceCalls) {
+
+    static W9sOptions defaults() {
+        return new W9sOptions(false, 2, 16, 64L * 1024 * 1024, 2, 512L * 1024 * 1024, 100, 1000, ExecutionEngine.INTERPRETER, 0, 8L * 1024 * 1024, false, 4096);
+    }
+}
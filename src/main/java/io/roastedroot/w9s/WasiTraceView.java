@@ -0,0 +1,113 @@
+package io.roastedroot.w9s;
+
+import static dev.tamboui.toolkit.Toolkit.*;
+import dev.tamboui.style.Color;
+import dev.tamboui.style.Overflow;
+import dev.tamboui.style.Style;
+import dev.tamboui.text.Line;
+import dev.tamboui.text.Span;
+import dev.tamboui.text.Text;
+import dev.tamboui.toolkit.element.Element;
+import dev.tamboui.toolkit.event.EventResult;
+import dev.tamboui.tui.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/** WASI calls of the last run: totals per syscall and a timeline of the most recent calls. */
+public final class WasiTraceView implements View {
+
+    private final RunOutputView runView;
+    private final String exportName;
+    private final List<WasiTracer.Stat> stats;
+    private final List<WasiTracer.Call> recent;
+    private final long callCount;
+    private int scrollOffset = 0;
+
+    // Nothing runs while this view is open, so the trace is copied once
+    WasiTraceView(RunOutputView runView, String exportName, WasiTracer tracer) {
+        this.runView = runView;
+        this.exportName = exportName;
+        this.stats = new ArrayList<>(tracer.stats());
+        this.stats.sort(Comparator.comparingLong(WasiTracer.Stat::totalNanos).reversed());
+        this.recent = tracer.recent();
+        this.callCount = tracer.callCount();
+    }
+
+    @Override
+    public EventResult handleKey(KeyEvent key, ViewContext ctx) {
+        if (key.isQuit()) { ctx.navigateTo(new ViewTransition.Quit()); return EventResult.HANDLED; }
+        if (key.isCancel() || key.isLeft()) {
+            ctx.setPendingRunOutputView(runView);
+            ctx.navigateTo(new ViewTransition.ToRunOutputView(exportName));
+            return EventResult.HANDLED;
+        }
+        int newOffset = ScrollHandler.handleKey(key, scrollOffset);
+        if (newOffset >= 0) { scrollOffset = newOffset; return EventResult.HANDLED; }
+        return EventResult.UNHANDLED;
+    }
+
+    @Override
+    public Element render(ViewContext ctx) {
+        var header = new ArrayList<Line>();
+        header.add(Line.from(List.of(
+                Span.styled("━━ Syscalls ━━", Style.EMPTY.fg(Color.CYAN).bold()))));
+        if (stats.isEmpty()) {
+            header.add(Line.from(List.of(Span.styled("  No WASI calls", Style.EMPTY.dim()))));
+        } else {
+            header.add(Line.from(List.of(Span.styled(
+                    String.format("  %-24s %9s %11s %11s %11s %12s %7s",
+                            "Syscall", "Calls", "Total", "Avg", "Max", "Bytes", "Errors"),
+                    Style.EMPTY.dim()))));
+        }
+        for (var s : stats) {
+            header.add(Line.from(List.of(
+                    Span.styled(String.format("  %-24s %9d", s.name(), s.calls()), Style.EMPTY),
+                    Span.styled(String.format(" %11s", ExportBenchmark.formatNanos(s.totalNanos())),
+                            Style.EMPTY.fg(Color.GREEN).bold()),
+                    Span.styled(String.format(" %11s %11s %12d",
+                            ExportBenchmark.formatNanos(s.avgNanos()),
+                            ExportBenchmark.formatNanos(s.maxNanos()), s.bytes()), Style.EMPTY),
+                    Span.styled(String.format(" %7d", s.errors()),
+                            s.errors() > 0 ? Style.EMPTY.fg(Color.YELLOW) : Style.EMPTY.dim()))));
+        }
+        header.add(Line.empty());
+        header.add(Line.from(List.of(
+                Span.styled("━━ Timeline ━━", Style.EMPTY.fg(Color.CYAN).bold()),
+                Span.styled("  last " + recent.size() + " of " + callCount + " calls", Style.EMPTY.dim()))));
+
+        // Only the visible window of the timeline is turned into lines
+        int total = header.size() + recent.size();
+        int start = Math.min(scrollOffset, Math.max(0, total - 1));
+        int end = Math.min(total, start + ViewLayout.MAX_VISIBLE_LINES);
+        var lines = new ArrayList<Line>(end - start);
+        for (int i = start; i < end; i++) {
+            lines.add(i < header.size() ? header.get(i) : timelineLine(recent.get(i - header.size())));
+        }
+
+        var helpContent = row(
+                text(" \u2191\u2193").cyan().fit(), text(" scroll  ").dim().fit(),
+                text("PgUp/Dn").cyan().fit(), text(" page  ").dim().fit(),
+                text("ESC/\u2190").cyan().fit(), text(" back").dim().fit());
+
+        var contentPanel = panel(richText(Text.from(lines)).overflow(Overflow.CLIP).fill())
+                .title("WASI trace: " + exportName)
+                .bottomTitle(stats.size() + " syscalls, " + callCount + " calls")
+                .rounded().borderColor(Color.GREEN).fill(1);
+        return ViewLayout.layout(ctx, contentPanel, helpContent);
+    }
+
+    private static Line timelineLine(WasiTracer.Call c) {
+        var spans = new ArrayList<Span>();
+        spans.add(Span.styled(String.format("  +%11s  ", ExportBenchmark.formatNanos(c.startNanos())), Style.EMPTY.dim()));
+        spans.add(Span.styled(String.format("%-24s", c.name()), Style.EMPTY));
+        spans.add(Span.styled(String.format(" %11s", ExportBenchmark.formatNanos(c.durationNanos())), Style.EMPTY.fg(Color.GREEN)));
+        if (c.bytes() > 0) {
+            spans.add(Span.styled("  " + c.bytes() + " B", Style.EMPTY.dim()));
+        }
+        if (c.errno() != 0) {
+            spans.add(Span.styled("  errno " + c.errno(), Style.EMPTY.fg(Color.YELLOW)));
+        }
+        return Line.from(spans);
+    }
+}
@@ -0,0 +1,164 @@
+package io.roastedroot.w9s;
+
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.Instance;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Wraps the WASI host functions to time every call. Totals are kept per
+ * syscall and the most recent calls in a ring buffer allocated up front, so
+ * tracing does not allocate while the guest runs. Calls come from the thread
+ * running the export while the UI reads snapshots.
+ */
+final class WasiTracer {
+
+    /** Totals for one syscall; times are in nanoseconds. */
+    record Stat(String name, long calls, long totalNanos, long maxNanos, long bytes, long errors) {
+        long avgNanos() {
+            return calls > 0 ? totalNanos / calls : 0;
+        }
+    }
+
+    /** One traced call; {@code startNanos} is relative to the last reset. */
+    record Call(String name, long startNanos, long durationNanos, long bytes, int errno) {}
+
+    private final List<String> names = new ArrayList<>();
+    private long[] calls = new long[0];
+    private long[] totalNanos = new long[0];
+    private long[] maxNanos = new long[0];
+    private long[] bytes = new long[0];
+    private long[] errors = new long[0];
+
+    // Ring of the most recent calls, as parallel arrays
+    private final int[] ringSyscall;
+    private final long[] ringStart;
+    private final long[] ringDuration;
+    private final long[] ringBytes;
+    private final int[] ringErrno;
+    private long written;
+    private long origin = System.nanoTime();
+
+    WasiTracer(int capacity) {
+        int size = Math.max(1, capacity);
+        ringSyscall = new int[size];
+        ringStart = new long[size];
+        ringDuration = new long[size];
+        ringBytes = new long[size];
+        ringErrno = new int[size];
+    }
+
+    /** Returns the functions wrapped so that each call is recorded. */
+    synchronized HostFunction[] wrap(HostFunction[] functions) {
+        var wrapped = new HostFunction[functions.length];
+        for (int i = 0; i < functions.length; i++) {
+            var f = functions[i];
+            int id = syscallId(f.name());
+            var handle = f.handle();
+            wrapped[i] = new HostFunction(f.module(), f.name(), f.type(), (instance, args) -> {
+                long start = System.nanoTime();
+                long[] result = null;
+                try {
+                    result = handle.apply(instance, args);
+                    return result;
+                } finally {
+                    // Also reached by proc_exit, which leaves by throwing
+                    long duration = System.nanoTime() - start;
+                    int errno = result != null && result.length > 0 ? (int) result[0] : 0;
+                    long moved = result != null && errno == 0 ? transferred(f.name(), instance, args) : 0;
+                    record(id, start, duration, moved, errno);
+                }
+            });
+        }
+        return wrapped;
+    }
+
+    /** Clears totals and the ring; call times are reported relative to now. */
+    synchronized void reset() {
+        Arrays.fill(calls, 0);
+        Arrays.fill(totalNanos, 0);
+        Arrays.fill(maxNanos, 0);
+        Arrays.fill(bytes, 0);
+        Arrays.fill(errors, 0);
+        written = 0;
+        origin = System.nanoTime();
+    }
+
+    /** Totals of the syscalls made since the last reset. */
+    synchronized List<Stat> stats() {
+        var result = new ArrayList<Stat>();
+        for (int i = 0; i < names.size(); i++) {
+            if (calls[i] > 0) {
+                result.add(new Stat(names.get(i), calls[i], totalNanos[i], maxNanos[i], bytes[i], errors[i]));
+            }
+        }
+        return result;
+    }
+
+    /** The calls still in the ring, oldest first. */
+    synchronized List<Call> recent() {
+        int size = (int) Math.min(written, ringSyscall.length);
+        var result = new ArrayList<Call>(size);
+        for (long n = written - size; n < written; n++) {
+            int slot = (int) (n % ringSyscall.length);
+            result.add(new Call(names.get(ringSyscall[slot]), ringStart[slot] - origin, ringDuration[slot],
+                    ringBytes[slot], ringErrno[slot]));
+        }
+        return result;
+    }
+
+    /** Total number of calls since the last reset, including those no longer in the ring. */
+    synchronized long callCount() {
+        return written;
+    }
+
+    int capacity() {
+        return ringSyscall.length;
+    }
+
+    private synchronized void record(int id, long start, long duration, long transferred, int errno) {
+        calls[id]++;
+        totalNanos[id] += duration;
+        maxNanos[id] = Math.max(maxNanos[id], duration);
+        bytes[id] += transferred;
+        if (errno != 0) {
+            errors[id]++;
+        }
+        int slot = (int) (written % ringSyscall.length);
+        ringSyscall[slot] = id;
+        ringStart[slot] = start;
+        ringDuration[slot] = duration;
+        ringBytes[slot] = transferred;
+        ringErrno[slot] = errno;
+        written++;
+    }
+
+    private int syscallId(String name) {
+        int id = names.indexOf(name);
+        if (id >= 0) {
+            return id;
+        }
+        names.add(name);
+        int size = names.size();
+        calls = Arrays.copyOf(calls, size);
+        totalNanos = Arrays.copyOf(totalNanos, size);
+        maxNanos = Arrays.copyOf(maxNanos, size);
+        bytes = Arrays.copyOf(bytes, size);
+        errors = Arrays.copyOf(errors, size);
+        return size - 1;
+    }
+
+    /**
+     * Bytes moved by a successful call: what the guest was told was read or
+     * written for the fd I/O calls, the buffer length for {@code random_get}.
+     */
+    private static long transferred(String name, Instance instance, long[] args) {
+        return switch (name) {
+            case "fd_write", "fd_read", "fd_pwrite", "fd_pread" ->
+                    Integer.toUnsignedLong(instance.memory().readInt((int) args[args.length - 1]));
+            case "random_get" -> args[1];
+            default -> 0;
+        };
+    }
+}
@@ -10,10 +10,8 @@ import com.dylibso.chicory.wasi.WasiExitException;
 import com.dylibso.chicory.wasi.WasiOptions;
 import com.dylibso.chicory.wasi.WasiPreview1;
 import com.dylibso.chicory.wasm.WasmModule;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
-import java.io.IOException;
-import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
 
@@ -30,46 +28,57 @@ public final class Wasm2Wat {
     private static final WasmModule MODULE = WasmToolsModule.load();
 
     public static String print(byte[] wasmBytes) {
-        try (var stdinStream = new ByteArrayInputStream(wasmBytes);
-                var stdoutStream = new ByteArrayOutputStream();
-                var stderrStream = new ByteArrayOutputStream()) {
-
-            var wasiOpts =
-                    WasiOptions.builder()
-                            .withStdin(stdinStream)
-                            .withStdout(stdoutStream)
-                            .withStderr(stderrStream)
-                            .withArguments(List.of("wasm-tools", "print", "-"))
-                            .build();
+        return print(ByteBuffer.wrap(wasmBytes));
+    }
 
-            try (var wasi =
-                    WasiPreview1.builder()
-                            .withLogger(logger)
-                            .withOptions(wasiOpts)
-                            .build()) {
-                var imports =
-                        ImportValues.builder()
-                                .addFunction(wasi.toHostFunctions())
-                                .build();
+    /** Prints a module without copying it, so mapped modules stay off the heap. */
+    public static String print(ByteBuffer wasm) {
+        return print(wasm, new ByteArrayOutputStream(), new ByteArrayOutputStream());
+    }
 
-                Instance.builder(MODULE)
-                        .withMachineFactory(WasmToolsModule::create)
-                        .withMemoryFactory(ByteArrayMemory::new)
-                        .withImportValues(imports)
+    /**
+     * Prints a module into caller-owned output buffers. The buffers are reset first,
+     * so a long-lived worker can reuse them across calls.
+     */
+    static String print(
+            ByteBuffer wasm,
+            ByteArrayOutputStream stdoutStream,
+            ByteArrayOutputStream stderrStream) {
+        stdoutStream.reset();
+        stderrStream.reset();
+        var wasiOpts =
+                WasiOptions.builder()
+                        .withStdin(new ByteBufferInputStream(wasm))
+                        .withStdout(stdoutStream)
+                        .withStderr(stderrStream)
+                        .withArguments(List.of("wasm-tools", "print", "-"))
                         .build();
-            } catch (WasiExitException e) {
-                if (e.exitCode() != 0 || stdoutStream.size() <= 0) {
-                    throw new RuntimeException(
-                            "wasm-tools print failed: "
-                                    + stdoutStream.toString(StandardCharsets.UTF_8)
-                                    + stderrStream.toString(StandardCharsets.UTF_8),
-                            e);
-                }
-            }
 
-            return stdoutStream.toString(StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new UncheckedIOException(e);
+        try (var wasi =
+                WasiPreview1.builder()
+                        .withLogger(logger)
+                        .withOptions(wasiOpts)
+                        .build()) {
+            var imports =
+                    ImportValues.builder()
+                            .addFunction(wasi.toHostFunctions())
+                            .build();
+
+            Instance.builder(MODULE)
+                    .withMachineFactory(WasmToolsModule::create)
+                    .withMemoryFactory(ByteArrayMemory::new)
+                    .withImportValues(imports)
+                    .build();
+        } catch (WasiExitException e) {
+            if (e.exitCode() != 0 || stdoutStream.size() <= 0) {
+                throw new RuntimeException(
+                        "wasm-tools print failed: "
+                                + stdoutStream.toString(StandardCharsets.UTF_8)
+                                + stderrStream.toString(StandardCharsets.UTF_8),
+                        e);
+            }
         }
+
+        return stdoutStream.toString(StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,148 @@
+package io.roastedroot.w9s;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * A bounded pool of wasm-tools workers. Workers are started and warmed up on
+ * background threads when the pool is created, and keep their output buffers
+ * between jobs. A full queue drops its oldest pending job, which is usually a
+ * prefetch the user has already navigated away from.
+ */
+final class Wasm2WatPool implements AutoCloseable {
+
+    // smallest valid module: magic + version
+    private static final byte[] EMPTY_MODULE = {0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00};
+    // output buffers larger than this are not kept by idle workers
+    private static final int MAX_RETAINED_BUFFER = 8 * 1024 * 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final ThreadLocal<ByteArrayOutputStream[]> buffers =
+            ThreadLocal.withInitial(
+                    () -> new ByteArrayOutputStream[] {
+                        new ByteArrayOutputStream(), new ByteArrayOutputStream()
+                    });
+
+    Wasm2WatPool(int workers, int queueDepth) {
+        var threadCount = new AtomicInteger();
+        this.executor =
+                new ThreadPoolExecutor(
+                        workers,
+                        workers,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new ArrayBlockingQueue<>(Math.max(1, queueDepth)),
+                        r -> {
+                            var t = new Thread(r, "w9s-wasm-tools-" + threadCount.incrementAndGet());
+                            t.setDaemon(true);
+                            return t;
+                        },
+                        Wasm2WatPool::dropOldest);
+        executor.prestartAllCoreThreads();
+        for (int i = 0; i < workers; i++) {
+            print(() -> ByteBuffer.wrap(EMPTY_MODULE), UnaryOperator.identity());
+        }
+    }
+
+    /**
+     * Schedules a disassembly. The module is built and the WAT post-processed on the
+     * worker thread. Cancelling the returned future removes a queued job, or
+     * interrupts it if it is already running.
+     */
+    CompletableFuture<String> print(Supplier<ByteBuffer> module, UnaryOperator<String> postProcess) {
+        var job = new Job(module, postProcess);
+        job.result.whenComplete(
+                (r, e) -> {
+                    if (job.result.isCancelled()) {
+                        job.cancel();
+                    }
+                });
+        try {
+            executor.execute(job);
+        } catch (RejectedExecutionException e) {
+            job.result.completeExceptionally(e);
+        }
+        return job.result;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    private static void dropOldest(Runnable r, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            throw new RejectedExecutionException("wasm-tools pool is shut down");
+        }
+        var oldest = executor.getQueue().poll();
+        if (oldest instanceof Job job) {
+            job.result.cancel(false);
+        }
+        executor.execute(r);
+    }
+
+    private final class Job implements Runnable {
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLED = 3;
+
+        private final Supplier<ByteBuffer> module;
+        private final UnaryOperator<String> postProcess;
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile Thread runner;
+
+        Job(Supplier<ByteBuffer> module, UnaryOperator<String> postProcess) {
+            this.module = module;
+            this.postProcess = postProcess;
+        }
+
+        @Override
+        public void run() {
+            runner = Thread.currentThread();
+            if (!state.compareAndSet(PENDING, RUNNING)) {
+                runner = null;
+                return;
+            }
+            var out = buffers.get();
+            try {
+                result.complete(postProcess.apply(Wasm2Wat.print(module.get(), out[0], out[1])));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                synchronized (this) {
+                    if (!state.compareAndSet(RUNNING, DONE)) {
+                        // Cancelled while running: drop the interrupt before the next job
+                        Thread.interrupted();
+                    }
+                    runner = null;
+                }
+                if (out[0].size() > MAX_RETAINED_BUFFER || out[1].size() > MAX_RETAINED_BUFFER) {
+                    buffers.remove();
+                }
+            }
+        }
+
+        /** Removes the job if it is queued, or interrupts the worker only while this job still runs on it. */
+        void cancel() {
+            if (state.compareAndSet(PENDING, CANCELLED)) {
+                executor.remove(this);
+                return;
+            }
+            synchronized (this) {
+                if (state.compareAndSet(RUNNING, CANCELLED)) {
+                    runner.interrupt();
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,24 @@
 package io.roastedroot.w9s;
 
 import com.dylibso.chicory.wasm.WasmModule;
+import com.dylibso.chicory.wasm.types.ExternalType;
+import com.dylibso.chicory.wasm.types.OpCode;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 public final class WasmUtils {
 
+    // body size 2: no locals, end
+    static final byte[] EMPTY_FUNCTION_BODY = {0x02, 0x00, 0x0b};
+
     private WasmUtils() {}
 
     static List<String[]> buildSectionRows(WasmModule module) {
@@ -61,61 +73,171 @@ public final class WasmUtils {
         return rows;
     }
 
-    static String formatHex(byte[] data) {
-        var sb = new StringBuilder();
-        for (int i = 0; i < data.length; i += 16) {
-            sb.append(String.format("%08x  ", i));
-            int lineLen = Math.min(16, data.length - i);
-            for (int j = 0; j < 16; j++) {
-                if (j < lineLen) {
-                    sb.append(String.format("%02x ", data[i + j] & 0xFF));
-                } else {
-                    sb.append("   ");
-                }
-                if (j == 7) {
-                    sb.append(" ");
+    /** Section rows scanned from headers, with the end offset of each section or -1. */
+    record ScannedSections(List<String[]> rows, int[] ends) {}
+
+    /**
+     * Builds the same rows as {@link #buildSectionRows} from the section headers alone,
+     * without parsing the module.
+     */
+    static ScannedSections scanSectionRows(ByteBuffer wasm) {
+        var counts = new String[12];
+        var ends = new int[12];
+        Arrays.fill(ends, -1);
+        try {
+            int length = wasm.limit();
+            int pos = 8; // skip magic (4 bytes) + version (4 bytes)
+            while (pos < length) {
+                int sectionId = wasm.get(pos++) & 0xFF;
+                int sectionSize = readLEB128(wasm, pos);
+                pos += leb128Size(wasm, pos);
+                if (sectionId >= 1 && sectionId <= 11 && sectionSize > 0) {
+                    // every non-custom section but start begins with a vector count;
+                    // start holds a function index
+                    int value = readLEB128(wasm, pos);
+                    counts[sectionId] = sectionId == 8 ? "function #" + value : String.valueOf(value);
+                    ends[sectionId] = pos + sectionSize;
                 }
+                pos += sectionSize;
             }
-            sb.append(" |");
-            for (int j = 0; j < lineLen; j++) {
-                int b = data[i + j] & 0xFF;
-                sb.append(b >= 0x20 && b < 0x7f ? (char) b : '.');
+        } catch (RuntimeException e) {
+            // Keep the headers scanned so far
+        }
+        var rows = new ArrayList<String[]>();
+        var rowEnds = new ArrayList<Integer>();
+        addScannedRow(rows, rowEnds, "Types", counts, ends, 1, true);
+        addScannedRow(rows, rowEnds, "Imports", counts, ends, 2, true);
+        addScannedRow(rows, rowEnds, "Functions", counts, ends, 3, true);
+        addScannedRow(rows, rowEnds, "Tables", counts, ends, 4, true);
+        addScannedRow(rows, rowEnds, "Memories", counts, ends, 5, false);
+        addScannedRow(rows, rowEnds, "Globals", counts, ends, 6, true);
+        addScannedRow(rows, rowEnds, "Exports", counts, ends, 7, true);
+        addScannedRow(rows, rowEnds, "Start", counts, ends, 8, false);
+        addScannedRow(rows, rowEnds, "Elements", counts, ends, 9, true);
+        addScannedRow(rows, rowEnds, "Code", counts, ends, 10, true);
+        addScannedRow(rows, rowEnds, "Data", counts, ends, 11, true);
+        return new ScannedSections(rows, rowEnds.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    private static void addScannedRow(
+            List<String[]> rows,
+            List<Integer> rowEnds,
+            String name,
+            String[] counts,
+            int[] ends,
+            int id,
+            boolean always) {
+        if (counts[id] != null || always) {
+            rows.add(new String[] {name, counts[id] != null ? counts[id] : "0"});
+            rowEnds.add(ends[id]);
+        }
+    }
+
+    /** Counts the direct {@code call} instructions targeting each local function. */
+    static int[] staticCallCounts(WasmModule module) {
+        int importedFuncs = module.importSection().count(ExternalType.FUNCTION);
+        var cs = module.codeSection();
+        var counts = new int[cs.functionBodyCount()];
+        for (int i = 0; i < cs.functionBodyCount(); i++) {
+            for (var ins : cs.getFunctionBody(i).instructions()) {
+                if (ins.opcode() == OpCode.CALL) {
+                    int target = (int) ins.operand(0) - importedFuncs;
+                    if (target >= 0 && target < counts.length) {
+                        counts[target]++;
+                    }
+                }
             }
-            sb.append("|\n");
+        }
+        return counts;
+    }
+
+    static String formatHex(byte[] data) {
+        return formatHex(ByteBuffer.wrap(data));
+    }
+
+    static String formatHex(ByteBuffer data) {
+        var sb = new StringBuilder();
+        int length = data.limit();
+        for (int i = 0; i < length; i += HexRenderer.BYTES_PER_ROW) {
+            HexRenderer.appendRow(sb, data, i, length);
+            sb.append('\n');
         }
         return sb.toString();
     }
 
     static List<byte[]> extractFunctionBodies(byte[] wasmBytes) {
-        try {
-            int pos = 8; // skip magic (4 bytes) + version (4 bytes)
-            while (pos < wasmBytes.length) {
-                int sectionId = wasmBytes[pos++] & 0xFF;
-                int sectionSize = readLEB128(wasmBytes, pos);
-                int sizeLen = leb128Size(wasmBytes, pos);
-                pos += sizeLen;
-
-                if (sectionId == 10) { // code section
-                    var bodies = new ArrayList<byte[]>();
-                    int count = readLEB128(wasmBytes, pos);
-                    pos += leb128Size(wasmBytes, pos);
-
-                    for (int i = 0; i < count; i++) {
-                        int bodySize = readLEB128(wasmBytes, pos);
-                        int bodySizeLen = leb128Size(wasmBytes, pos);
-                        pos += bodySizeLen;
-                        bodies.add(Arrays.copyOfRange(wasmBytes, pos, pos + bodySize));
-                        pos += bodySize;
+        var index = CodeSectionIndex.scan(wasmBytes);
+        var bodies = new ArrayList<byte[]>(index.bodyCount());
+        for (int i = 0; i < index.bodyCount(); i++) {
+            int offset = index.bodyOffsets()[i];
+            bodies.add(Arrays.copyOfRange(wasmBytes, offset, offset + index.bodyLengths()[i]));
+        }
+        return bodies;
+    }
+
+    /**
+     * Builds a module that disassembles to the same WAT as the original for one
+     * function. Every other body is replaced by an empty stub so function indices,
+     * types and names are preserved; data and non-name custom sections are dropped.
+     */
+    static byte[] buildFunctionModule(ByteBuffer wasm, CodeSectionIndex index, int localFuncIdx) {
+        var out = new ByteArrayOutputStream();
+        copyRange(out, wasm, 0, 8);
+        int length = wasm.limit();
+        int pos = 8;
+        while (pos < length) {
+            int sectionStart = pos;
+            int sectionId = wasm.get(pos++) & 0xFF;
+            int sectionSize = readLEB128(wasm, pos);
+            pos += leb128Size(wasm, pos);
+            int sectionEnd = pos + sectionSize;
+
+            if (sectionId == 10) { // code section
+                int count = index.bodyCount();
+                int bodyLen = index.bodyLengths()[localFuncIdx];
+                int payloadSize = leb128Length(count)
+                        + (count - 1) * EMPTY_FUNCTION_BODY.length
+                        + leb128Length(bodyLen) + bodyLen;
+                out.write(10);
+                writeLEB128(out, payloadSize);
+                writeLEB128(out, count);
+                for (int i = 0; i < count; i++) {
+                    if (i == localFuncIdx) {
+                        writeLEB128(out, bodyLen);
+                        copyRange(out, wasm, index.bodyOffsets()[i], bodyLen);
+                    } else {
+                        out.write(EMPTY_FUNCTION_BODY, 0, EMPTY_FUNCTION_BODY.length);
                     }
-                    return bodies;
-                } else {
-                    pos += sectionSize;
                 }
+            } else if (sectionId == 0) { // custom section: keep only "name"
+                int nameLen = readLEB128(wasm, pos);
+                var name = new byte[nameLen];
+                wasm.get(pos + leb128Size(wasm, pos), name);
+                if ("name".equals(new String(name, StandardCharsets.UTF_8))) {
+                    copyRange(out, wasm, sectionStart, sectionEnd - sectionStart);
+                }
+            } else if (sectionId != 11 && sectionId != 12) { // drop data and data count
+                copyRange(out, wasm, sectionStart, sectionEnd - sectionStart);
             }
-        } catch (Exception e) {
-            // Fall through to return empty list
+            pos = sectionEnd;
+        }
+        return out.toByteArray();
+    }
+
+    static void copyRange(ByteArrayOutputStream out, ByteBuffer src, int offset, int length) {
+        var chunk = new byte[length];
+        src.get(offset, chunk);
+        out.write(chunk, 0, length);
+    }
+
+    /**
+     * Maps a file read-only into memory. The mapping stays valid after the channel
+     * is closed and is backed by the page cache instead of the Java heap.
+     */
+    static ByteBuffer mapFile(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
         }
-        return List.of();
     }
 
     static int readLEB128(byte[] data, int offset) {
@@ -133,6 +255,21 @@ public final class WasmUtils {
         return result;
     }
 
+    static int readLEB128(ByteBuffer data, int offset) {
+        int result = 0;
+        int shift = 0;
+        int pos = offset;
+        while (true) {
+            int b = data.get(pos++) & 0xFF;
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+            shift += 7;
+        }
+        return result;
+    }
+
     static int leb128Size(byte[] data, int offset) {
         int pos = offset;
         while ((data[pos++] & 0x80) != 0) {
@@ -141,7 +278,47 @@ public final class WasmUtils {
         return pos - offset;
     }
 
+    static int leb128Size(ByteBuffer data, int offset) {
+        int pos = offset;
+        while ((data.get(pos++) & 0x80) != 0) {
+            // advance past continuation bytes
+        }
+        return pos - offset;
+    }
+
+    static void writeLEB128(ByteArrayOutputStream out, int value) {
+        int remaining = value;
+        do {
+            int b = remaining & 0x7F;
+            remaining >>>= 7;
+            if (remaining != 0) {
+                b |= 0x80;
+            }
+            out.write(b);
+        } while (remaining != 0);
+    }
+
+    static int leb128Length(int value) {
+        int len = 1;
+        int remaining = value >>> 7;
+        while (remaining != 0) {
+            len++;
+            remaining >>>= 7;
+        }
+        return len;
+    }
+
     static List<String> extractFunctions(String wat) {
+        return extractFunctions(wat, Integer.MAX_VALUE);
+    }
+
+    /** Returns the WAT of the function at {@code localFuncIdx}, or null if there is none. */
+    static String extractFunction(String wat, int localFuncIdx) {
+        var functions = extractFunctions(wat, localFuncIdx + 1);
+        return localFuncIdx < functions.size() ? functions.get(localFuncIdx) : null;
+    }
+
+    private static List<String> extractFunctions(String wat, int limit) {
         var functions = new ArrayList<String>();
         int depth = 0;
         int funcStart = -1;
@@ -205,6 +382,9 @@ public final class WasmUtils {
                 if (depth == 2 && funcStart >= 0) {
                     functions.add(wat.substring(funcStart, i + 1));
                     funcStart = -1;
+                    if (functions.size() >= limit) {
+                        return functions;
+                    }
                 }
                 depth--;
             }
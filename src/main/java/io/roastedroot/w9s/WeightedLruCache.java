@@ -0,0 +1,85 @@
+package io.roastedroot.w9s;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+
+/**
+ * A least-recently-used cache bounded by the total weight of its values rather
+ * than by entry count. A value heavier than the whole budget is not cached.
+ * All methods are synchronized.
+ */
+final class WeightedLruCache<K, V> {
+
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final LinkedHashMap<K, V> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    WeightedLruCache(long maxWeight, ToLongFunction<V> weigher) {
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+    }
+
+    synchronized V get(K key) {
+        var value = entries.get(key);
+        if (value != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return value;
+    }
+
+    /** Like {@link #get}, but not counted as a hit or miss; for repeated reads of the same key. */
+    synchronized V peek(K key) {
+        return entries.get(key);
+    }
+
+    /** Whether {@code key} is cached, without counting a lookup or making it recently used. */
+    synchronized boolean contains(K key) {
+        return entries.containsKey(key);
+    }
+
+    synchronized void put(K key, V value) {
+        long w = weigher.applyAsLong(value);
+        var previous = entries.remove(key);
+        if (previous != null) {
+            weight -= weigher.applyAsLong(previous);
+        }
+        if (w > maxWeight) {
+            return;
+        }
+        entries.put(key, value);
+        weight += w;
+        var it = entries.entrySet().iterator();
+        while (weight > maxWeight && it.hasNext()) {
+            var eldest = it.next();
+            weight -= weigher.applyAsLong(eldest.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(entries.size(), weight, maxWeight, hits, misses, evictions);
+    }
+
+    record Stats(int size, long weight, long maxWeight, long hits, long misses, long evictions) {
+        /** One line for the status bar, e.g. "12 cached, 3.2/64 MB, 80% hits, 2 evicted". */
+        String summary() {
+            long lookups = hits + misses;
+            return String.format(Locale.ROOT, "%d cached, %.1f/%d MB, %d%% hits, %d evicted",
+                    size, weight / (1024.0 * 1024.0), maxWeight / (1024 * 1024),
+                    lookups == 0 ? 0 : hits * 100 / lookups, evictions);
+        }
+    }
+}
@@ -48,3 +48,43 @@ pub extern "C" fn alloc(len: usize) -> *const u8 {
 pub unsafe extern "C" fn dealloc(ptr: &mut u8, len: usize) {
     let _ = Vec::from_raw_parts(ptr, 0, len);
 }
+
+/// Demangles a batch of names in one call.
+///
+/// The input is a sequence of `u32` little-endian length-prefixed UTF-8 names.
+/// The output holds one entry per input name, in the same order: a `u32` length
+/// followed by the demangled bytes, or `u32::MAX` with no bytes when the name is
+/// not a Rust symbol. The output is allocated here and must be released with
+/// `dealloc(ptr, *out_len)`.
+#[no_mangle]
+pub unsafe extern "C" fn rustc_demangle_batch(
+    input: *const u8,
+    input_len: usize,
+    out_len: *mut usize,
+) -> *mut u8 {
+    let input = std::slice::from_raw_parts(input, input_len);
+    let mut out = Vec::with_capacity(input_len);
+    let mut pos = 0;
+    while pos + 4 <= input_len {
+        let mut len_bytes = [0u8; 4];
+        len_bytes.copy_from_slice(&input[pos..pos + 4]);
+        let len = u32::from_le_bytes(len_bytes) as usize;
+        pos += 4;
+        let end = (pos + len).min(input_len);
+        let demangled = std::str::from_utf8(&input[pos..end])
+            .ok()
+            .and_then(|s| rustc_demangle::try_demangle(s).ok())
+            .map(|d| format!("{:#}", d));
+        pos = end;
+        match demangled {
+            Some(d) => {
+                out.extend_from_slice(&(d.len() as u32).to_le_bytes());
+                out.extend_from_slice(d.as_bytes());
+            }
+            None => out.extend_from_slice(&u32::MAX.to_le_bytes()),
+        }
+    }
+    let out = out.into_boxed_slice();
+    *out_len = out.len();
+    Box::into_raw(out) as *mut u8
+}
@@ -2,18 +2,57 @@ package io.roastedroot.w9s;
 
 import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import com.dylibso.chicory.runtime.ByteArrayMemory;
+import com.dylibso.chicory.runtime.ExportFunction;
+import com.dylibso.chicory.runtime.HostFunction;
+import com.dylibso.chicory.runtime.Instance;
 import com.dylibso.chicory.wasm.Parser;
+import com.dylibso.chicory.wasm.types.FunctionType;
+import com.dylibso.chicory.wasm.types.MemoryLimits;
 import com.dylibso.chicory.wasm.types.ValType;
+import dev.tamboui.style.Color;
+import dev.tamboui.style.Style;
+import dev.tamboui.text.Span;
+import dev.tamboui.widgets.table.TableState;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import picocli.CommandLine;
 
 class WasmParsingTest {
 
@@ -83,6 +122,28 @@ class WasmParsingTest {
         }
     }
 
+    @Test
+    void codeSectionIndexSlicesMatchCopiedBodies() {
+        var bodies = WasmUtils.extractFunctionBodies(wasmBytes);
+        var wasm = ByteBuffer.wrap(wasmBytes);
+        var index = CodeSectionIndex.scan(wasm);
+        assertEquals(bodies.size(), index.bodyCount());
+        for (int i = 0; i < bodies.size(); i++) {
+            var slice = index.body(wasm, i);
+            var copy = new byte[slice.remaining()];
+            slice.get(copy);
+            assertArrayEquals(bodies.get(i), copy);
+        }
+    }
+
+    @Test
+    void byteBufferInputStreamParsesModule() {
+        var wasm = ByteBuffer.wrap(wasmBytes);
+        var module = Parser.parse(new ByteBufferInputStream(wasm));
+        assertEquals(CodeSectionIndex.scan(wasm).bodyCount(), module.codeSection().functionBodyCount());
+        assertEquals(0, wasm.position(), "Streaming must not move the source buffer");
+    }
+
     @Test
     void extractFunctionBodiesEmptyWasm() {
         assertEquals(0, WasmUtils.extractFunctionBodies(new byte[0]).size());
@@ -138,6 +199,29 @@ class WasmParsingTest {
         assertTrue(lines[1].startsWith("00000010"));
     }
 
+    // --- Virtualized hex rendering ---
+
+    @Test
+    void hexRendererWindowMatchesFormatHex() {
+        var data = new byte[100];
+        for (int i = 0; i < data.length; i++) data[i] = (byte) (i * 7);
+        var full = WasmUtils.formatHex(data).split("\n");
+        var window = new HexRenderer().render(ByteBuffer.wrap(data), 2, 3).split("\n");
+        assertEquals(3, window.length);
+        assertEquals(full[2], window[0]);
+        assertEquals(full[4], window[2]);
+    }
+
+    @Test
+    void hexRendererClampsPastEnd() {
+        var data = new byte[40];
+        assertEquals(3, HexRenderer.rowCount(data.length));
+        assertEquals(2, HexRenderer.clampRow(Integer.MAX_VALUE, data.length));
+        var window = new HexRenderer().render(ByteBuffer.wrap(data), Integer.MAX_VALUE, 10);
+        assertTrue(window.startsWith("00000020  "));
+        assertEquals(1, window.split("\n").length);
+    }
+
     // --- WAT formatting ---
 
     @Test
@@ -185,6 +269,155 @@ class WasmParsingTest {
         }
     }
 
+    @Test
+    void singleFunctionModuleDisassemblesLikeFullModule() {
+        var functions = WasmUtils.extractFunctions(Wasm2Wat.print(wasmBytes));
+        var index = CodeSectionIndex.scan(wasmBytes);
+        assertEquals(functions.size(), index.bodyCount());
+        for (int i = 0; i < index.bodyCount(); i++) {
+            var single = WasmUtils.buildFunctionModule(ByteBuffer.wrap(wasmBytes), index, i);
+            assertEquals(functions.get(i), WasmUtils.extractFunction(Wasm2Wat.print(single), i));
+        }
+    }
+
+    @Test
+    void isolatedFunctionModulesDisassembleLikeFullModule() {
+        var fixture = List.of(wasmBytes, namedModule(4, i -> switch (i) {
+            case 1 -> new int[] {1}; // recursive
+            case 2 -> new int[] {0}; // calls the first local function, whose index it would borrow
+            case 3 -> new int[] {1, 3};
+            default -> new int[0];
+        }), namedModule(4, i -> switch (i) {
+            case 2 -> new int[] {0, 2}; // unnamed, so its calls to itself stay numbered
+            case 3 -> new int[] {0, 1, 3}; // named, after an unnamed function it calls
+            default -> new int[0];
+        }, i -> i == 0 || i == 2 ? null : "f" + i));
+        for (var bytes : fixture) {
+            var functions = WasmUtils.extractFunctions(Wasm2Wat.print(bytes));
+            var index = CodeSectionIndex.scan(bytes);
+            var module = Parser.parse(new ByteArrayInputStream(bytes));
+            var builder = new FunctionModuleBuilder(module, ByteBuffer.wrap(bytes), index);
+            for (int i = 0; i < index.bodyCount(); i++) {
+                assertEquals(functions.get(i), builder.extract(Wasm2Wat.print(builder.build(i)), i));
+            }
+        }
+    }
+
+    @Test
+    void isolatedFunctionModuleSizeDoesNotGrowWithFunctionCount() {
+        int count = 100_000;
+        var bytes = namedModule(count, i -> i == count - 1 ? new int[] {i, 5} : new int[0]);
+        var index = CodeSectionIndex.scan(bytes);
+        var builder = new FunctionModuleBuilder(
+                Parser.parse(new ByteArrayInputStream(bytes)), ByteBuffer.wrap(bytes), index);
+        for (int i : new int[] {1, count / 2, count - 1}) {
+            var single = builder.build(i);
+            assertTrue(single.length < 256, "module for function " + i + " is " + single.length + " bytes");
+            var wat = builder.extract(Wasm2Wat.print(single), i);
+            assertTrue(wat.startsWith("(func $f" + i + " (;" + i + ";)"), wat);
+        }
+        var last = builder.extract(Wasm2Wat.print(builder.build(count - 1)), count - 1);
+        assertTrue(last.contains("call $f" + (count - 1)) && last.contains("call $f5"), last);
+    }
+
+    /** A module of {@code count} functions named f0, f1, ... each calling the functions {@code calls} returns. */
+    private static byte[] namedModule(int count, IntFunction<int[]> calls) {
+        return namedModule(count, calls, i -> "f" + i);
+    }
+
+    // Functions for which {@code name} returns null are left unnamed
+    private static byte[] namedModule(int count, IntFunction<int[]> calls, IntFunction<String> name) {
+        var out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00});
+        writeSection(out, 1, new byte[] {0x01, 0x60, 0x00, 0x00});
+        var functions = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(functions, count);
+        functions.writeBytes(new byte[count]);
+        writeSection(out, 3, functions.toByteArray());
+        var code = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(code, count);
+        for (int i = 0; i < count; i++) {
+            var body = new ByteArrayOutputStream();
+            body.write(0x00);
+            for (int callee : calls.apply(i)) {
+                body.write(0x10);
+                WasmUtils.writeLEB128(body, callee);
+            }
+            body.write(0x0b);
+            WasmUtils.writeLEB128(code, body.size());
+            code.writeBytes(body.toByteArray());
+        }
+        writeSection(out, 10, code.toByteArray());
+        var entries = new ByteArrayOutputStream();
+        int named = 0;
+        for (int i = 0; i < count; i++) {
+            var value = name.apply(i);
+            if (value == null) {
+                continue;
+            }
+            var bytes = value.getBytes(StandardCharsets.UTF_8);
+            WasmUtils.writeLEB128(entries, i);
+            WasmUtils.writeLEB128(entries, bytes.length);
+            entries.writeBytes(bytes);
+            named++;
+        }
+        var map = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(map, named);
+        map.writeBytes(entries.toByteArray());
+        var names = new ByteArrayOutputStream();
+        WasmUtils.writeLEB128(names, 4);
+        names.writeBytes("name".getBytes(StandardCharsets.UTF_8));
+        names.write(1);
+        WasmUtils.writeLEB128(names, map.size());
+        names.writeBytes(map.toByteArray());
+        writeSection(out, 0, names.toByteArray());
+        return out.toByteArray();
+    }
+
+    private static void writeSection(ByteArrayOutputStream out, int id, byte[] payload) {
+        out.write(id);
+        WasmUtils.writeLEB128(out, payload.length);
+        out.writeBytes(payload);
+    }
+
+    @Test
+    void cancelledWatJobDoesNotInterruptTheNextOne() throws Exception {
+        try (var pool = new Wasm2WatPool(1, 4)) {
+            var started = new CountDownLatch(1);
+            var release = new AtomicBoolean();
+            var first = pool.print(() -> {
+                started.countDown();
+                while (!release.get()) {
+                    Thread.onSpinWait();
+                }
+                return ByteBuffer.wrap(wasmBytes);
+            }, UnaryOperator.identity());
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            first.cancel(true);
+            release.set(true);
+
+            var interrupted = new AtomicBoolean(true);
+            var second = pool.print(() -> {
+                interrupted.set(Thread.currentThread().isInterrupted());
+                return ByteBuffer.wrap(wasmBytes);
+            }, UnaryOperator.identity());
+            assertTrue(second.get(30, TimeUnit.SECONDS).contains("(module"));
+            assertFalse(interrupted.get());
+            assertTrue(first.isCancelled());
+        }
+    }
+
+    @Test
+    void leb128WriteRoundTrip() {
+        for (int value : new int[] {0, 1, 127, 128, 624485, Integer.MAX_VALUE}) {
+            var out = new ByteArrayOutputStream();
+            WasmUtils.writeLEB128(out, value);
+            var bytes = out.toByteArray();
+            assertEquals(WasmUtils.leb128Length(value), bytes.length);
+            assertEquals(value, WasmUtils.readLEB128(bytes, 0));
+        }
+    }
+
     @Test
     void extractFunctionsEmptyModule() {
         assertEquals(0, WasmUtils.extractFunctions("(module)").size());
@@ -328,6 +561,60 @@ class WasmParsingTest {
         }
     }
 
+    @Test
+    void demangleAllMatchesSingleCalls() {
+        var names = Arrays.asList(
+                "_ZN5hello5world17h0123456789abcdefE",
+                "plain_name",
+                null,
+                "_RNvCs1234_5hello5world",
+                "_Rnot_really_mangled",
+                "");
+        try (var demangler = new RustcDemangle()) {
+            var result = demangler.demangleAll(names);
+            assertEquals(names.size(), result.size());
+            for (int i = 0; i < names.size(); i++) {
+                assertEquals(demangler.demangle(names.get(i)), result.get(i));
+            }
+        }
+    }
+
+    @Test
+    void demangleAllSkipsNonCandidates() {
+        assertTrue(RustcDemangle.isMangledCandidate("_ZN3foo3barE"));
+        assertTrue(RustcDemangle.isMangledCandidate("__ZN3foo3barE"));
+        assertTrue(RustcDemangle.isMangledCandidate("_RNvC3foo3bar"));
+        assertTrue(!RustcDemangle.isMangledCandidate("main"));
+        assertTrue(!RustcDemangle.isMangledCandidate(null));
+        try (var demangler = new RustcDemangle()) {
+            assertEquals(List.of("main", "_start"), demangler.demangleAll(List.of("main", "_start")));
+        }
+    }
+
+    @Test
+    void shardedNameResolutionMatchesSequential() throws Exception {
+        int count = 3 * FunctionDataProvider.MIN_NAME_SHARD + 5;
+        var bytes = namedModule(count, i -> new int[0], i -> switch (i % 4) {
+            case 0 -> "_ZN5hello5world17h0123456789abcdefE";
+            case 1 -> "f" + i;
+            case 2 -> null;
+            default -> "_RNvCs1234_5hello5world";
+        });
+        var module = Parser.parse(new ByteArrayInputStream(bytes));
+        var names = new AtomicReferenceArray<String>(count);
+        var version = new AtomicInteger();
+        FunctionDataProvider.resolveFunctionNames(module, names, version).get(30, TimeUnit.SECONDS);
+
+        var sequential = FunctionDataProvider.resolveFunctionNames(module);
+        assertEquals(4, version.get(), "one publication per shard");
+        assertEquals("hello::world", sequential.get(0));
+        assertEquals("f1", sequential.get(1));
+        assertNull(sequential.get(2));
+        for (int i = 0; i < count; i++) {
+            assertEquals(sequential.get(i), names.get(i), "function " + i);
+        }
+    }
+
     // --- ParamUtils.parseParam ---
 
     @Test
@@ -427,4 +714,664 @@ class WasmParsingTest {
         assertThrows(IllegalArgumentException.class,
                 () -> ParamUtils.encodeTypedValue("v128", "0"));
     }
+
+    // --- DetailSearchIndex ---
+
+    @Test
+    void indexStartsWithMatchesStringPrefix() {
+        var prefixes = new String[] {"", "0", "1", "12", "120", "01", "9", "x", "1a", "2147483647", "21474836470"};
+        for (int value : new int[] {0, 1, 9, 10, 12, 120, 1205, 99999, Integer.MAX_VALUE}) {
+            for (var prefix : prefixes) {
+                assertEquals(String.valueOf(value).startsWith(prefix),
+                        DetailSearchIndex.indexStartsWith(value, prefix), value + " / " + prefix);
+            }
+        }
+    }
+
+    @Test
+    void detailFilterRefinedWhileTypingMatchesFromScratchSearch() {
+        var names = detailNames();
+        var index = DetailSearchIndex.of("Exports", 0, names.size(), names);
+        // type, backspace, type something else, clear, then filter on indices
+        var typed = List.of("", "a", "al", "all", "allo", "alloc", "allo", "al", "a", "", "M", "Ma", "Mal",
+                "Ma", "Mam", "M", "", "_", "_s", "_st", "_s", "_", "", "1", "12", "120", "12", "1", "10",
+                "", "ä", "är", "", "fn_1", "fn_12", "fn_1", "fn_12_alloc", "fn_12_", "zz", "z", "");
+        for (var filter : typed) {
+            var expected = DetailSearchIndex.of("Exports", 0, names.size(), names).rows(filter);
+            assertArrayEquals(expected, index.rows(filter), filter);
+            assertArrayEquals(linearSearch(names, filter), expected, filter);
+        }
+    }
+
+    @Test
+    void tableWindowFollowsSelectionToEitherEdge() {
+        var selection = new TableState();
+        var window = new TableWindow(selection);
+        int rows = 10 * ViewLayout.MAX_VISIBLE_LINES;
+        selection.select(5);
+        window.update(rows);
+        assertEquals(0, window.first());
+        assertEquals(ViewLayout.MAX_VISIBLE_LINES, window.end());
+        assertEquals(5, (int) window.state().selected());
+
+        // Moving down past the window puts the selection on its last row
+        selection.select(500);
+        window.update(rows);
+        assertEquals(500, window.end() - 1);
+        assertEquals(ViewLayout.MAX_VISIBLE_LINES - 1, (int) window.state().selected());
+        // Moving up past it puts the selection on its first row
+        selection.select(300);
+        window.update(rows);
+        assertEquals(300, window.first());
+        assertEquals(0, (int) window.state().selected());
+        // A filter that leaves fewer rows pulls the window back
+        window.update(3);
+        assertEquals(0, window.first());
+        assertEquals(3, window.end());
+    }
+
+    @Test
+    void detailFilterBackspaceReusesEarlierResults() {
+        var names = detailNames();
+        var index = DetailSearchIndex.of("Exports", 0, names.size(), names);
+        var al = index.rows("al");
+        var alloc = index.rows("allo");
+        index.rows("alloc");
+        assertSame(alloc, index.rows("allo"));
+        assertSame(al, index.rows("al"));
+        // A filter that does not extend the cached ones starts again from every row
+        assertArrayEquals(linearSearch(names, "fr"), index.rows("fr"));
+        assertArrayEquals(linearSearch(names, "al"), index.rows("al"));
+        assertEquals(linearSearch(names, "alloc").length, index.count("alloc"));
+    }
+
+    private static List<String> detailNames() {
+        var names = new ArrayList<>(List.of("main", "Malloc", "memset", "_start", "calloc", "realloc", "free",
+                "alloc_zeroed", "Ärger", "m1"));
+        for (int i = 0; i < 200; i++) {
+            names.add("fn_" + i % 13 + (i % 3 == 0 ? "_alloc" : ""));
+        }
+        return names;
+    }
+
+    // Rows whose index starts with the filter or whose name contains it, ignoring case
+    private static int[] linearSearch(List<String> names, String filter) {
+        var lower = filter.toLowerCase();
+        var rows = new ArrayList<Integer>();
+        for (int i = 0; i < names.size(); i++) {
+            if (String.valueOf(i).startsWith(lower) || names.get(i).toLowerCase().contains(lower)) {
+                rows.add(i);
+            }
+        }
+        return rows.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // --- ContentSearchIndex ---
+
+    @Test
+    void contentSearchIndexMatchesLineScan() {
+        var content = "(func $Add\n  local.get 0\n  LOCAL.GET 1\n  i32.add\n)\n";
+        var index = new ContentSearchIndex(content);
+        var lines = content.split("\n", -1);
+        assertEquals(lines.length, index.lineCount());
+        for (var query : new String[] {"l", "lo", "local", "local.get", "local.get 1", "add", "$add", "zzz"}) {
+            var expected = java.util.stream.IntStream.range(0, lines.length)
+                    .filter(i -> lines[i].toLowerCase().contains(query))
+                    .toArray();
+            assertArrayEquals(expected, index.matches(query), query);
+        }
+    }
+
+    @Test
+    void contentSearchIndexWrapsAround() {
+        var index = new ContentSearchIndex("a\nb\na\nb\na");
+        assertEquals(2, index.next("a", 0));
+        assertEquals(0, index.next("a", 4));
+        assertEquals(2, index.prev("a", 4));
+        assertEquals(4, index.prev("a", 0));
+        assertEquals(-1, index.next("c", 0));
+    }
+
+    // --- WeightedLruCache ---
+
+    @Test
+    void weightedLruCacheEvictsLeastRecentlyUsed() {
+        var cache = new WeightedLruCache<Integer, String>(10, s -> s.length());
+        cache.put(1, "aaaa");
+        cache.put(2, "bbbb");
+        assertEquals("aaaa", cache.get(1));
+        cache.put(3, "cccc");
+        assertEquals(null, cache.get(2));
+        assertEquals("aaaa", cache.get(1));
+        assertEquals("cccc", cache.get(3));
+        cache.put(4, "this value is over budget");
+        assertEquals(null, cache.get(4));
+
+        var stats = cache.stats();
+        assertEquals(2, stats.size());
+        assertEquals(8, stats.weight());
+        assertEquals(3, stats.hits());
+        assertEquals(2, stats.misses());
+        assertEquals(1, stats.evictions());
+
+        assertEquals("aaaa", cache.peek(1));
+        assertTrue(cache.contains(3) && !cache.contains(2));
+        assertEquals(3, cache.stats().hits());
+        assertEquals(2, cache.stats().misses());
+        assertEquals("2 cached, 3.3/64 MB, 75% hits, 2 evicted",
+                new WeightedLruCache.Stats(2, 3_445_728, 64 << 20, 3, 1, 2).summary());
+    }
+
+    // --- HighlightPool ---
+
+    @Test
+    void highlightPoolRunsForegroundFirstAndSkipsSupersededJobs() throws Exception {
+        try (var pool = new HighlightPool(1)) {
+            var started = new CountDownLatch(1);
+            var release = new CountDownLatch(1);
+            var blocker = pool.submit(HighlightPool.Priority.FOREGROUND, () -> {
+                started.countDown();
+                try {
+                    return release.await(30, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertTrue(started.await(30, TimeUnit.SECONDS));
+
+            var order = Collections.synchronizedList(new ArrayList<String>());
+            var s1 = pool.submit(HighlightPool.Priority.SPECULATIVE, () -> order.add("s1"));
+            var superseded = pool.submit(HighlightPool.Priority.SPECULATIVE, () -> order.add("superseded"));
+            var s2 = pool.submit(HighlightPool.Priority.SPECULATIVE, () -> order.add("s2"));
+            // What scheduleHighlight does when the user lands on a speculatively queued function
+            superseded.cancel(false);
+            var f1 = pool.submit(HighlightPool.Priority.FOREGROUND, () -> order.add("f1"));
+            var f2 = pool.submit(HighlightPool.Priority.FOREGROUND, () -> order.add("f2"));
+            release.countDown();
+
+            CompletableFuture.allOf(blocker, s1, s2, f1, f2).get(30, TimeUnit.SECONDS);
+            assertEquals(List.of("f1", "f2", "s1", "s2"), order);
+            assertTrue(superseded.isCancelled());
+        }
+    }
+
+    // --- ArtifactCache ---
+
+    @Test
+    void artifactCacheRoundTripsAndEvicts(@TempDir Path dir) throws Exception {
+        var cache = new ArtifactCache(dir, 200);
+        var module = new byte[] {0, 0x61, 0x73, 0x6d};
+        var key = ArtifactCache.key(ByteBuffer.wrap(module));
+        assertEquals(64, key.length());
+        // Salted with the code versions, so upgrades do not serve stale artifacts
+        assertFalse(HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(module)).equals(key));
+        assertTrue(ArtifactCache.codeVersion(ArtifactCache.class).startsWith("ArtifactCache "));
+        assertEquals(null, cache.read(key, ArtifactCache.NAMES));
+
+        cache.write(key, ArtifactCache.NAMES, Arrays.asList("main", null, "\u00e9t\u00e9"));
+        var names = cache.read(key, ArtifactCache.NAMES);
+        assertEquals(Arrays.asList("main", null, "\u00e9t\u00e9"), names);
+        assertSame(names.get(0), names.get(0));
+
+        // Over budget: the older entry goes first
+        Files.setLastModifiedTime(dir.resolve(key + "." + ArtifactCache.NAMES), FileTime.fromMillis(0));
+        cache.write(key, ArtifactCache.WAT, List.of("x".repeat(150)));
+        assertEquals(null, cache.read(key, ArtifactCache.NAMES));
+        assertEquals(1, cache.read(key, ArtifactCache.WAT).size());
+    }
+
+    // --- ExportBenchmark ---
+
+    @Test
+    void exportBenchmarkSummarizesSamples() {
+        var samples = new long[100];
+        for (int i = 0; i < samples.length; i++) samples[i] = 100 - i;
+        var result = ExportBenchmark.summarize(10, samples, 1, 2, 1, null, false);
+        assertEquals(100, result.iterations());
+        assertEquals(1, result.min());
+        assertEquals(100, result.max());
+        assertEquals(50, result.p50());
+        assertEquals(99, result.p99());
+        assertEquals(50.5, result.mean(), 1e-9);
+        assertEquals(100, Arrays.stream(result.histogram()).sum());
+        assertEquals(1, ExportBenchmark.binStart(result, 0));
+    }
+
+    @Test
+    void exportBenchmarkBudgetCoversWarmup() {
+        var calls = new int[1];
+        ExportFunction slow = args -> {
+            calls[0]++;
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new long[0];
+        };
+        var result = ExportBenchmark.run(slow, new long[0], null, 100, 1000, 10_000_000L, () -> {});
+        assertNull(result.error());
+        assertTrue(result.warmup() < 100, "warm-up should stop at the budget");
+        assertEquals(1, result.iterations());
+        assertEquals(result.warmup() + result.iterations(), calls[0]);
+    }
+
+    // --- OutputCapture ---
+
+    @Test
+    void outputCaptureKeepsHeadAndTail() {
+        var capture = new OutputCapture(8, false);
+        capture.write("abcd".getBytes(StandardCharsets.UTF_8), 0, 4);
+        capture.write("efghij".getBytes(StandardCharsets.UTF_8), 0, 6);
+        capture.write('k');
+        var snapshot = capture.snapshot();
+        assertEquals("abcd", new String(snapshot.head(), StandardCharsets.UTF_8));
+        assertEquals("hijk", new String(snapshot.tail(), StandardCharsets.UTF_8));
+        assertEquals(3, snapshot.dropped());
+        assertEquals(11, capture.size());
+
+        capture.reset();
+        assertEquals(0, capture.size());
+        assertEquals(0, OutputText.of(capture.snapshot()).lineCount());
+    }
+
+    @Test
+    void outputTextIndexesLinesAroundDropMarker() {
+        var capture = new OutputCapture(8, false);
+        var out = "a\nb\n0123456789\nz\n".getBytes(StandardCharsets.UTF_8);
+        capture.write(out, 0, out.length);
+        var text = OutputText.of(capture.snapshot());
+        assertEquals("a", text.line(0));
+        assertEquals("b", text.line(1));
+        assertEquals(2, text.markerLine());
+        assertTrue(text.line(2).contains(text.dropped() + " bytes dropped"));
+        assertEquals("z", text.line(text.lineCount() - 2));
+        assertEquals("", text.line(text.lineCount() - 1));
+    }
+
+    @Test
+    void liveOutputTextMatchesSnapshots() {
+        var capture = new OutputCapture(64, false);
+        var live = new OutputText();
+        var chunks = List.of("ab", "c\n", "", "line two\n", "\n\n", "no newline", " yet",
+                "0123456789012345678901234567890123456789\n", "x\ny\n", "a very long line past the whole budget "
+                        + "of sixty-four bytes, so the tail ring wraps inside one write\n", "z");
+        for (int round = 0; round < 2; round++) {
+            for (var chunk : chunks) {
+                var bytes = chunk.getBytes(StandardCharsets.UTF_8);
+                capture.write(bytes, 0, bytes.length);
+                live.update(capture);
+                var expected = OutputText.of(capture.snapshot());
+                assertEquals(expected.lineCount(), live.lineCount(), chunk);
+                assertEquals(expected.markerLine(), live.markerLine(), chunk);
+                assertEquals(expected.dropped(), live.dropped(), chunk);
+                for (int i = 0; i < expected.lineCount(); i++) {
+                    assertEquals(expected.line(i), live.line(i), chunk);
+                }
+            }
+            capture.reset();
+            live.update(capture);
+            assertTrue(live.isEmpty());
+        }
+    }
+
+    @Test
+    void outputTextJoinsHeadAndTailWhenNothingDropped() {
+        var capture = new OutputCapture(8, false);
+        capture.write("ab".getBytes(StandardCharsets.UTF_8), 0, 2);
+        capture.write("cdef\ng".getBytes(StandardCharsets.UTF_8), 0, 6);
+        var text = OutputText.of(capture.snapshot());
+        assertEquals(List.of("abcdef", "g"), List.of(text.line(0), text.line(1)));
+        assertEquals(2, text.lineCount());
+        assertEquals(-1, text.markerLine());
+    }
+
+    @Test
+    void outputCaptureDeletesSpillFile() throws IOException {
+        var capture = new OutputCapture(8, true);
+        capture.write("hello\n".getBytes(StandardCharsets.UTF_8), 0, 6);
+        var file = capture.spillFile();
+        assertEquals("hello\n", Files.readString(file));
+
+        capture.deleteSpillFile();
+        assertNull(capture.spillFile());
+        assertFalse(Files.exists(file));
+
+        capture.write('x');
+        var next = capture.spillFile();
+        assertNotNull(next);
+        capture.close();
+        assertFalse(Files.exists(next));
+    }
+
+    // --- Instance snapshot ---
+
+    // Two pages of memory, "hi" at 10, and a mutable i32 global set to 7
+    private static byte[] snapshotModule(boolean passiveData) {
+        var out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[] {0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00});
+        out.writeBytes(new byte[] {0x05, 0x03, 0x01, 0x00, 0x02});
+        out.writeBytes(new byte[] {0x06, 0x06, 0x01, 0x7f, 0x01, 0x41, 0x07, 0x0b});
+        if (passiveData) {
+            out.writeBytes(new byte[] {0x0b, 0x05, 0x01, 0x01, 0x02, 'h', 'i'});
+        } else {
+            out.writeBytes(new byte[] {0x0b, 0x08, 0x01, 0x00, 0x41, 0x0a, 0x0b, 0x02, 'h', 'i'});
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    void instanceSnapshotRestoresOnlyDirtyPages() {
+        var module = Parser.parse(new ByteArrayInputStream(snapshotModule(false)));
+        assertTrue(InstanceSnapshot.isRestorable(module));
+        var instance = Instance.builder(module).build();
+        var snapshot = InstanceSnapshot.take(instance, module);
+        var memory = instance.memory();
+
+        memory.write(70_000, new byte[] {1, 2, 3});
+        instance.global(0).setValue(99);
+        var restore = snapshot.restore(instance);
+        assertEquals(1, restore.pagesWritten());
+        assertEquals(2, restore.pagesTotal());
+        assertArrayEquals(new byte[3], memory.readBytes(70_000, 3));
+        assertArrayEquals("hi".getBytes(StandardCharsets.UTF_8), memory.readBytes(10, 2));
+        assertEquals(7, instance.global(0).getValue());
+
+        memory.write(11, new byte[] {'o'});
+        assertEquals(1, snapshot.restore(instance).pagesWritten());
+        assertArrayEquals("hi".getBytes(StandardCharsets.UTF_8), memory.readBytes(10, 2));
+        assertEquals(0, snapshot.restore(instance).pagesWritten());
+
+        memory.grow(1);
+        assertNull(snapshot.restore(instance));
+    }
+
+    @Test
+    void modulesWithPassiveSegmentsAreNotRestorable() {
+        assertFalse(InstanceSnapshot.isRestorable(Parser.parse(new ByteArrayInputStream(snapshotModule(true)))));
+    }
+
+    // --- Profiler ---
+
+    @Test
+    void profilerCountsTopLevelCalls() {
+        var module = Parser.parse(new ByteArrayInputStream(wasmBytes));
+        var profiler = new Profiler(module);
+        var body = module.codeSection().getFunctionBody(0).instructions();
+        for (int call = 0; call < 2; call++) {
+            for (var instruction : body) {
+                profiler.onExecution(instruction, null);
+            }
+        }
+        var profile = profiler.finish();
+        assertEquals(1, profile.rows().size());
+        var row = profile.rows().get(0);
+        assertEquals(0, row.funcIdx());
+        assertEquals(2, row.calls());
+        assertTrue(row.exclusiveNanos() <= row.inclusiveNanos());
+        assertEquals(List.of(new Profiler.Edge(-1, 0, 2)), profile.edges());
+    }
+
+    @Test
+    void profilerFollowsNestedAndTailCalls() {
+        // main calls mid twice and tail once; mid calls leaf; tail does return_call leaf
+        var wasm = new byte[] {
+            0x00, 0x61, 0x73, 0x6d, 0x01, 0x00, 0x00, 0x00,
+            0x01, 0x04, 0x01, 0x60, 0x00, 0x00,
+            0x03, 0x05, 0x04, 0x00, 0x00, 0x00, 0x00,
+            0x07, 0x08, 0x01, 0x04, 'm', 'a', 'i', 'n', 0x00, 0x00,
+            0x0a, 0x18, 0x04,
+            0x08, 0x00, 0x10, 0x01, 0x10, 0x01, 0x10, 0x03, 0x0b,
+            0x04, 0x00, 0x10, 0x02, 0x0b,
+            0x03, 0x00, 0x01, 0x0b,
+            0x04, 0x00, 0x12, 0x02, 0x0b
+        };
+        var module = Parser.parse(new ByteArrayInputStream(wasm));
+        var profiler = new Profiler(module);
+        var instance = Instance.builder(module).withUnsafeExecutionListener(profiler).build();
+        instance.export("main").apply();
+        var profile = profiler.finish();
+
+        var calls = new long[4];
+        long exclusiveSum = 0;
+        for (var row : profile.rows()) {
+            calls[row.funcIdx()] = row.calls();
+            exclusiveSum += row.exclusiveNanos();
+            assertTrue(row.exclusiveNanos() <= row.inclusiveNanos());
+        }
+        assertArrayEquals(new long[] {1, 2, 3, 1}, calls);
+        var edges = new HashSet<>(profile.edges());
+        assertEquals(Set.of(
+                new Profiler.Edge(-1, 0, 1),
+                new Profiler.Edge(0, 1, 2),
+                new Profiler.Edge(1, 2, 2),
+                new Profiler.Edge(0, 3, 1),
+                new Profiler.Edge(3, 2, 1)), edges);
+
+        var main = profile.rows().stream().filter(r -> r.funcIdx() == 0).findFirst().orElseThrow();
+        var tail = profile.rows().stream().filter(r -> r.funcIdx() == 3).findFirst().orElseThrow();
+        // Every nanosecond under main is spent in exactly one frame
+        assertEquals(main.inclusiveNanos(), exclusiveSum);
+        // The tail-calling frame ends at return_call, so the callee's time is not under it
+        assertEquals(tail.exclusiveNanos(), tail.inclusiveNanos());
+    }
+
+    @Test
+    void instructionCountsFollowEachFunctionsBody() {
+        var module = Parser.parse(new ByteArrayInputStream(wasmBytes));
+        var counts = new InstructionCounts(module);
+        var cs = module.codeSection();
+        int last = cs.functionBodyCount() - 1;
+        var body = cs.getFunctionBody(last).instructions();
+        counts.onExecution(body.get(0), null);
+        counts.onExecution(body.get(0), null);
+        counts.onExecution(body.get(body.size() - 1), null);
+        counts.onExecution(cs.getFunctionBody(0).instructions().get(0), null);
+
+        var function = counts.function(last);
+        assertEquals(body.size(), function.length);
+        assertEquals(2, function[0]);
+        assertEquals(body.size() > 1 ? 1 : 3, function[body.size() - 1]);
+        assertEquals(4, counts.total());
+        counts.reset();
+        assertEquals(0, counts.total());
+    }
+
+    @Test
+    void instructionCountsMapToWatLines() {
+        var wat = """
+                (func $sum (;0;) (type 0) (param i32) (result i32)
+                    (local i32)
+                    loop ;; label = @1
+                      local.get 1
+                      br_if 0 (;@1;)
+                    end
+                    local.get 0
+                  )""";
+        var lines = InstructionCounts.perLine(new long[] {1, 5, 5, 1, 1, 1}, wat);
+        assertArrayEquals(new long[] {0, 0, 1, 5, 5, 1, 1, 1}, lines);
+        assertNull(InstructionCounts.perLine(new long[] {1, 1}, wat));
+        assertEquals("9999", InstructionCounts.format(9_999));
+        assertEquals("12k", InstructionCounts.format(12_345));
+        assertEquals("42M", InstructionCounts.format(42_000_000));
+    }
+
+    // --- WASI tracer ---
+
+    @Test
+    void wasiTracerAggregatesAndKeepsRecentCalls() {
+        var tracer = new WasiTracer(2);
+        var type = FunctionType.of(List.of(ValType.I32), List.of(ValType.I32));
+        var wrapped = tracer.wrap(new HostFunction[] {
+            new HostFunction("wasi_snapshot_preview1", "clock_time_get", type, (instance, args) -> new long[] {0}),
+            new HostFunction("wasi_snapshot_preview1", "fd_close", type, (instance, args) -> new long[] {8})
+        });
+        wrapped[0].handle().apply(null, 1L);
+        wrapped[0].handle().apply(null, 1L);
+        wrapped[1].handle().apply(null, 3L);
+
+        assertEquals(3, tracer.callCount());
+        var stats = tracer.stats();
+        assertEquals(2, stats.size());
+        assertEquals("clock_time_get", stats.get(0).name());
+        assertEquals(2, stats.get(0).calls());
+        assertEquals(1, stats.get(1).errors());
+        var recent = tracer.recent();
+        assertEquals(List.of("clock_time_get", "fd_close"), recent.stream().map(WasiTracer.Call::name).toList());
+        assertEquals(8, recent.get(1).errno());
+
+        tracer.reset();
+        assertEquals(0, tracer.callCount());
+        assertTrue(tracer.stats().isEmpty());
+    }
+
+    // --- Memory diff ---
+
+    @Test
+    void memoryDiffFindsChangedBytesAndGrownPages() {
+        var memory = new ByteArrayMemory(new MemoryLimits(2));
+        memory.write(100, new byte[] {1});
+        var before = MemoryDiff.fingerprint(memory);
+        memory.write(70_000, new byte[] {1, 2, 3});
+        memory.write(70_010, new byte[] {4});
+        memory.grow(1);
+        memory.write(2 * 65536 + 5, new byte[] {9});
+
+        var diff = MemoryDiff.compare(before, memory);
+        assertTrue(diff.exact());
+        assertEquals(List.of(
+                        new MemoryDiff.Region(70_000, 70_011, 4),
+                        new MemoryDiff.Region(2 * 65536 + 5, 2 * 65536 + 6, 1)),
+                diff.regions());
+        assertTrue(diff.isChanged(70_001));
+        assertTrue(!diff.isChanged(70_005) && !diff.isChanged(100));
+        assertEquals(3, diff.pagesAfter());
+        assertEquals(70_000, diff.next(0).start());
+        assertEquals(70_000, diff.next(2 * 65536 + 5).start());
+        assertEquals(0, MemoryDiff.compare(MemoryDiff.fingerprint(memory), memory).regions().size());
+    }
+
+    // --- Pattern search ---
+
+    @Test
+    void patternSearchFindsMatchesAcrossChunks() {
+        var data = new byte[3 * 1024 * 1024];
+        int boundary = 1024 * 1024;
+        var magic = new byte[] {0x7f, 'E', 'L', 'F'};
+        System.arraycopy(magic, 0, data, boundary - 2, 4);
+        System.arraycopy(magic, 0, data, 10, 4);
+        data[13] = 'X';
+        System.arraycopy("hello".getBytes(StandardCharsets.UTF_8), 0, data, 2 * boundary + 7, 5);
+
+        var exact = PatternSearch.search(PatternSearch.parse("x:7f 45 4c 46"), data);
+        assertArrayEquals(new int[] {boundary - 2}, exact.matches());
+        var wildcard = PatternSearch.search(PatternSearch.parse("x:7f45??"), data);
+        assertArrayEquals(new int[] {10, boundary - 2}, wildcard.matches());
+        assertArrayEquals(new int[] {2 * boundary + 7},
+                PatternSearch.search(PatternSearch.parse("hello"), data).matches());
+        assertArrayEquals(new byte[] {1, 0, 0, 0}, PatternSearch.parse("i32:1").bytes());
+        assertThrows(IllegalArgumentException.class, () -> PatternSearch.parse("x:??"));
+        assertThrows(IllegalArgumentException.class, () -> PatternSearch.parse("x:7"));
+    }
+
+    // --- StyledText ---
+
+    @Test
+    void styledTextSplitsLinesAndStripsEscapes() {
+        var ansi = "\033[38;2;1;2;3mfunc\033[0m $a\n\n  \033[1mi32.add\033[0m\n";
+        var styled = StyledText.parse(ansi);
+        assertEquals(3, styled.lineCount());
+        // a line costs 64 bytes, 2 per character and 8 per style run
+        assertEquals(3 * 64 + 2 * (7 + 0 + 9) + 8 * (2 + 0 + 2), styled.weight());
+
+        var lines = styled.text(0, 10, "").lines();
+        var plain = lines.stream()
+                .map(line -> line.spans().stream().map(Span::content).collect(Collectors.joining()))
+                .toList();
+        assertEquals(List.of("func $a", "", "  i32.add"), plain);
+        var first = lines.get(0).spans();
+        assertEquals("func", first.get(0).content());
+        assertEquals(Style.EMPTY.fg(Color.rgb(1, 2, 3)), first.get(0).style());
+        assertEquals(" $a", first.get(1).content());
+        assertEquals(Style.EMPTY, first.get(1).style());
+        var last = lines.get(2).spans();
+        assertEquals("i32.add", last.get(1).content());
+        assertEquals(Style.EMPTY.bold(), last.get(1).style());
+
+        // Built lines are kept by the caller, one window at a time
+        var rendered = new StyledText.RenderedLines(2);
+        var window = styled.text(0, 2, "", rendered).lines();
+        assertSame(window.get(1), styled.text(1, 2, "", rendered).lines().get(0));
+        assertEquals("  i32.add", styled.text(1, 2, "", rendered).lines().get(1).spans().stream()
+                .map(Span::content).collect(Collectors.joining()));
+        assertEquals(3 * 64 + 2 * (7 + 0 + 9) + 8 * (2 + 0 + 2), styled.weight());
+    }
+
+    // --- Section header scan ---
+
+    @Test
+    void scannedSectionRowsMatchParsedRows() {
+        var scanned = WasmUtils.scanSectionRows(ByteBuffer.wrap(wasmBytes));
+        assertEquals(sectionRows.size(), scanned.rows().size());
+        for (int i = 0; i < sectionRows.size(); i++) {
+            assertArrayEquals(sectionRows.get(i), scanned.rows().get(i));
+        }
+        assertEquals(scanned.rows().size(), scanned.ends().length);
+    }
+
+    // --- Batch output ---
+
+    @Test
+    void batchJsonEscaping() {
+        var sb = BatchCommand.appendJson(new StringBuilder(), "a\"b\\c\nd\u0001");
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", sb.toString());
+    }
+
+    @Test
+    void batchCsvQuoting() {
+        assertEquals("a,\"b,c\",\"d\"\"e\"", BatchCommand.csv("a", "b,c", "d\"e"));
+    }
+
+    @Test
+    void batchWritesModuleFunctionAndErrorRows(@TempDir Path dir) throws Exception {
+        var bytes = namedModule(3, i -> new int[0], i -> i == 1 ? null : "f" + i);
+        var module = dir.resolve("named.wasm");
+        Files.write(module, bytes);
+        var broken = dir.resolve("broken.wasm");
+        Files.write(broken, new byte[] {1, 2, 3});
+        var sizes = CodeSectionIndex.scan(bytes).bodyLengths();
+
+        var jsonl = runBatch(dir.toString());
+        var file = BatchCommand.appendJson(new StringBuilder(), module.toString()).toString();
+        assertEquals(5, jsonl.size());
+        var moduleRow = jsonl.stream().filter(r -> r.startsWith("{\"type\":\"module\"")).findFirst().orElseThrow();
+        assertTrue(moduleRow.startsWith("{\"type\":\"module\",\"file\":" + file
+                + ",\"size\":" + bytes.length + ",\"functions\":3,\"sections\":{"), moduleRow);
+        assertTrue(moduleRow.contains("\"Code\":"), moduleRow);
+        assertEquals(List.of(
+                "{\"type\":\"function\",\"file\":" + file + ",\"index\":0,\"name\":\"f0\",\"size\":" + sizes[0] + "}",
+                "{\"type\":\"function\",\"file\":" + file + ",\"index\":1,\"name\":null,\"size\":" + sizes[1] + "}",
+                "{\"type\":\"function\",\"file\":" + file + ",\"index\":2,\"name\":\"f2\",\"size\":" + sizes[2] + "}"),
+                jsonl.stream().filter(r -> r.startsWith("{\"type\":\"function\"")).toList());
+        var brokenFile = BatchCommand.appendJson(new StringBuilder(), broken.toString()).toString();
+        assertTrue(jsonl.stream().anyMatch(r -> r.startsWith("{\"type\":\"error\",\"file\":" + brokenFile)));
+
+        var csv = runBatch("--format", "csv", "--wat", module.toString());
+        assertEquals("type,file,index,name,size,detail", csv.get(0));
+        assertTrue(csv.get(1).startsWith("module," + module + ",,," + bytes.length + ","), csv.get(1));
+        assertTrue(csv.get(2).startsWith("function," + module + ",0,f0," + sizes[0] + ",\"(func $f0"), csv.get(2));
+    }
+
+    // Runs the batch command with one worker and returns the lines it wrote
+    private static List<String> runBatch(String... args) throws Exception {
+        var command = new BatchCommand();
+        var all = new ArrayList<>(List.of("--threads", "1"));
+        all.addAll(List.of(args));
+        new CommandLine(command).setCaseInsensitiveEnumValuesAllowed(true).parseArgs(all.toArray(new String[0]));
+        var buffer = new StringWriter();
+        try (var out = new PrintWriter(buffer)) {
+            command.run(out);
+        }
+        return buffer.toString().lines().toList();
+    }
 }